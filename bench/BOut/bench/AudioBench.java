@@ -0,0 +1,61 @@
+package BOut.bench;
+
+import java.util.List;
+
+import com.golden.gamedev.engine.BaseAudio;
+import com.golden.gamedev.engine.BaseIO;
+import com.golden.gamedev.engine.audio.WaveRenderer;
+
+import BOut.*;
+
+/**
+ * The game thread's side of a Miniball barrage: one tick in which 40
+ * Miniballs ring out and 10 Blocks are destroyed, through a SoundMixer
+ * playing into a (paced) NullAudioSink.  Should report 0 B/op.
+ */
+public final class AudioBench {
+
+  private AudioBench () { }
+
+  private static final String Ringout = BreakOutEngine.SoundsDirectory + "ringout.wav";
+  private static final String Bang = BreakOutEngine.SoundsDirectory + "bang_1.wav";
+
+  /**
+   * the mixer, made once: it decodes every sound, and has its own thread
+   */
+  private static SoundMixer mixer = null;
+
+  /**
+   * @param cases the List<BenchCase> to which to add our benchmarks
+   */
+  static void addCases (List<BenchCase> cases)
+  {
+    cases.add(new BenchCase("SoundMixer.barrageTick") {
+      public void setUp ()
+      {
+        if (mixer == null)
+        {
+          BaseAudio base = new BaseAudio(new BaseIO(AudioBench.class, BaseIO.WORKING_DIRECTORY),
+                                         new WaveRenderer());
+          NullAudioSink sink = new NullAudioSink(true);
+          sink.open(SoundMixer.MixFormat);
+          mixer = new SoundMixer(base, BreakOutEngine.SoundsDirectory, sink, SoundMixer.DefaultVoices);
+        }
+      }
+      public Object op ()
+      {
+        for (int i = 0; i < 40; i++)
+        {
+          mixer.play(Ringout);
+        }
+        for (int i = 0; i < 10; i++)
+        {
+          mixer.play(Bang);
+        }
+        mixer.endTick();
+        return mixer;
+      }
+    });
+  }
+
+}
@@ -0,0 +1,178 @@
+package BOut.bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the BreakOut micro-benchmarks and reports, for each, the mean
+ * time per operation and the bytes allocated per operation (measured
+ * with the HotSpot ThreadMXBean, like JMH's -prof gc).
+ * <br>
+ * Build and run from the top of the project:
+ * <pre>
+ *   javac -d out -cp "lib/*" $(find src bench -name '*.java')
+ *   java -Djava.awt.headless=true -cp "lib/*:out" BOut.bench.Bench [options]
+ * </pre>
+ * Options: <code>-f regex</code> runs only benchmarks whose names match;
+ * <code>-w n</code> and <code>-i n</code> set the number of warm-up and
+ * measurement iterations; <code>-t ms</code> sets the length of each
+ * iteration; <code>-o file</code> also writes the results to a file.
+ * Compare against <code>bench/results/baseline.txt</code>.
+ */
+public final class Bench {
+
+  private Bench () { }
+
+  /**
+   * @return all benchmarks, in reporting order
+   */
+  private static List<BenchCase> allCases ()
+  {
+    List<BenchCase> cases = new ArrayList<BenchCase>();
+    BounceBench.addCases(cases);
+    EventBench.addCases(cases);
+    PlayFieldBench.addCases(cases);
+    LevelLoadBench.addCases(cases);
+    MementoBench.addCases(cases);
+    MultiBallBench.addCases(cases);
+    AudioBench.addCases(cases);
+    return cases;
+  }
+
+  /**
+   * the ThreadMXBean, with HotSpot's per-thread allocation counter
+   */
+  private static final com.sun.management.ThreadMXBean threads =
+    (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+  /**
+   * keeps results of op() reachable, so the JIT cannot discard the work
+   */
+  private static volatile Object sink;
+
+  /**
+   * @return a long giving the bytes allocated so far by this thread
+   */
+  public static long allocatedBytes ()
+  {
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Runs one iteration: setup, then operations until the time is up
+   * @param bench the BenchCase to run
+   * @param millis a long giving the length of the iteration
+   * @return a double[] of {ns per op, bytes per op, number of ops}
+   */
+  private static double[] iterate (BenchCase bench, long millis) throws Exception
+  {
+    bench.setUp();
+    long deadline = System.nanoTime() + millis * 1000000L;
+    long ops = 0;
+    long bytes0 = allocatedBytes();
+    long start = System.nanoTime();
+    long now;
+    do
+    {
+      sink = bench.op();
+      ++ops;
+    } while ((now = System.nanoTime()) < deadline);
+    long bytes = allocatedBytes() - bytes0;
+    return new double[]{ (now - start) / (double)ops, bytes / (double)ops, ops };
+  }
+
+  /**
+   * Parses options, runs the selected benchmarks, and prints the results
+   * @param args a String[] of options (see the class comment)
+   */
+  public static void main (String[] args) throws Exception
+  {
+    Pattern filter = Pattern.compile(".*");
+    int warmups = 3;
+    int iterations = 5;
+    long millis = 1000;
+    String output = null;
+    for (int i = 0; i + 1 < args.length; i += 2)
+    {
+      if      (args[i].equals("-f")) filter = Pattern.compile(args[i+1]);
+      else if (args[i].equals("-w")) warmups = Integer.parseInt(args[i+1]);
+      else if (args[i].equals("-i")) iterations = Integer.parseInt(args[i+1]);
+      else if (args[i].equals("-t")) millis = Long.parseLong(args[i+1]);
+      else if (args[i].equals("-o")) output = args[i+1];
+      else
+      {
+        System.err.println("unknown option " + args[i]);
+        System.exit(1);
+      }
+    }
+
+    List<String> lines = new ArrayList<String>();
+    lines.add(String.format("# %s, %s; %d x %d ms warm-up, %d x %d ms measured",
+        System.getProperty("java.vm.name"), System.getProperty("java.version"),
+        warmups, millis, iterations, millis));
+    lines.add(String.format("%-44s %14s %10s %14s", "Benchmark", "ns/op", "error", "B/op"));
+    System.out.println(lines.get(0));
+    System.out.println(lines.get(1));
+    for (BenchCase bench : allCases())
+    {
+      if (!filter.matcher(bench.getName()).find())
+      {
+        continue;
+      }
+      for (int i = 0; i < warmups; i++)
+      {
+        iterate(bench, millis);
+      }
+      double[] nanos = new double[iterations];
+      double bytes = 0.0;
+      for (int i = 0; i < iterations; i++)
+      {
+        double[] result = iterate(bench, millis);
+        nanos[i] = result[0];
+        bytes += result[1];
+      }
+      double mean = 0.0;
+      for (double n : nanos) mean += n;
+      mean /= iterations;
+      double var = 0.0;
+      for (double n : nanos) var += (n - mean) * (n - mean);
+      double error = (iterations > 1) ? Math.sqrt(var / (iterations - 1)) : 0.0;
+      String line = String.format("%-44s %14.1f %10.1f %14.1f",
+          bench.getName(), mean, error, bytes / iterations);
+      System.out.println(line);
+      lines.add(line);
+    }
+
+    if (output != null)
+    {
+      writeResults(output, lines);
+    }
+  }
+
+  /**
+   * writes result lines to a file
+   * @param filename a String naming the file
+   * @param lines the List<String> of lines to write
+   */
+  private static void writeResults (String filename, List<String> lines) throws IOException
+  {
+    PrintWriter out = new PrintWriter(new FileWriter(filename));
+    try
+    {
+      for (String line : lines)
+      {
+        out.println(line);
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+}
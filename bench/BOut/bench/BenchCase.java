@@ -0,0 +1,45 @@
+package BOut.bench;
+
+/**
+ * One benchmark: a named operation, with optional setup before each
+ * measurement iteration
+ */
+public abstract class BenchCase {
+
+  /**
+   * name under which results are reported
+   */
+  private final String name;
+
+  /**
+   * @param name a String naming this benchmark in the results
+   */
+  protected BenchCase (String name)
+  {
+    this.name = name;
+  }
+
+  /**
+   * @return the name of this benchmark
+   */
+  public String getName ()
+  {
+    return name;
+  }
+
+  /**
+   * called (untimed) before each warm-up and measurement iteration
+   * @throws Exception if setup fails, which aborts this benchmark
+   */
+  public void setUp () throws Exception
+  {
+  }
+
+  /**
+   * performs the operation being measured, once
+   * @return any value depending on the work done, so the JIT cannot drop it
+   * @throws Exception if the operation fails, which aborts this benchmark
+   */
+  public abstract Object op () throws Exception;
+
+}
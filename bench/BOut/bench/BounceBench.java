@@ -0,0 +1,63 @@
+package BOut.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import BOut.Ball;
+import BOut.Paddle;
+
+/**
+ * Ball.bounce, through collisionWithBlock and collisionWithPaddle
+ */
+public final class BounceBench {
+
+  private BounceBench () { }
+
+  /**
+   * @return a Ball moving down and to the left, sized like the real one
+   */
+  private static Ball makeBall ()
+  {
+    Ball ball = new Ball(400, 300);
+    ball.setImage(new BufferedImage(22, 22, BufferedImage.TYPE_BYTE_BINARY));
+    ball.setVelocityPolar(0.35D, 0.75D * Math.PI);
+    return ball;
+  }
+
+  /**
+   * @param cases the List<BenchCase> to which to add our benchmarks
+   */
+  static void addCases (List<BenchCase> cases)
+  {
+    cases.add(new BenchCase("Ball.collisionWithBlock") {
+      private Ball ball;
+      public void setUp () { ball = makeBall(); }
+      public Object op ()
+      {
+        // alternate hitting the bottom and the top, so every call bounces
+        if (ball.getVerticalSpeed() > 0)
+          ball.collisionWithBlock(false, true, false, false);
+        else
+          ball.collisionWithBlock(true, false, false, false);
+        return ball;
+      }
+    });
+    cases.add(new BenchCase("Ball.collisionWithPaddle") {
+      private Ball ball;
+      private Paddle paddle;
+      public void setUp ()
+      {
+        ball = makeBall();
+        paddle = new Paddle(400, 550);
+      }
+      public Object op ()
+      {
+        // the paddle bounce sends the Ball up; a top bounce brings it back down
+        ball.collisionWithPaddle(paddle);
+        ball.collisionWithBlock(true, false, false, false);
+        return ball;
+      }
+    });
+  }
+
+}
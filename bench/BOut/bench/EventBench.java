@@ -0,0 +1,61 @@
+package BOut.bench;
+
+import java.util.List;
+
+import BOut.*;
+
+/**
+ * Dispatch of one ActiveChangedEvent to GameState's listeners, by
+ * toggling a Block between active and inactive.  The direct path should
+ * report 0 B/op; the legacy BreakoutListener path is shown for contrast.
+ */
+public final class EventBench {
+
+  private EventBench () { }
+
+  /**
+   * @param cases the List<BenchCase> to which to add our benchmarks
+   */
+  static void addCases (List<BenchCase> cases)
+  {
+    cases.add(new BenchCase("ActiveChanged.dispatch") {
+      private Block block;
+      public void setUp ()
+      {
+        Block.newGame();
+        GameState.resetGameState().startLevel();
+        block = new Block(new BlockDesc(30, 20, 5, 5, 200), 100, 100);
+      }
+      public Object op ()
+      {
+        block.setActive(!block.isActive());
+        return block;
+      }
+    });
+    cases.add(new BenchCase("ActiveChanged.dispatch[legacy]") {
+      private Block block;
+      private int blocksActive;
+      public void setUp ()
+      {
+        Block.newGame();
+        GameState.resetGameState().startLevel();
+        Block.getActiveChangedSource().register(
+            new BreakoutListener<ActiveChangedEvent<Block>>()
+            {
+              public void happened (ActiveChangedEvent<Block> event)
+              {
+                blocksActive += event.getDelta();
+              }
+            }
+        );
+        block = new Block(new BlockDesc(30, 20, 5, 5, 200), 100, 100);
+      }
+      public Object op ()
+      {
+        block.setActive(!block.isActive());
+        return block;
+      }
+    });
+  }
+
+}
@@ -0,0 +1,128 @@
+package BOut.bench;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import BOut.*;
+import XmlImporter.LevelCache;
+import XmlImporter.LevelLoader;
+
+/**
+ * LevelLoader.loadGame on each file in levels/, on a generated level
+ * of 3600 blocks, and on one of 20000 blockInstances, into a world that
+ * just counts the Blocks.  Each level is loaded as the game loads it
+ * (from LevelCache after the first time), and uncached (parsing and
+ * compiling the XML each time), both streaming it through StAX (the
+ * default) and parsing it with XMLBeans.  Sidecar files are not used,
+ * so only the in-memory cache is measured.
+ */
+public final class LevelLoadBench extends BenchCase {
+
+  /**
+   * a BreakOutWorld that keeps nothing
+   */
+  private static final class CountingWorld implements BreakOutWorld {
+    int blocks = 0;
+    final BlockField field = new BlockField(256);
+    public void setGridSpacing (int xGrid, int yGrid) { }
+    public Block newBlock (BlockDesc desc, double x, double y) { return field.newBlock(desc, x, y); }
+    public void addPaddle (Paddle p) { }
+    public void addBlock (Block b) { ++blocks; }
+    public void addBall (Ball b) { }
+    public void addMiniball (Miniball m) { }
+    public void addPowerUp (PowerUp p) { }
+    public void dropPowerUp (double x, double y, PowerUpKind kind) { }
+  }
+
+  private final String filename;
+
+  /**
+   * whether to empty the LevelCache before each load
+   */
+  private final boolean uncached;
+
+  /**
+   * whether to parse the XML with XMLBeans rather than StAX
+   */
+  private final boolean xmlBeans;
+
+  /**
+   * @param name a String giving the name to report
+   * @param filename a String giving the level file to load
+   * @param uncached a boolean, true to compile the level from XML on every load
+   * @param xmlBeans a boolean, true to parse the XML with XMLBeans
+   */
+  private LevelLoadBench (String name, String filename, boolean uncached, boolean xmlBeans)
+  {
+    super("LevelLoader.loadGame[" + name + (uncached ? ",uncached" : "") + (xmlBeans ? ",xmlbeans" : "") + "]");
+    this.filename = filename;
+    this.uncached = uncached;
+    this.xmlBeans = xmlBeans;
+  }
+
+  /**
+   * adds the cached and uncached benchmarks of one level file
+   */
+  private static void addLevel (List<BenchCase> cases, String name, String filename)
+  {
+    cases.add(new LevelLoadBench(name, filename, false, false));
+    cases.add(new LevelLoadBench(name, filename, true, false));
+    cases.add(new LevelLoadBench(name, filename, true, true));
+  }
+
+  /**
+   * @param cases the List<BenchCase> to which to add our benchmarks
+   */
+  static void addCases (List<BenchCase> cases)
+  {
+    LevelCache.setUseSidecars(false);
+    File[] levels = new File("levels").listFiles();
+    if (levels != null)
+    {
+      Arrays.sort(levels);
+      for (File level : levels)
+      {
+        if (level.getName().endsWith(".xml"))
+        {
+          addLevel(cases, level.getName(), level.getPath());
+        }
+      }
+    }
+    try
+    {
+      addLevel(cases, "stress-3600", StressLevels.stripeBox(60));
+      addLevel(cases, "instances-20000", StressLevels.instances(20000));
+    }
+    catch (java.io.IOException exc)
+    {
+      System.err.printf("Could not write stress levels; skipping them:%n%s%n", exc);
+    }
+  }
+
+  public void setUp ()
+  {
+    GameState.resetGameState();
+  }
+
+  public Object op ()
+  {
+    if (uncached)
+    {
+      LevelCache.clear();
+    }
+    CountingWorld world = new CountingWorld();
+    boolean wasStreaming = LevelLoader.isStreamingParser();
+    LevelLoader.setStreamingParser(!xmlBeans);
+    try
+    {
+      new LevelLoader(world).loadGame(filename);
+    }
+    finally
+    {
+      LevelLoader.setStreamingParser(wasStreaming);
+    }
+    return world;
+  }
+
+}
@@ -0,0 +1,95 @@
+package BOut.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import BOut.BreakOutGame;
+import BOut.SnapshotCodec;
+import BOut.BreakOutGame.Memento;
+import BOut.sim.HeadlessSimulator;
+
+/**
+ * Creating a Memento of a game in progress, and writing one with
+ * Java serialization (as archives were once written) and with
+ * SnapshotCodec (as BreakOutGame.archiveGame now writes them); and
+ * restoring an archive written with Java serialization by the game as
+ * first released, which also checks that such archives still load
+ */
+public final class MementoBench {
+
+  private MementoBench () { }
+
+  /**
+   * an archive written by the game as first released (Level1 in
+   * progress, with a Ball, a Miniball and three PowerUps in flight)
+   */
+  private static final String LegacyArchive = "bench/archives/legacy.sav";
+
+  /**
+   * what restoring LegacyArchive must give
+   */
+  private static final String LegacyContents = "Memento[1 balls, 1 miniballs, 85 blocks, 3 power-ups; score 860]";
+
+  /**
+   * @param side an int: the level has side x side blocks
+   * @return a simulator a little way into the level, with a Ball in play
+   */
+  private static HeadlessSimulator startedGame (int side) throws Exception
+  {
+    HeadlessSimulator sim = new HeadlessSimulator(StressLevels.stripeBox(side));
+    sim.setAutoPilot(true);
+    sim.run(300);
+    return sim;
+  }
+
+  /**
+   * @param cases the List<BenchCase> to which to add our benchmarks
+   */
+  static void addCases (List<BenchCase> cases)
+  {
+    for (final int side : new int[]{10, 60})
+    {
+      cases.add(new BenchCase("Memento.create[N=" + (side * side) + "]") {
+        private HeadlessSimulator sim;
+        public void setUp () throws Exception { sim = startedGame(side); }
+        public Object op () { return sim.memento(); }
+      });
+      cases.add(new BenchCase("Memento.serialize[N=" + (side * side) + "]") {
+        private Memento memento;
+        public void setUp () throws Exception { memento = startedGame(side).memento(); }
+        public Object op () throws Exception
+        {
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          ObjectOutputStream out = new ObjectOutputStream(bytes);
+          out.writeObject(memento);
+          out.close();
+          return bytes;
+        }
+      });
+      cases.add(new BenchCase("Memento.encode[N=" + (side * side) + "]") {
+        private Memento memento;
+        public void setUp () throws Exception { memento = startedGame(side).memento(); }
+        public Object op () { return SnapshotCodec.encode(memento); }
+      });
+      cases.add(new BenchCase("Memento.decode[N=" + (side * side) + "]") {
+        private ByteBuffer encoded;
+        public void setUp () throws Exception { encoded = SnapshotCodec.encode(startedGame(side).memento()); }
+        public Object op () throws Exception { return SnapshotCodec.decode(encoded.duplicate()); }
+      });
+    }
+    cases.add(new BenchCase("Memento.restore[legacy]") {
+      public void setUp ()
+      {
+        Memento restored = BreakOutGame.restoreSnapshot(LegacyArchive);
+        if (restored == null || !restored.toString().equals(LegacyContents))
+        {
+          throw new IllegalStateException(LegacyArchive + " restores as " + restored + ", not " + LegacyContents);
+        }
+      }
+      public Object op () { return BreakOutGame.restoreSnapshot(LegacyArchive); }
+    });
+  }
+
+}
@@ -0,0 +1,177 @@
+package BOut.bench;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.golden.gamedev.object.CollisionManager;
+
+import BOut.*;
+import BOut.sim.HeadlessSimulator;
+
+/**
+ * One fixed step of the PlayField with K Balls in play at once (the
+ * simulator's stress mode, which replaces lost Balls), over a generated
+ * level of 3600 blocks, for K from 1 to 4000: update time against the
+ * number of Balls.  The paddle stays put and no Miniballs are fired.
+ * If the level ends (which takes many Balls little time), it is
+ * reloaded, as in PlayFieldBench.
+ * <br>
+ * The Balls' overlap tests are made on one core, except in the
+ * "parallel" cases, where they may use several (see
+ * ParallelBlockCollisionGroup).
+ * <br>
+ * The "parity" cases check that the two give the same play: each plays
+ * the same steps of the same game twice, on one core and then on
+ * several, and compares the snapshots after every step, failing at the
+ * first difference (or if the parallel plan was never used).
+ */
+public final class MultiBallBench extends BenchCase {
+
+  private final int ballCount;
+  private final boolean parallel;
+  private String level;
+  private HeadlessSimulator sim;
+
+  /**
+   * @param ballCount an int giving the number of Balls to keep in play
+   * @param parallel a boolean, true to let the overlap tests use several cores
+   */
+  private MultiBallBench (int ballCount, boolean parallel)
+  {
+    super(String.format(parallel ? "MultiBall.step[K=%d,parallel]" : "MultiBall.step[K=%d]", ballCount));
+    this.ballCount = ballCount;
+    this.parallel = parallel;
+  }
+
+  /**
+   * @param cases the List<BenchCase> to which to add our benchmarks
+   */
+  static void addCases (List<BenchCase> cases)
+  {
+    for (int k : new int[]{1, 10, 100, 1000, 4000})
+    {
+      cases.add(new MultiBallBench(k, false));
+    }
+    for (int k : new int[]{1000, 4000})
+    {
+      cases.add(new MultiBallBench(k, true));
+    }
+    for (int k : new int[]{300, 1000})
+    {
+      cases.add(new Parity(k, 40));
+    }
+  }
+
+  /**
+   * @param ballCount an int giving the number of Balls to keep in play
+   * @param parallel a boolean, true to let the overlap tests use several cores
+   * @param level a String naming the level to load
+   * @return a new simulator of the level, in stress mode
+   * @throws Exception if the level cannot be loaded
+   */
+  private static HeadlessSimulator newSimulator (int ballCount, boolean parallel, String level) throws Exception
+  {
+    // the choice is made as the simulator adds its collision groups
+    boolean wasParallel = BreakOutCollisions.isParallelCollisions();
+    BreakOutCollisions.setParallelCollisions(parallel);
+    HeadlessSimulator sim;
+    try
+    {
+      sim = new HeadlessSimulator(level);
+    }
+    finally
+    {
+      BreakOutCollisions.setParallelCollisions(wasParallel);
+    }
+    sim.setStressBalls(ballCount);
+    return sim;
+  }
+
+  public void setUp () throws Exception
+  {
+    if (level == null)
+    {
+      level = StressLevels.stripeBox(60);
+    }
+    sim = newSimulator(ballCount, parallel, level);
+  }
+
+  public Object op () throws Exception
+  {
+    if (sim.isDone())
+    {
+      setUp();
+    }
+    sim.step();
+    return sim;
+  }
+
+  /**
+   * Plays the same steps with the overlap tests on one core and on
+   * several, and checks that every step's snapshot is the same
+   */
+  private static final class Parity extends BenchCase {
+
+    private final int ballCount;
+    private final int steps;
+    private String level;
+
+    /**
+     * @param ballCount an int giving the number of Balls to keep in play,
+     * enough for the parallel plan to be used
+     * @param steps an int giving the number of steps to compare
+     */
+    Parity (int ballCount, int steps)
+    {
+      super(String.format("MultiBall.parity[K=%d,%d steps]", ballCount, steps));
+      this.ballCount = ballCount;
+      this.steps = steps;
+    }
+
+    public void setUp () throws Exception
+    {
+      if (level == null)
+      {
+        level = StressLevels.stripeBox(60);
+      }
+    }
+
+    public Object op () throws Exception
+    {
+      // one simulator at a time: they share GameState and GameRandom
+      HeadlessSimulator serial = newSimulator(ballCount, false, level);
+      ByteBuffer[] expected = new ByteBuffer[steps];
+      for (int i = 0; i < steps && !serial.isDone(); i++)
+      {
+        serial.step();
+        expected[i] = SnapshotCodec.encode(serial.memento());
+      }
+
+      HeadlessSimulator parallel = newSimulator(ballCount, true, level);
+      for (int i = 0; i < steps && expected[i] != null; i++)
+      {
+        parallel.step();
+        if (!SnapshotCodec.encode(parallel.memento()).equals(expected[i]))
+        {
+          throw new IllegalStateException(getName() + ": parallel play differs from serial after step " + (i + 1));
+        }
+      }
+
+      long parallelChecks = 0;
+      for (CollisionManager group : parallel.getPlayField().getCollisionGroups())
+      {
+        if (group instanceof ParallelBlockCollisionGroup)
+        {
+          parallelChecks += ((ParallelBlockCollisionGroup)group).getParallelChecks();
+        }
+      }
+      if (parallelChecks == 0)
+      {
+        throw new IllegalStateException(getName() + ": the parallel plan was never used");
+      }
+      return parallel;
+    }
+
+  }
+
+}
@@ -0,0 +1,87 @@
+package BOut.bench;
+
+import java.util.List;
+import java.util.Random;
+
+import BOut.*;
+import BOut.sim.HeadlessSimulator;
+
+/**
+ * One fixed step of the PlayField (sprite movement plus all collision
+ * groups) over a generated level of N blocks, with the auto-pilot
+ * playing one Ball and M Miniballs kept in flight, with Golden T's
+ * overlap tests or with swept collisions.  If the level ends, it is
+ * reloaded (and the reload counted), so keep iterations short relative
+ * to a level's length.
+ */
+public final class PlayFieldBench extends BenchCase {
+
+  private final int side;
+  private final int miniballCount;
+  private final boolean swept;
+  private HeadlessSimulator sim;
+  private Random random;
+  private int miniballsActive;
+
+  /**
+   * @param side an int: the level has side x side blocks
+   * @param miniballCount an int giving the number of Miniballs to keep in flight
+   * @param swept a boolean, true to use swept collisions
+   */
+  private PlayFieldBench (int side, int miniballCount, boolean swept)
+  {
+    super(String.format("PlayField.update[N=%d,M=%d%s]", side * side, miniballCount, swept ? ",swept" : ""));
+    this.side = side;
+    this.miniballCount = miniballCount;
+    this.swept = swept;
+  }
+
+  /**
+   * @param cases the List<BenchCase> to which to add our benchmarks
+   */
+  static void addCases (List<BenchCase> cases)
+  {
+    cases.add(new PlayFieldBench(10, 0, false));
+    cases.add(new PlayFieldBench(60, 0, false));
+    cases.add(new PlayFieldBench(60, 100, false));
+    cases.add(new PlayFieldBench(60, 0, true));
+    cases.add(new PlayFieldBench(60, 100, true));
+  }
+
+  public void setUp () throws Exception
+  {
+    boolean wasSwept = BreakOutCollisions.isSweptCollisions();
+    BreakOutCollisions.setSweptCollisions(swept);
+    sim = new HeadlessSimulator(StressLevels.stripeBox(side));
+    BreakOutCollisions.setSweptCollisions(wasSwept);
+    sim.setAutoPilot(true);
+    random = new Random(42);
+    miniballsActive = 0;
+    Miniball.getActiveChangedSource().register(
+        new ActiveChangedListener<Miniball>()
+        {
+          public void activeChanged (Miniball sprite, int delta)
+          {
+            miniballsActive += delta;
+          }
+        }
+    );
+  }
+
+  public Object op () throws Exception
+  {
+    if (sim.isDone())
+    {
+      setUp();
+    }
+    while (miniballsActive < miniballCount)
+    {
+      Miniball miniball = new Miniball(random.nextInt(HeadlessSimulator.FieldWidth - 20), 540);
+      miniball.setID(GameState.getGameState().obtainMiniballNumber());
+      sim.addMiniball(miniball);
+    }
+    sim.step();
+    return sim;
+  }
+
+}
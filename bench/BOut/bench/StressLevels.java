@@ -0,0 +1,118 @@
+package BOut.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes generated level files for benchmarks: a square
+ * PatternStripeBox of small blocks, sized to stay on screen, or a
+ * field of individual blockInstances
+ */
+public final class StressLevels {
+
+  private StressLevels () { }
+
+  /**
+   * Writes a level with side x side blocks (alternating two templates)
+   * to a temporary file that is deleted on exit
+   * @param side an int giving the number of blocks along each side
+   * @return a String giving the path of the level file
+   * @throws IOException if the file cannot be written
+   */
+  public static String stripeBox (int side) throws IOException
+  {
+    // fit the box into roughly 720 x 360 pixels
+    int gridX = Math.max(2, 720 / side);
+    int gridY = Math.max(1, 360 / side);
+    File file = File.createTempFile("stress-" + side + "-", ".xml");
+    file.deleteOnExit();
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    try
+    {
+      out.println("<?xml version='1.0'?>");
+      out.printf("<b:Game xmlns:b=\"breakout\" grid_x=\"%d\" grid_y=\"%d\">%n", gridX, gridY);
+      template(out, "red",  gridX, gridY, "200\" G=\"5\" B=\"5");
+      template(out, "blue", gridX, gridY, "5\" G=\"5\" B=\"200");
+      out.println("  <b:level>");
+      out.printf("    <b:blockPattern class=\"PatternStripeBox(%d)\" startx=\"%d\" starty=\"%d\">%n",
+          side, (800 / gridX - side) / 2, 60 / gridY + 1);
+      out.println("      <b:block>red</b:block>");
+      out.println("      <b:block>blue</b:block>");
+      out.println("    </b:blockPattern>");
+      out.println("  </b:level>");
+      out.println("</b:Game>");
+    }
+    finally
+    {
+      out.close();
+    }
+    return file.getPath();
+  }
+
+  /**
+   * Writes a level of count blockInstances of 4 x 3 pixel blocks
+   * (alternating two templates), in rows of 200 across the field, to a
+   * temporary file that is deleted on exit.  Alternate blocks give their
+   * position in grid units and in px.
+   * @param count an int giving the number of blocks
+   * @return a String giving the path of the level file
+   * @throws IOException if the file cannot be written
+   */
+  public static String instances (int count) throws IOException
+  {
+    int gridX = 4;
+    int gridY = 3;
+    int columns = 200;
+    File file = File.createTempFile("instances-" + count + "-", ".xml");
+    file.deleteOnExit();
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    try
+    {
+      out.println("<?xml version='1.0'?>");
+      out.printf("<b:Game xmlns:b=\"breakout\" grid_x=\"%d\" grid_y=\"%d\">%n", gridX, gridY);
+      template(out, "red",  gridX, gridY, "200\" G=\"5\" B=\"5");
+      template(out, "blue", gridX, gridY, "5\" G=\"5\" B=\"200");
+      out.println("  <b:level>");
+      out.println("    <b:image file=\"graphics/blackness.png\"/>");
+      for (int i = 0; i < count; i++)
+      {
+        int column = i % columns;
+        int row = 20 + i / columns;
+        if (i % 2 == 0)
+        {
+          out.printf("    <b:blockInstance template=\"red\" x=\"%d\" y=\"%d\"/>%n", column, row);
+        }
+        else
+        {
+          out.printf("    <b:blockInstance template=\"blue\" x=\"%dpx\" y=\"%dpx\"/>%n",
+              column * gridX, row * gridY);
+        }
+      }
+      out.println("  </b:level>");
+      out.println("</b:Game>");
+    }
+    finally
+    {
+      out.close();
+    }
+    return file.getPath();
+  }
+
+  /**
+   * writes one block template, with power-ups like those of Level3
+   */
+  private static void template (PrintWriter out, String id, int width, int height, String rgb)
+  {
+    out.printf("  <b:blockTemplate id=\"%s\" width=\"%d\" height=\"%d\" score=\"20\">%n",
+        id, width, height);
+    out.printf("    <b:colorType R=\"%s\"/>%n", rgb);
+    for (String kind : new String[]{"incrOnHit", "decrOnMiss", "incrDecr", "nothing", "miniballs", "extra"})
+    {
+      out.printf("    <b:powerup class=\"%s\" probability=\"5\"/>%n", kind);
+    }
+    out.println("  </b:blockTemplate>");
+  }
+
+}
@@ -25,9 +25,19 @@ public class ActiveChangedEvent<S extends Sprite> implements BreakoutEvent {
    * @param sprite an S that went (in)active
    */
   public ActiveChangedEvent (S sprite)
+  {
+    this(sprite, (sprite.isActive() ? +1 : -1));
+  }
+
+  /**
+   * Constructor; records the changed S and the change
+   * @param sprite an S that went (in)active
+   * @param delta an int, +1 or -1, giving the net change in active sprites
+   */
+  public ActiveChangedEvent (S sprite, int delta)
   {
     this.sprite = sprite;
-    this.delta = (sprite.isActive() ? +1 : -1);
+    this.delta = delta;
   }
   
   /**
@@ -0,0 +1,22 @@
+package BOut;
+
+import com.golden.gamedev.object.*;
+
+/**
+ * Interface to be implemented by objects that wish to be told when
+ * a Sprite of type S becomes active or inactive.  Unlike a
+ * BreakoutListener for ActiveChangedEvent, it is handed the Sprite and
+ * the change directly, so no event object need be created.
+ *
+ * @param <S> the type of Sprite whose status changes
+ */
+public interface ActiveChangedListener<S extends Sprite> {
+
+  /**
+   * this method is called when a Sprite becomes active or inactive
+   * @param sprite the S whose status changed
+   * @param delta an int, +1 or -1, giving the net change in active sprites
+   */
+  public void activeChanged (S sprite, int delta);
+
+}
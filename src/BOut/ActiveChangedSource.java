@@ -0,0 +1,253 @@
+package BOut;
+
+import java.util.Arrays;
+
+import com.golden.gamedev.object.*;
+
+/**
+ * The source of activity changes for one type of Sprite.  Listeners are
+ * kept in an array that is copied when a listener registers or
+ * deregisters (rare), so that notification (once per change in a
+ * Sprite's status, which is frequent) neither locks nor allocates.
+ * <br>
+ * BreakoutListener<ActiveChangedEvent<S>> registrations are still
+ * accepted; each is wrapped in an adapter that builds the event object
+ * for it, so only those listeners cost an allocation per change.
+ *
+ * @param <S> the type of Sprite whose status changes
+ */
+public class ActiveChangedSource<S extends Sprite> extends BreakoutEventSource<ActiveChangedEvent<S>> {
+
+  /**
+   * the shared empty listener array
+   */
+  private static final ActiveChangedListener<?>[] none = new ActiveChangedListener<?>[0];
+
+  /**
+   * current listeners, in order of registration; never modified in place
+   */
+  private ActiveChangedListener<S>[] listeners = empty();
+
+  /**
+   * whether time spent notifying listeners (of any source) is measured;
+   * notification happens on the game thread only
+   */
+  private static boolean timed = false;
+
+  /**
+   * time spent notifying listeners since last taken, in nanoseconds, and
+   * how deeply notifications are nested (a listener may cause another)
+   */
+  private static long dispatchNanos = 0;
+  private static int dispatchDepth = 0;
+
+  /**
+   * Turns measurement of the time spent notifying listeners on or off
+   * @param on a boolean, true to measure
+   */
+  public static void setTimed (boolean on)
+  {
+    timed = on;
+    dispatchNanos = 0;
+  }
+
+  /**
+   * @return a long giving the nanoseconds spent notifying listeners (of
+   * all sources) since the last call, when measuring is on
+   */
+  public static long takeDispatchNanos ()
+  {
+    long nanos = dispatchNanos;
+    dispatchNanos = 0;
+    return nanos;
+  }
+
+  /**
+   * wraps a BreakoutListener so it can be notified like an ActiveChangedListener
+   */
+  private static final class Adapter<S extends Sprite> implements ActiveChangedListener<S> {
+
+    private final BreakoutListener<ActiveChangedEvent<S>> listener;
+
+    Adapter (BreakoutListener<ActiveChangedEvent<S>> listener)
+    {
+      this.listener = listener;
+    }
+
+    public void activeChanged (S sprite, int delta)
+    {
+      listener.happened(new ActiveChangedEvent<S>(sprite, delta));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <S extends Sprite> ActiveChangedListener<S>[] empty ()
+  {
+    return (ActiveChangedListener<S>[])none;
+  }
+
+  /**
+   * register the listener to be notified of activity changes
+   * until/unless explicitly deregistered
+   * @param listener the ActiveChangedListener<S> to be notified
+   */
+  public void register (ActiveChangedListener<S> listener)
+  {
+    if (indexOf(listener) >= 0)
+    {
+      return;
+    }
+    ActiveChangedListener<S>[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+    copy[listeners.length] = listener;
+    listeners = copy;
+  }
+
+  /**
+   * deregister the given listener
+   * @param listener the ActiveChangedListener<S> to unregister
+   */
+  public void deregister (ActiveChangedListener<S> listener)
+  {
+    int i = indexOf(listener);
+    if (i >= 0)
+    {
+      removeAt(i);
+    }
+  }
+
+  /**
+   * register an event listener, through an adapter
+   * @param listener the BreakoutListener<ActiveChangedEvent<S>> to be notified
+   */
+  @Override
+  public void register (BreakoutListener<ActiveChangedEvent<S>> listener)
+  {
+    if (indexOfAdapted(listener) < 0)
+    {
+      register(new Adapter<S>(listener));
+    }
+  }
+
+  /**
+   * deregister an event listener registered through an adapter
+   * @param listener the BreakoutListener<ActiveChangedEvent<S>> to unregister
+   */
+  @Override
+  public void deregister (BreakoutListener<ActiveChangedEvent<S>> listener)
+  {
+    int i = indexOfAdapted(listener);
+    if (i >= 0)
+    {
+      removeAt(i);
+    }
+  }
+
+  /**
+   * tell each listener that the given Sprite's status changed; this
+   * is the allocation-free path that Sprites use
+   * @param sprite the S whose status changed
+   */
+  public void notifyActiveChanged (S sprite)
+  {
+    int delta = (sprite.isActive() ? +1 : -1);
+    ActiveChangedListener<S>[] current = listeners;
+    if (timed && dispatchDepth == 0)
+    {
+      long start = System.nanoTime();
+      ++dispatchDepth;
+      try
+      {
+        for (int i = 0; i < current.length; i++)
+        {
+          current[i].activeChanged(sprite, delta);
+        }
+      }
+      finally
+      {
+        --dispatchDepth;
+        dispatchNanos += System.nanoTime() - start;
+      }
+      return;
+    }
+    for (int i = 0; i < current.length; i++)
+    {
+      current[i].activeChanged(sprite, delta);
+    }
+  }
+
+  /**
+   * tell each listener about an event that has already been created
+   * @param event the ActiveChangedEvent<S> to indicate has happened
+   */
+  @Override
+  public void notify (ActiveChangedEvent<S> event)
+  {
+    ActiveChangedListener<S>[] current = listeners;
+    for (int i = 0; i < current.length; i++)
+    {
+      if (current[i] instanceof Adapter)
+      {
+        ((Adapter<S>)current[i]).listener.happened(event);
+      }
+      else
+      {
+        current[i].activeChanged(event.getSprite(), event.getDelta());
+      }
+    }
+  }
+
+  @Override
+  public boolean anyListeners ()
+  {
+    return listeners.length != 0;
+  }
+
+  @Override
+  public void reset ()
+  {
+    listeners = empty();
+  }
+
+  /**
+   * @return the index of the listener, or -1 if it is not registered
+   */
+  private int indexOf (ActiveChangedListener<S> listener)
+  {
+    for (int i = 0; i < listeners.length; i++)
+    {
+      if (listeners[i].equals(listener))
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the index of the adapter wrapping the listener, or -1 if there is none
+   */
+  private int indexOfAdapted (BreakoutListener<ActiveChangedEvent<S>> listener)
+  {
+    for (int i = 0; i < listeners.length; i++)
+    {
+      if (listeners[i] instanceof Adapter &&
+          ((Adapter<S>)listeners[i]).listener.equals(listener))
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * replaces the listener array by a copy without the given entry
+   * @param i an int giving the index of the entry to drop
+   */
+  private void removeAt (int i)
+  {
+    ActiveChangedListener<S>[] copy = Arrays.copyOf(listeners, listeners.length - 1);
+    System.arraycopy(listeners, i + 1, copy, i, listeners.length - i - 1);
+    listeners = copy;
+  }
+
+}
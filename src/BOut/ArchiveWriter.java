@@ -0,0 +1,94 @@
+package BOut;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import BOut.BreakOutGame.Memento;
+
+/**
+ * Writes archives on a background thread, so that encoding and file
+ * I/O do not stall the game.  Each archive is written to a temporary
+ * file next to its final name and then renamed into place, so anyone
+ * listing archives (e.g., GameMenu's FileSet of .sav files) never sees
+ * a partly written one.
+ */
+public final class ArchiveWriter {
+
+  private ArchiveWriter () { }
+
+  /**
+   * suffix of temporary files; it must keep them from matching ".+\\.sav"
+   */
+  private static final String PartSuffix = ".part";
+
+  /**
+   * the single writer thread; archives are written in the order requested
+   */
+  private static final ExecutorService writer = Executors.newSingleThreadExecutor(
+      new ThreadFactory() {
+        public Thread newThread (Runnable r)
+        {
+          Thread thread = new Thread(r, "BreakOut archive writer");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  /**
+   * Queues a Memento to be written; the Memento must not be changed afterwards
+   * @param snapshot the Memento to write (already captured on the game thread)
+   * @param filename a String giving the name of the archive to create
+   * @return a Future that yields the archive File, or throws the failure
+   */
+  public static Future<File> write (final Memento snapshot, final String filename)
+  {
+    return writer.submit(new Callable<File>() {
+      public File call () throws IOException
+      {
+        return writeNow(snapshot, filename);
+      }
+    });
+  }
+
+  /**
+   * Writes a Memento to a temporary file and renames it to its final name
+   * @param snapshot the Memento to write
+   * @param filename a String giving the name of the archive to create
+   * @return the archive File
+   * @throws IOException if writing or renaming fails (the temporary file is removed)
+   */
+  public static File writeNow (Memento snapshot, String filename) throws IOException
+  {
+    Path target = Paths.get(filename).toAbsolutePath();
+    Path part = target.resolveSibling(target.getFileName() + PartSuffix);
+    try
+    {
+      SnapshotCodec.write(part.toString(), snapshot);
+      try
+      {
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException exc)
+      {
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException exc)
+    {
+      Files.deleteIfExists(part);
+      throw exc;
+    }
+    return target.toFile();
+  }
+
+}
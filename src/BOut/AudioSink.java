@@ -0,0 +1,32 @@
+package BOut;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * Where a SoundMixer sends the sound it mixes: a sound card line, or
+ * (for running without one, as in tests) nowhere.  A sink is used only
+ * by the mixer's audio thread.
+ */
+public interface AudioSink
+{
+  /**
+   * Makes the sink ready to take sound
+   * @param format the AudioFormat the mixer will write in
+   * @throws LineUnavailableException if there is no way to play sound
+   */
+  void open (AudioFormat format) throws LineUnavailableException;
+
+  /**
+   * Takes a block of mixed sound, blocking (as a sound card line does)
+   * until there is room for it, so that the mixer runs in real time
+   * @param data a byte[] holding the sound, in the format given to open
+   * @param length an int giving how many bytes of data to take
+   */
+  void write (byte[] data, int length);
+
+  /**
+   * Plays out anything written, then releases the sink
+   */
+  void close ();
+}
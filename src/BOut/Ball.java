@@ -1,13 +1,11 @@
 package BOut;
 
-import java.util.Random;
-
 import com.golden.gamedev.engine.*;
 import com.golden.gamedev.object.*;
 
 import static BOut.BreakOutEngine.*;
 
-public class Ball extends Sprite implements Cloneable
+public class Ball extends Sprite implements Cloneable, SweptMover
 {
   /**
    * the rotational speed of the ball, in radians per millisecond;
@@ -21,9 +19,9 @@ public class Ball extends Sprite implements Cloneable
   private transient BaseAudio audio;
 
   /**
-   * a source of randomness (used to avoid getting "stuck"
+   * elapsed time of our most recent movement step, in milliseconds
    */
-  private Random random = new Random();
+  private transient long stepMillis;
 	
   /**
    * the sound to make when bouncing off the wall
@@ -45,14 +43,14 @@ public class Ball extends Sprite implements Cloneable
   /**
    * event source for hearing about changes in status of Balls
    */
-  private static BreakoutEventSource<ActiveChangedEvent<Ball>> activitySource =
-    new BreakoutEventSource<ActiveChangedEvent<Ball>>();
+  private static ActiveChangedSource<Ball> activitySource =
+    new ActiveChangedSource<Ball>();
 
   /**
    * getter of event source for changes in activity status of Ball
-   * @return the current BreakoutEventSource<ActiveChangedEvent<Ball>>
+   * @return the current ActiveChangedSource<Ball>
    */
-  public static BreakoutEventSource<ActiveChangedEvent<Ball>> getActiveChangedSource ()
+  public static ActiveChangedSource<Ball> getActiveChangedSource ()
   {
     return activitySource;
   }
@@ -75,6 +73,39 @@ public class Ball extends Sprite implements Cloneable
     notifyActivityChanged();
   }
 
+  /**
+   * Makes a lost Ball (from a SpritePool) as good as new, at rest at the
+   * given position and without spin; does not change whether it is active
+   * @param x a double giving the new x position
+   * @param y a double giving the new y position
+   */
+  public void reset (double x, double y)
+  {
+    setLocation(x, y);
+    setSpeed(0, 0);
+    spin = 0;
+    stepMillis = 0;
+  }
+
+  /**
+   * moves as any Sprite does, remembering the length of the step
+   * @param elapsedTime a long giving the elapsed time in milliseconds
+   */
+  @Override
+  protected void updateMovement (long elapsedTime)
+  {
+    super.updateMovement(elapsedTime);
+    stepMillis = elapsedTime;
+  }
+
+  /**
+   * @return a long giving the elapsed time, in milliseconds, of our most recent movement step
+   */
+  public long getStepMillis ()
+  {
+    return stepMillis;
+  }
+
   /**
    * Set the velocity (speed and direction) of the Ball
    * @param magnitude a double giving the magnitude of the speed;
@@ -96,6 +127,14 @@ public class Ball extends Sprite implements Cloneable
     this.spin = spin;
   }
 
+  /**
+   * getter for ball spin
+   * @return a double giving the spin (radians per millisecond)
+   */
+  public double getSpin () {
+    return spin;
+  }
+
   /**
    * Must be set for any sounds to play.  If null, no sounds will be made when the ball
    * collides with something.
@@ -154,7 +193,7 @@ public class Ball extends Sprite implements Cloneable
    */
   private void bounce (int xFactor, int yFactor, double speed, String soundFile) {
     // can get stuck, so add a random component to the speed
-    speed += 0.03 * (random.nextFloat() - 0.5);
+    speed += 0.03 * (GameRandom.getGameRandom().nextDouble(GameRandom.Stream.BounceJitter) - 0.5);
     // obtain parallel / normal speeds for horizontal and vertical
     double vParallel = xFactor * this.getHorizontalSpeed() +
                        yFactor * this.getVerticalSpeed();
@@ -287,7 +326,7 @@ public class Ball extends Sprite implements Cloneable
   {
     if (activitySource != null && activitySource.anyListeners())
     {
-      activitySource.notify(new ActiveChangedEvent<Ball>(this));
+      activitySource.notifyActiveChanged(this);
     }
   }
 
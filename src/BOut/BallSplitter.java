@@ -0,0 +1,106 @@
+package BOut;
+
+import com.golden.gamedev.object.*;
+
+/**
+ * Makes the Ball splits asked for by "split" PowerUps, and serves the
+ * Balls of the simulator's stress mode.  A split turns one Ball in play
+ * into Ways Balls, fanned out SpreadAngle apart about its direction at
+ * the same speed; the new Balls are free (they do not use up
+ * ballsRemaining), but the game's cap on Balls in play still holds.
+ * <br>
+ * PowerUp strategies cannot reach the game's Sprites, so the strategy
+ * only records the split in the GameState; the game (or simulator)
+ * calls splitPending after each physics step.
+ */
+public final class BallSplitter {
+
+  private BallSplitter () { }
+
+  /**
+   * how many Balls a split Ball becomes
+   */
+  public static final int Ways = 3;
+
+  /**
+   * the angle between the Balls of a split, in radians
+   */
+  public static final double SpreadAngle = Math.PI / 8;
+
+  /**
+   * Makes the splits asked for since the last call, each of the first
+   * active Ball in the group
+   * @param balls the SpriteGroup of Balls
+   * @param pool the SpritePool<Ball> from which to take the new Balls
+   * @return an int giving how many Balls were added
+   */
+  public static int splitPending (SpriteGroup balls, SpritePool<Ball> pool)
+  {
+    GameState gs = GameState.getGameState();
+    int splits = gs.takeBallSplits();
+    if (splits == 0)
+    {
+      return 0;
+    }
+    Ball parent = firstActive(balls);
+    if (parent == null)
+    {
+      return 0;
+    }
+    double speed = Math.hypot(parent.getHorizontalSpeed(), parent.getVerticalSpeed());
+    double angle = Math.atan2(-parent.getHorizontalSpeed(), -parent.getVerticalSpeed());
+    int added = 0;
+    for (int split = 0; split < splits; split++)
+    {
+      for (int k = 1; k < Ways; k++)
+      {
+        if (gs.getBallsActive() >= GameState.getMaxBallsActive())
+        {
+          return added;
+        }
+        // alternate sides: +1, -1, +2, -2, ... spreads about the parent
+        int side = (k + 1) / 2 * ((k % 2 == 1) ? 1 : -1);
+        serve(pool, parent.getX(), parent.getY(), speed, angle + side * SpreadAngle);
+        ++added;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Puts a free Ball into play, whatever the cap
+   * @param pool the SpritePool<Ball> from which to take the Ball
+   * @param x a double giving the Ball's x position
+   * @param y a double giving the Ball's y position
+   * @param speed a double giving its speed, in pixels per millisecond
+   * @param angle a double giving its direction, as for Ball.setVelocityPolar
+   * @return the Ball
+   */
+  public static Ball serve (SpritePool<Ball> pool, double x, double y, double speed, double angle)
+  {
+    // whether new or reused, the Ball's one +1 activity change comes after this
+    GameState.getGameState().expectFreeBalls(1);
+    Ball ball = pool.obtain();
+    ball.reset(x, y);
+    ball.setVelocityPolar(speed, angle);
+    ball.setActive(true);
+    return ball;
+  }
+
+  /**
+   * @return the first active Ball in the group, or null if there is none
+   */
+  private static Ball firstActive (SpriteGroup balls)
+  {
+    Sprite[] sprites = balls.getSprites();
+    for (int i = 0, n = balls.getSize(); i < n; i++)
+    {
+      if (sprites[i].isActive())
+      {
+        return (Ball)sprites[i];
+      }
+    }
+    return null;
+  }
+
+}
@@ -1,55 +1,66 @@
-package BOut;
-import java.awt.image.BufferedImage;
-import com.golden.gamedev.object.Sprite;
-import com.golden.gamedev.object.SpriteGroup;
-
-public class BallsDisplay {
-
-
-//instances
-	private SpriteGroup spriteGroup;
-	private Sprite[] sprites;
-
-	//sprite accessor 
-		public SpriteGroup getSpriteGroup(){return spriteGroup;	}
-
-	
-	public BallsDisplay(int columns, int rows, BufferedImage image, int Posx, int PosY){
-
-		sprites = new Sprite[columns * rows];
-		spriteGroup = new SpriteGroup("ballDisplay");
-				int width = image.getWidth();
-		int height = image.getHeight();
-		
-		for (int i = 0; i < sprites.length; i++)
-
-		{
-			sprites[i] = new Sprite();
-			sprites[i].setImage(image);
-			sprites[i].setImmutable(true);
-			spriteGroup.add(sprites[i]);
-		}
-
-		for (int i = 0; i < columns; i++)
-			for (int j = 0; j < rows; j++)
-				sprites[i * rows + j].setLocation(Posx + 2 + (width + 2 + 2) * i, PosY - 2 - (height + 2 + 2) * j);
-
-	}
-
-	
-	public void showBalls(int amount)
-
-	{
-		if (amount > sprites.length) return;
-
-		for (int i = 0; i < sprites.length; i++)
-
-			if (i < amount)
-				sprites[i].setActive(true);
-			else
-				sprites[i].setActive(false);
-
-	}
-
-}
-
+package BOut;
+import java.awt.image.BufferedImage;
+import com.golden.gamedev.object.Sprite;
+import com.golden.gamedev.object.SpriteGroup;
+
+public class BallsDisplay {
+
+
+//instances
+	private SpriteGroup spriteGroup;
+	private Sprite[] sprites;
+	// how many sprites are active; -1 until showBalls is first called
+	private int shown = -1;
+
+	//sprite accessor 
+		public SpriteGroup getSpriteGroup(){return spriteGroup;	}
+
+	
+	public BallsDisplay(int columns, int rows, BufferedImage image, int Posx, int PosY){
+
+		sprites = new Sprite[columns * rows];
+		spriteGroup = new SpriteGroup("ballDisplay");
+				int width = image.getWidth();
+		int height = image.getHeight();
+		
+		for (int i = 0; i < sprites.length; i++)
+
+		{
+			sprites[i] = new Sprite();
+			sprites[i].setImage(image);
+			sprites[i].setImmutable(true);
+			spriteGroup.add(sprites[i]);
+		}
+
+		for (int i = 0; i < columns; i++)
+			for (int j = 0; j < rows; j++)
+				sprites[i * rows + j].setLocation(Posx + 2 + (width + 2 + 2) * i, PosY - 2 - (height + 2 + 2) * j);
+
+	}
+
+	
+	/* Only the sprites between the old amount and the new one change,
+	 * so when the amount is the one already shown nothing is done. */
+	public void showBalls(int amount)
+
+	{
+		// in multi-ball play there may be more balls than the display holds; it shows it full
+		if (amount > sprites.length) amount = sprites.length;
+		if (amount < 0) amount = 0;
+		if (amount == shown) return;
+
+		if (shown < 0)
+		{
+			for (int i = 0; i < sprites.length; i++)
+				sprites[i].setActive(i < amount);
+		}
+		else
+		{
+			for (int i = Math.min(shown, amount); i < Math.max(shown, amount); i++)
+				sprites[i].setActive(i < amount);
+		}
+		shown = amount;
+
+	}
+
+}
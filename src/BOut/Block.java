@@ -4,10 +4,13 @@ import com.golden.gamedev.object.*;
 import com.golden.gamedev.engine.*;
 import static BOut.BreakOutEngine.*;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Random;
-
+/**
+ * A Block is a view onto one slot of a BlockField, which holds its
+ * position, appearance, score value, hits still needed, and powerups;
+ * the Block itself is the Sprite that is drawn, and the handle the rest
+ * of the game uses.  A game makes its Blocks in its own BlockField (see
+ * BreakOutWorld.newBlock); a Block made on its own has a BlockField of its own.
+ */
 public class Block extends Sprite implements Cloneable
 {	
   /**
@@ -16,68 +19,34 @@ public class Block extends Sprite implements Cloneable
   private static int defaultValue = 50;
   
   /**
-   * the point value of the block; should not be negative
-   */
-  private int value = defaultValue;
-	
-  /**
-   * horiz position of the (center of) the block
-   */
-  private double xPos;
-  
-  /**
-   * vert position of the (center of) the block
+   * the BlockField holding our state (the point value, which should not
+   * be negative; the position; the BlockDesc describing width, height,
+   * and color, used to obtain the image; hits needed; powerups; and
+   * the last Miniball to hit us)
    */
-  private double yPos;
-  
+  private BlockField field;
+
   /**
-   * description of the block's width, height, and color;
-   * used to obtain its image
+   * our slot in the field
    */
-  private BlockDesc desc;
+  private int slot;
   
   /**
    * we need to know the game we're part of for when we
    * create a power-up
    */
-  private transient BreakOutGame ourGame;
+  private transient BreakOutWorld ourGame;
   
   /**
    * default number of times the block needs to be hit to destroy it
    */
   private static final int defaultHitsNeeded = 2;///////////////////////////////////////////////////
   
-  /**
-   * number of times still needs to be hit to destroy block
-   */
-  private int hitsNeeded = defaultHitsNeeded;
-  
-  /**
-   * the powerups that we may drop
-   */
-  private List<String> powerups = new LinkedList<String>();
-	
-  /**
-   * the probability for each powerup
-   */
-  private List<Float> probabilities = new LinkedList<Float>();
-  
-  /**
-   * random number stream for determining powerups
-   */
-  private static Random dice = new Random(); //if we decide to use random numbers elsewhere, they should probably
-	//all be unified into 1 class.
-
   /**
    * for blocks to play a sound when hit
    */
   private transient BaseAudio audio;
 	
-  /**
-   * to avoid double hits by same Miniball
-   */
-  private int lastMiniball = -1;
-  
   /**
    * a specific sound for when a block is destroyed
    */
@@ -86,14 +55,14 @@ public class Block extends Sprite implements Cloneable
   /**
    * event source for hearing about changes in status of Blocks 
    */
-  private static BreakoutEventSource<ActiveChangedEvent<Block>> activitySource =
-    new BreakoutEventSource<ActiveChangedEvent<Block>>();
+  private static ActiveChangedSource<Block> activitySource =
+    new ActiveChangedSource<Block>();
   
   /**
    * getter of event source for changes in activity status of Block
-   * @return the current BreakoutEventSource<ActiveChangedEvent<Block>>
+   * @return the current ActiveChangedSource<Block>
    */
-  public static BreakoutEventSource<ActiveChangedEvent<Block>> getActiveChangedSource ()
+  public static ActiveChangedSource<Block> getActiveChangedSource ()
   {
     return activitySource;
   }
@@ -111,23 +80,79 @@ public class Block extends Sprite implements Cloneable
   public Block ()
   {
     super();
+    initSlot(new BlockField(1), null, 0, 0);
     notifyActivityChanged();
   }
 
   /**
    * Constructor that takes in a BlockDesc and sets a location.
+   * The Block takes its size from the BlockDesc; its image is
+   * not rendered until refreshImage is called (BreakOutGame.addBlock
+   * does so), so Blocks can be created without any graphics.
+   * The Block gets a BlockField of its own, which is copied when it
+   * is added to a game; games make their Blocks with newBlock instead.
    * @param desc a BlockDesc for displaying the block
    * @param x a double giving the x position of the block
    * @param y a double giving the y position of the block
    */
   public Block (BlockDesc desc, double x, double y)
   {
-    super(desc.getImage(), x, y);
-    this.xPos = x;
-    this.yPos = y;
-    this.desc = desc;
+    this(new BlockField(1), desc, x, y);
+  }
+
+  /**
+   * Constructor that puts the new Block's state in a given BlockField,
+   * for making many Blocks at once (e.g., when decoding a snapshot)
+   * @param field the BlockField to hold the Block's state
+   * @param desc a BlockDesc for displaying the block
+   * @param x a double giving the x position of the block
+   * @param y a double giving the y position of the block
+   */
+  Block (BlockField field, BlockDesc desc, double x, double y)
+  {
+    super(x, y);
+    this.width  = desc.getWidth();
+    this.height = desc.getHeight();
+    initSlot(field, desc, x, y);
     notifyActivityChanged();
   }
+
+  /**
+   * gives a new Block a slot in a BlockField, with default value and hits needed
+   */
+  private void initSlot (BlockField field, BlockDesc desc, double x, double y)
+  {
+    this.field = field;
+    slot = field.newSlot(this, desc, x, y);
+    field.setValue(slot, defaultValue);
+    field.setHitsNeeded(slot, defaultHitsNeeded);
+    field.setAlive(slot, isActive());
+  }
+
+  /**
+   * @return the BlockField holding this Block's state
+   */
+  public BlockField getField ()
+  {
+    return field;
+  }
+
+  /**
+   * @return an int giving this Block's slot in its BlockField
+   */
+  public int getSlot ()
+  {
+    return slot;
+  }
+
+  /**
+   * called by BlockField when our state moves to another slot
+   */
+  void moveTo (BlockField field, int slot)
+  {
+    this.field = field;
+    this.slot = slot;
+  }
 	
   /**
    * Called when there is a collision with a ball. This counts as 2 hits.
@@ -144,7 +169,7 @@ public class Block extends Sprite implements Cloneable
    */
   public boolean newerMiniball (Miniball theMiniball)
   {
-    return theMiniball.getID() > this.lastMiniball;
+    return theMiniball.getID() > field.getLastMiniball(slot);
   }
   
   /**
@@ -153,7 +178,7 @@ public class Block extends Sprite implements Cloneable
    */
   public void collisionWithMiniball (Miniball theMiniball)
   {
-    lastMiniball = theMiniball.getID();
+    field.setLastMiniball(slot, theMiniball.getID());
     deliverHits(1);
   }
     
@@ -162,14 +187,15 @@ public class Block extends Sprite implements Cloneable
    * @param num an int giving the number of hits to deliver; should be >= 0
    */
   protected void deliverHits (int num) {
-    hitsNeeded -= num;
+    int hitsNeeded = field.getHitsNeeded(slot) - num;
+    field.setHitsNeeded(slot, hitsNeeded);
     if (hitsNeeded <= 0) {
       this.setActive(false);
       if (audio != null)
       {
         audio.play(BlockDestroySound);
       }
-      String kind = this.getPowerup();
+      PowerUpKind kind = this.getPowerup();
       if (kind != null)
       {
         ourGame.dropPowerUp(getXVal(), getYVal(), kind);
@@ -183,7 +209,7 @@ public class Block extends Sprite implements Cloneable
    */
   public int getValue ()
   {
-    return value;
+    return field.getValue(slot);
   }
 	
   /**
@@ -192,16 +218,101 @@ public class Block extends Sprite implements Cloneable
    */
   public void setValue (int v)
   {
-    value = v;
+    field.setValue(slot, v);
   }
 	
+  /**
+   * @return the BlockDesc giving the Block's appearance
+   */
+  public BlockDesc getDesc ()
+  {
+    return field.getDesc(slot);
+  }
+
+  /**
+   * @return an int giving the number of hits still needed to destroy the Block
+   */
+  int getHitsNeeded ()
+  {
+    return field.getHitsNeeded(slot);
+  }
+
+  /**
+   * used when restoring a Block from an archive
+   * @param hits an int giving the number of hits still needed to destroy the Block
+   */
+  void setHitsNeeded (int hits)
+  {
+    field.setHitsNeeded(slot, hits);
+  }
+
+  /**
+   * @return an int giving the ID of the last Miniball to hit this Block (-1 if none)
+   */
+  int getLastMiniball ()
+  {
+    return field.getLastMiniball(slot);
+  }
+
+  /**
+   * used when restoring a Block from an archive
+   * @param id an int giving the ID of the last Miniball to hit this Block
+   */
+  void setLastMiniball (int id)
+  {
+    field.setLastMiniball(slot, id);
+  }
+
+  /**
+   * @return an int giving the number of kinds of powerup this Block may drop
+   */
+  int getPowerupCount ()
+  {
+    return getPowerups().size();
+  }
+
+  /**
+   * @param i an int giving the index of a powerup of this Block
+   * @return the PowerUpKind at that index
+   */
+  PowerUpKind getPowerupKind (int i)
+  {
+    return getPowerups().getKind(i);
+  }
+
+  /**
+   * @param i an int giving the index of a powerup of this Block
+   * @return a float giving the probability of dropping that powerup
+   */
+  float getPowerupProbability (int i)
+  {
+    return getPowerups().getProbability(i);
+  }
+
+  /**
+   * @return the DropSampler giving the powerups this Block may drop
+   */
+  public DropSampler getPowerups ()
+  {
+    return field.getDrops(slot);
+  }
+
+  /**
+   * Sets all the powerups this Block may drop at once
+   * @param powerups a DropSampler (typically shared with other Blocks of the same template)
+   */
+  public void setPowerups (DropSampler powerups)
+  {
+    field.setDrops(slot, powerups);
+  }
+
   /**
    * Returns the X position of the Block.
    * @return a double giving the x position of the block
    */
   public double getXVal()
   {
-    return xPos;
+    return field.getX(slot);
   }
 	
   /**
@@ -210,7 +321,7 @@ public class Block extends Sprite implements Cloneable
    */
   public double getYVal ()
   {
-    return yPos;
+    return field.getY(slot);
   }
 	
   /**
@@ -223,44 +334,46 @@ public class Block extends Sprite implements Cloneable
   }
 	
   /**
-   * Sets the BreakOutGame variable for when the class needs to reference the level.
-   * @param game the BreakOutGame to use for powerups, etc.
+   * Sets the BreakOutWorld variable for when the class needs to reference the level.
+   * @param game the BreakOutWorld to use for powerups, etc.
    */
-  public void setGame (BreakOutGame game)
+  public void setGame (BreakOutWorld game)
   {
     ourGame = game;
   }
   
   /**
    * Adds a certain type of powerup to this block and sets the probability it will drop.
-   * @param powerup a Powerup to add as a possibility; note, we drop at most one Powerup
+   * @param kind a String naming the kind of powerup (see PowerUpFactory); note, we drop at most one Powerup
    * @param probability a float giving its probability 
    */
   public void addPowerup (String kind, float probability)
   {
-    powerups.add(kind);
-    probabilities.add(probability);
+    addPowerup(PowerUpFactory.getKind(kind), probability);
+  }
+
+  /**
+   * Adds a certain kind of powerup to this block and sets the probability it will drop.
+   * @param kind a PowerUpKind to add as a possibility; note, we drop at most one Powerup
+   * @param probability a float giving its probability 
+   */
+  public void addPowerup (PowerUpKind kind, float probability)
+  {
+    setPowerups(getPowerups().with(kind, probability));
   }
   
   /**
    * Call once on block destruction. Returns a random powerup, or null, based on the block settings.
-   * @return a String giving the kind of chosen according to the probabilities (may be null, for none)
+   * @return the PowerUpKind chosen according to the probabilities (may be null, for none)
    */
-  private String getPowerup ()
+  private PowerUpKind getPowerup ()
   {
-    // if(powerups.size() == 0) return null;
-    float percentile =     dice.nextFloat();
-    int idx = 0;
-    for (float prob : probabilities)
+    DropSampler drops = getPowerups();
+    if (!drops.canDrop())
     {
-      percentile -= prob;
-      if (percentile < 0.0f)
-      {
-        return powerups.get(idx);
-      }
-      ++idx;
+      return null;
     }
-    return null;
+    return drops.draw(GameRandom.getGameRandom().nextDouble(GameRandom.Stream.PowerUpDrops));
   }
 
   /**
@@ -271,6 +384,10 @@ public class Block extends Sprite implements Cloneable
   {
     boolean changed = (this.isActive() ^ newValue);
     super.setActive(newValue);
+    if (field != null)
+    {
+      field.setAlive(slot, newValue);
+    }
     if (changed)
     {
       notifyActivityChanged();
@@ -284,18 +401,30 @@ public class Block extends Sprite implements Cloneable
   {
     if (activitySource != null && activitySource.anyListeners())
     {
-      activitySource.notify(new ActiveChangedEvent<Block>(this));
+      activitySource.notifyActiveChanged(this);
     }
   }
 
   /**
-   * @return a memento (copy) of this Block
+   * @return a memento (copy) of this Block, with its state copied into a BlockField of its own
    */
   public Block memento ()
+  {
+    return memento(new BlockField(1));
+  }
+
+  /**
+   * Copies this Block, with the copy's state in a given BlockField
+   * @param into the BlockField to hold the copy's state
+   * @return the copy
+   */
+  Block memento (BlockField into)
   {
     try
     {
-      return (Block)this.clone();
+      Block copy = (Block)this.clone();
+      into.addCopy(this, copy);
+      return copy;
     }
     catch (CloneNotSupportedException exc)
     {
@@ -309,7 +438,7 @@ public class Block extends Sprite implements Cloneable
    */
   public void refreshImage ()
   {
-    this.setImage(desc.getImage());
+    this.setImage(getDesc().getImage());
   }
 
 }
@@ -9,7 +9,8 @@ import java.io.Serializable;
  * @author Eliot Moss
  * 
  * Describes the appearance of a rectangular block, namely
- * width, height, and RGB color. Caches the actual image.
+ * width, height, and RGB color. BlockDescs with the same
+ * appearance are equal; their image is cached by BlockImageCache.
  *
  */
 public class BlockDesc implements Serializable
@@ -40,11 +41,6 @@ public class BlockDesc implements Serializable
    */
   private final int b;
   
-  /**
-   * the constructed image; may be null!
-   */
-  private transient BufferedImage image;
-  
   /**
    * Construct a new BlockDesc object given values describing a block's appearance
    * @param width an int giving the width in pixels
@@ -103,15 +99,44 @@ public class BlockDesc implements Serializable
   }
 
   /**
-   * @return the image, creating it if necessary
+   * @return the image, from BlockImageCache (which creates it if necessary)
    */
   public BufferedImage getImage ()
   {
-    if (image == null)
+    return BlockImageCache.getImage(this);
+  }
+
+  /**
+   * @return a newly created image as described
+   */
+  BufferedImage render ()
+  {
+    return makeImage(width, height, r, g, b);
+  }
+
+  /**
+   * @return an int packing the color as 0xRRGGBB
+   */
+  public int getRGB ()
+  {
+    return ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
+  }
+
+  @Override
+  public boolean equals (Object other)
+  {
+    if (!(other instanceof BlockDesc))
     {
-      image = makeImage(width, height, r, g, b);
+      return false;
     }
-    return this.image;
+    BlockDesc d = (BlockDesc)other;
+    return width == d.width && height == d.height && r == d.r && g == d.g && b == d.b;
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return (width * 31 + height) * 31 + getRGB();
   }
 
   /**
@@ -0,0 +1,278 @@
+package BOut;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The state of a set of Blocks, kept as parallel arrays indexed by
+ * slot: position, size, hits still needed, score value, last Miniball
+ * to hit, appearance, drop table, and a bitset of which Blocks are
+ * alive.  Collision checks read these arrays directly; the Block
+ * objects are views onto their slots, used for rendering (they are
+ * Sprites) and as handles for the rest of the game.
+ * <br>
+ * Slots are handed out in the order Blocks are adopted and are never
+ * reused, so a slot number also gives a Block's place in the order in
+ * which Blocks were added to the game.
+ * <br>
+ * A BreakOutWorld makes its Blocks in its own field (see newBlock).
+ * A Block made on its own keeps its state in a BlockField of its own,
+ * of one slot, and is adopted into the world's field when added.
+ */
+public final class BlockField implements Serializable {
+
+  private double[] xs;
+  private double[] ys;
+  private int[] widths;
+  private int[] heights;
+  private int[] hitsNeeded;
+  private int[] values;
+  private int[] lastMiniballs;
+  private BlockDesc[] descs;
+  private DropSampler[] drops;
+  private long[] alive;
+  private Block[] views;
+
+  /**
+   * number of slots in use
+   */
+  private int size = 0;
+
+  /**
+   * Creates an empty field
+   * @param capacity an int giving the number of slots to allocate at first
+   */
+  public BlockField (int capacity)
+  {
+    allocate(Math.max(1, capacity));
+  }
+
+  /**
+   * Creates a copy of a field's slots, whose views are still the
+   * original's Blocks (see copySlots)
+   */
+  private BlockField (BlockField from)
+  {
+    int capacity = Math.max(1, from.size);
+    xs            = Arrays.copyOf(from.xs, capacity);
+    ys            = Arrays.copyOf(from.ys, capacity);
+    widths        = Arrays.copyOf(from.widths, capacity);
+    heights       = Arrays.copyOf(from.heights, capacity);
+    hitsNeeded    = Arrays.copyOf(from.hitsNeeded, capacity);
+    values        = Arrays.copyOf(from.values, capacity);
+    lastMiniballs = Arrays.copyOf(from.lastMiniballs, capacity);
+    descs         = Arrays.copyOf(from.descs, capacity);
+    drops         = Arrays.copyOf(from.drops, capacity);
+    views         = Arrays.copyOf(from.views, capacity);
+    alive         = Arrays.copyOf(from.alive, (capacity + 63) >>> 6);
+    size = from.size;
+  }
+
+  /**
+   * (re)allocates the arrays, keeping the slots in use
+   */
+  private void allocate (int capacity)
+  {
+    xs            = (xs == null) ? new double[capacity] : Arrays.copyOf(xs, capacity);
+    ys            = (ys == null) ? new double[capacity] : Arrays.copyOf(ys, capacity);
+    widths        = (widths == null) ? new int[capacity] : Arrays.copyOf(widths, capacity);
+    heights       = (heights == null) ? new int[capacity] : Arrays.copyOf(heights, capacity);
+    hitsNeeded    = (hitsNeeded == null) ? new int[capacity] : Arrays.copyOf(hitsNeeded, capacity);
+    values        = (values == null) ? new int[capacity] : Arrays.copyOf(values, capacity);
+    lastMiniballs = (lastMiniballs == null) ? new int[capacity] : Arrays.copyOf(lastMiniballs, capacity);
+    descs         = (descs == null) ? new BlockDesc[capacity] : Arrays.copyOf(descs, capacity);
+    drops         = (drops == null) ? new DropSampler[capacity] : Arrays.copyOf(drops, capacity);
+    views         = (views == null) ? new Block[capacity] : Arrays.copyOf(views, capacity);
+    int words = (capacity + 63) >>> 6;
+    alive         = (alive == null) ? new long[words] : Arrays.copyOf(alive, words);
+  }
+
+  /**
+   * Claims a new slot for a Block
+   * @param view the Block whose state the slot will hold
+   * @param desc the BlockDesc giving the Block's appearance and size
+   * @param x a double giving the x position in pixels
+   * @param y a double giving the y position in pixels
+   * @return an int giving the slot
+   */
+  int newSlot (Block view, BlockDesc desc, double x, double y)
+  {
+    if (size == xs.length)
+    {
+      allocate(2 * size);
+    }
+    int slot = size++;
+    xs[slot] = x;
+    ys[slot] = y;
+    widths[slot] = (desc == null) ? 0 : desc.getWidth();
+    heights[slot] = (desc == null) ? 0 : desc.getHeight();
+    descs[slot] = desc;
+    drops[slot] = DropSampler.None;
+    lastMiniballs[slot] = -1;
+    views[slot] = view;
+    return slot;
+  }
+
+  /**
+   * Makes a Block whose state is in a new slot of this field, with
+   * default value and hits needed
+   * @param desc the BlockDesc giving the Block's appearance and size
+   * @param x a double giving the x position in pixels
+   * @param y a double giving the y position in pixels
+   * @return the new Block
+   */
+  public Block newBlock (BlockDesc desc, double x, double y)
+  {
+    return new Block(this, desc, x, y);
+  }
+
+  /**
+   * Moves a Block's state into a new slot of this field, and makes the
+   * Block a view of that slot; a Block adopted again stays where it is
+   * @param block the Block to adopt
+   */
+  public void adopt (Block block)
+  {
+    BlockField from = block.getField();
+    if (from == this)
+    {
+      return;
+    }
+    int old = block.getSlot();
+    int slot = newSlot(block, from.descs[old], from.xs[old], from.ys[old]);
+    copySlot(from, old, this, slot);
+    block.moveTo(this, slot);
+  }
+
+  /**
+   * Copies all of this field's slots at once, for a memento of many of
+   * its Blocks: addCopy then makes each copied Block the view of its
+   * slot in the copy, without copying the slot again, and
+   * dropOriginalViews forgets the Blocks not copied
+   * @return the copy
+   */
+  BlockField copySlots ()
+  {
+    return new BlockField(this);
+  }
+
+  /**
+   * Forgets the original Blocks still viewing slots of a copy made by
+   * copySlots (those not copied), so the copy does not keep them
+   */
+  void dropOriginalViews ()
+  {
+    for (int slot = 0; slot < size; slot++)
+    {
+      if (views[slot] != null && views[slot].getField() != this)
+      {
+        views[slot] = null;
+      }
+    }
+  }
+
+  /**
+   * Copies a Block's state into a new slot of this field, e.g., for a
+   * memento; if this field is a copy of the Block's (see copySlots),
+   * the copy is given the slot already holding the Block's state
+   * @param block the Block whose state to copy
+   * @param copy the Block to be the view of the copy
+   */
+  void addCopy (Block block, Block copy)
+  {
+    BlockField from = block.getField();
+    int old = block.getSlot();
+    if (from != this && old < size && views[old] == block)
+    {
+      views[old] = copy;
+      copy.moveTo(this, old);
+      return;
+    }
+    int slot = newSlot(copy, from.descs[old], from.xs[old], from.ys[old]);
+    copySlot(from, old, this, slot);
+    copy.moveTo(this, slot);
+  }
+
+  /**
+   * copies everything but the view from one slot to another
+   */
+  private static void copySlot (BlockField from, int i, BlockField to, int j)
+  {
+    to.xs[j] = from.xs[i];
+    to.ys[j] = from.ys[i];
+    to.widths[j] = from.widths[i];
+    to.heights[j] = from.heights[i];
+    to.hitsNeeded[j] = from.hitsNeeded[i];
+    to.values[j] = from.values[i];
+    to.lastMiniballs[j] = from.lastMiniballs[i];
+    to.descs[j] = from.descs[i];
+    to.drops[j] = from.drops[i];
+    to.setAlive(j, from.isAlive(i));
+  }
+
+  /**
+   * @return an int giving the number of slots in use
+   */
+  public int size () { return size; }
+
+  /**
+   * @param slot an int giving a slot
+   * @return the Block that views that slot
+   */
+  public Block getView (int slot) { return views[slot]; }
+
+  /**
+   * @param slot an int giving a slot
+   * @return true iff the Block in the slot is alive (active)
+   */
+  public boolean isAlive (int slot)
+  {
+    return (alive[slot >>> 6] & (1L << slot)) != 0;
+  }
+
+  void setAlive (int slot, boolean isAlive)
+  {
+    if (isAlive)
+    {
+      alive[slot >>> 6] |= (1L << slot);
+    }
+    else
+    {
+      alive[slot >>> 6] &= ~(1L << slot);
+    }
+  }
+
+  /**
+   * Tests whether a Block's bounds overlap a rectangle (grown by slack
+   * on each side), without touching the Block itself
+   * @param slot an int giving the Block's slot
+   * @param x a double giving the left of the rectangle
+   * @param y a double giving the top of the rectangle
+   * @param width a double giving the width of the rectangle
+   * @param height a double giving the height of the rectangle
+   * @param slack a double giving the margin to allow on each side
+   * @return true iff they overlap
+   */
+  public boolean overlaps (int slot, double x, double y, double width, double height, double slack)
+  {
+    return xs[slot] < x + width + slack && x - slack < xs[slot] + widths[slot] &&
+           ys[slot] < y + height + slack && y - slack < ys[slot] + heights[slot];
+  }
+
+  public double getX (int slot) { return xs[slot]; }
+  public double getY (int slot) { return ys[slot]; }
+  public int getWidth (int slot) { return widths[slot]; }
+  public int getHeight (int slot) { return heights[slot]; }
+  public int getValue (int slot) { return values[slot]; }
+  public BlockDesc getDesc (int slot) { return descs[slot]; }
+  public DropSampler getDrops (int slot) { return drops[slot]; }
+
+  int getHitsNeeded (int slot) { return hitsNeeded[slot]; }
+  int getLastMiniball (int slot) { return lastMiniballs[slot]; }
+
+  void setValue (int slot, int value) { values[slot] = value; }
+  void setHitsNeeded (int slot, int hits) { hitsNeeded[slot] = hits; }
+  void setLastMiniball (int slot, int id) { lastMiniballs[slot] = id; }
+  void setDrops (int slot, DropSampler sampler) { drops[slot] = sampler; }
+
+}
@@ -0,0 +1,404 @@
+package BOut;
+
+import java.util.Arrays;
+
+import com.golden.gamedev.object.collision.CollisionShape;
+
+/**
+ * A uniform grid over the playing field that indexes Blocks by the
+ * cells their bounds overlap.  The cell size is normally the grid
+ * spacing of the level (grid_x and grid_y in the level file), so a
+ * typical Block sits in one cell, and a Ball need only be checked
+ * against the few Blocks in the cells that its bounds overlap.
+ * <br>
+ * The grid holds the slots of Blocks in a BlockField, and reads their
+ * bounds from the field's arrays.  Slots are handed out in the order
+ * Blocks are added to the game, so candidates, reported in slot order,
+ * come in the same order as the Blocks appear in their SpriteGroup.
+ * This keeps collision processing identical to checking every pair.
+ */
+public class BlockGrid
+{
+  /**
+   * slack, in pixels, added around probed bounds; Golden T rounds
+   * coordinates when testing rectangles for intersection
+   */
+  private static final int slack = 1;
+
+  /**
+   * initial capacity of each cell's arrays
+   */
+  private static final int initialCellCapacity = 4;
+
+  /**
+   * the BlockField holding the Blocks we index
+   */
+  private final BlockField field;
+
+  /**
+   * width of the area covered, in pixels; positions beyond it
+   * are clamped into the edge cells
+   */
+  private final int fieldWidth;
+
+  /**
+   * height of the area covered, in pixels
+   */
+  private final int fieldHeight;
+
+  /**
+   * width of one cell, in pixels
+   */
+  private int cellWidth;
+
+  /**
+   * height of one cell, in pixels
+   */
+  private int cellHeight;
+
+  /**
+   * number of columns of cells
+   */
+  private int columns;
+
+  /**
+   * number of rows of cells
+   */
+  private int rows;
+
+  /**
+   * the slots of the Blocks in each cell, in increasing order
+   */
+  private int[][] cellSlots;
+
+  /**
+   * number of Blocks in each cell
+   */
+  private int[] cellSizes;
+
+  /**
+   * number of Blocks currently indexed
+   */
+  private int size = 0;
+
+  /**
+   * slots of the candidates found by the most recent probe
+   */
+  private int[] found = new int[16];
+
+  /**
+   * Constructs an empty grid covering a field of the given size
+   * @param field the BlockField holding the Blocks to be indexed
+   * @param fieldWidth an int giving the width of the field in pixels
+   * @param fieldHeight an int giving the height of the field in pixels
+   * @param cellWidth an int giving the width of a cell in pixels
+   * @param cellHeight an int giving the height of a cell in pixels
+   */
+  public BlockGrid (BlockField field, int fieldWidth, int fieldHeight, int cellWidth, int cellHeight)
+  {
+    this.field       = field;
+    this.fieldWidth  = fieldWidth;
+    this.fieldHeight = fieldHeight;
+    allocateCells(cellWidth, cellHeight);
+  }
+
+  /**
+   * Changes the cell size, re-indexing any Blocks already present
+   * (their insertion order is preserved)
+   * @param cellWidth an int giving the width of a cell in pixels
+   * @param cellHeight an int giving the height of a cell in pixels
+   */
+  public void setCellSize (int cellWidth, int cellHeight)
+  {
+    if (cellWidth == this.cellWidth && cellHeight == this.cellHeight)
+    {
+      return;
+    }
+    // gather every Block once, in order, before rebuilding the cells
+    int count = 0;
+    for (int cell = 0; cell < cellSizes.length; cell++)
+    {
+      for (int i = 0; i < cellSizes[cell]; i++)
+      {
+        count = addFound(count, cellSlots[cell][i]);
+      }
+    }
+    count = sortAndDedup(found, count);
+    int[] slots = Arrays.copyOf(found, count);
+    allocateCells(cellWidth, cellHeight);
+    for (int i = 0; i < count; i++)
+    {
+      insert(slots[i]);
+    }
+  }
+
+  /**
+   * (re)creates the empty cell arrays for a given cell size
+   * @param cellWidth an int giving the width of a cell in pixels
+   * @param cellHeight an int giving the height of a cell in pixels
+   */
+  private void allocateCells (int cellWidth, int cellHeight)
+  {
+    this.cellWidth  = Math.max(1, cellWidth);
+    this.cellHeight = Math.max(1, cellHeight);
+    this.columns = Math.max(1, (fieldWidth  + this.cellWidth  - 1) / this.cellWidth);
+    this.rows    = Math.max(1, (fieldHeight + this.cellHeight - 1) / this.cellHeight);
+    int cells = columns * rows;
+    cellSlots = new int[cells][];
+    cellSizes = new int[cells];
+    size = 0;
+  }
+
+  /**
+   * Adds a Block to the index
+   * @param block the Block to add, which must already be in our BlockField
+   */
+  public void add (Block block)
+  {
+    if (block.getField() != field)
+    {
+      throw new IllegalArgumentException("Block is not in this grid's BlockField");
+    }
+    insert(block.getSlot());
+  }
+
+  /**
+   * places a Block in every cell its bounds overlap; slots arrive in
+   * increasing order, so each cell stays sorted
+   * @param slot an int giving the Block's slot
+   */
+  private void insert (int slot)
+  {
+    int col0 = column(field.getX(slot));
+    int col1 = column(field.getX(slot) + field.getWidth(slot));
+    int row0 = row(field.getY(slot));
+    int row1 = row(field.getY(slot) + field.getHeight(slot));
+    for (int r = row0; r <= row1; r++)
+    {
+      for (int c = col0; c <= col1; c++)
+      {
+        int cell = r * columns + c;
+        int n = cellSizes[cell];
+        if (cellSlots[cell] == null)
+        {
+          cellSlots[cell] = new int[initialCellCapacity];
+        }
+        else if (n == cellSlots[cell].length)
+        {
+          cellSlots[cell] = Arrays.copyOf(cellSlots[cell], 2 * n);
+        }
+        cellSlots[cell][n] = slot;
+        cellSizes[cell] = n + 1;
+      }
+    }
+    ++size;
+  }
+
+  /**
+   * Removes a Block from the index (it is fine if it is not present)
+   * @param block the Block to remove
+   */
+  public void remove (Block block)
+  {
+    if (block.getField() != field)
+    {
+      return;
+    }
+    int slot = block.getSlot();
+    boolean removed = false;
+    int col0 = column(field.getX(slot));
+    int col1 = column(field.getX(slot) + field.getWidth(slot));
+    int row0 = row(field.getY(slot));
+    int row1 = row(field.getY(slot) + field.getHeight(slot));
+    for (int r = row0; r <= row1; r++)
+    {
+      for (int c = col0; c <= col1; c++)
+      {
+        int cell = r * columns + c;
+        int[] slots = cellSlots[cell];
+        int n = cellSizes[cell];
+        for (int i = 0; i < n; i++)
+        {
+          if (slots[i] == slot)
+          {
+            // shift down, keeping slot order
+            System.arraycopy(slots, i + 1, slots, i, n - i - 1);
+            cellSizes[cell] = n - 1;
+            removed = true;
+            break;
+          }
+        }
+      }
+    }
+    if (removed)
+    {
+      --size;
+    }
+  }
+
+  /**
+   * Finds the Blocks whose cells overlap the given shape.  The results
+   * are available through getFound until the next probe, each Block
+   * appearing once, in slot order.
+   * @param shape the CollisionShape (normally a Ball's bounds) to probe
+   * @return an int giving the number of candidate Blocks found
+   */
+  public int probe (CollisionShape shape)
+  {
+    int col0 = column(shape.getX() - slack);
+    int col1 = column(shape.getX() + shape.getWidth() + slack);
+    int row0 = row(shape.getY() - slack);
+    int row1 = row(shape.getY() + shape.getHeight() + slack);
+    int count = 0;
+    for (int r = row0; r <= row1; r++)
+    {
+      for (int c = col0; c <= col1; c++)
+      {
+        int cell = r * columns + c;
+        for (int i = 0; i < cellSizes[cell]; i++)
+        {
+          count = addFound(count, cellSlots[cell][i]);
+        }
+      }
+    }
+    // a single cell is already in order and free of duplicates
+    if (col0 == col1 && row0 == row1)
+    {
+      return count;
+    }
+    return sortAndDedup(found, count);
+  }
+
+  /**
+   * Finds the Blocks whose cells overlap a rectangle, as probe does, but
+   * into the caller's array rather than the grid's, so that several
+   * threads may probe at once (while no Blocks are added or removed)
+   * @param x a double giving the left of the rectangle
+   * @param y a double giving the top of the rectangle
+   * @param width a double giving the width of the rectangle
+   * @param height a double giving the height of the rectangle
+   * @param into an int[] to receive the candidates, each once, in slot order
+   * @return an int giving the number of candidates found; if it is more
+   * than into.length, into was too small, and the probe should be made
+   * again with an array at least that long
+   */
+  public int probe (double x, double y, double width, double height, int[] into)
+  {
+    int col0 = column(x - slack);
+    int col1 = column(x + width + slack);
+    int row0 = row(y - slack);
+    int row1 = row(y + height + slack);
+    int count = 0;
+    for (int r = row0; r <= row1; r++)
+    {
+      for (int c = col0; c <= col1; c++)
+      {
+        int cell = r * columns + c;
+        for (int i = 0; i < cellSizes[cell]; i++)
+        {
+          if (count < into.length)
+          {
+            into[count] = cellSlots[cell][i];
+          }
+          ++count;
+        }
+      }
+    }
+    if (count > into.length || (col0 == col1 && row0 == row1))
+    {
+      return count;
+    }
+    return sortAndDedup(into, count);
+  }
+
+  /**
+   * @param i an int giving the index of a candidate from the most recent probe
+   * @return an int giving the slot, in our BlockField, of the candidate at that index
+   */
+  public int getFound (int i)
+  {
+    return found[i];
+  }
+
+  /**
+   * @return the BlockField holding the Blocks we index
+   */
+  public BlockField getField ()
+  {
+    return field;
+  }
+
+  /**
+   * @return an int giving the number of Blocks currently indexed
+   */
+  public int size ()
+  {
+    return size;
+  }
+
+  /**
+   * appends a candidate to the probe array, growing it if necessary
+   * @param count an int giving the number of candidates so far
+   * @param slot an int giving the candidate's slot
+   * @return an int giving the new number of candidates
+   */
+  private int addFound (int count, int slot)
+  {
+    if (count == found.length)
+    {
+      found = Arrays.copyOf(found, 2 * count);
+    }
+    found[count] = slot;
+    return count + 1;
+  }
+
+  /**
+   * sorts candidates by slot (insertion sort: the lists are
+   * short and mostly sorted) and drops duplicates
+   * @return an int giving the number of distinct candidates
+   */
+  private static int sortAndDedup (int[] slots, int count)
+  {
+    for (int i = 1; i < count; i++)
+    {
+      int slot = slots[i];
+      int j = i - 1;
+      while (j >= 0 && slots[j] > slot)
+      {
+        slots[j + 1] = slots[j];
+        --j;
+      }
+      slots[j + 1] = slot;
+    }
+    int distinct = 0;
+    for (int i = 0; i < count; i++)
+    {
+      if (distinct == 0 || slots[distinct - 1] != slots[i])
+      {
+        slots[distinct++] = slots[i];
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * @param x a double giving a horizontal position in pixels
+   * @return an int giving the column containing it, clamped to the grid
+   */
+  private int column (double x)
+  {
+    int c = (int)Math.floor(x / cellWidth);
+    return (c < 0) ? 0 : ((c >= columns) ? columns - 1 : c);
+  }
+
+  /**
+   * @param y a double giving a vertical position in pixels
+   * @return an int giving the row containing it, clamped to the grid
+   */
+  private int row (double y)
+  {
+    int r = (int)Math.floor(y / cellHeight);
+    return (r < 0) ? 0 : ((r >= rows) ? rows - 1 : r);
+  }
+
+}
@@ -0,0 +1,124 @@
+package BOut;
+
+import com.golden.gamedev.object.*;
+import com.golden.gamedev.object.collision.*;
+
+/**
+ * A CollisionGroup between moving sprites (group 1) and Blocks (group 2)
+ * that checks each moving sprite only against the Blocks in the
+ * BlockGrid cells that its bounds overlap, rather than against every
+ * Block.  Candidates are screened against the BlockField's arrays
+ * (alive, and bounds near the sprite's) before their Block is touched;
+ * the survivors go through Golden T's own isCollide.  The order of
+ * checks, and thus the order of calls to collided, is the same as
+ * Golden T's pairwise CollisionGroup, so collision sides and any
+ * per-Block bookkeeping come out the same.
+ */
+public abstract class BlockGridCollisionGroup extends CollisionGroup
+{
+  /**
+   * the index of the Blocks of group 2
+   */
+  private final BlockGrid grid;
+
+  /**
+   * the BlockField holding the Blocks' state
+   */
+  private final BlockField field;
+
+  /**
+   * Constructor
+   * @param grid the BlockGrid indexing the Blocks we check against
+   */
+  public BlockGridCollisionGroup (BlockGrid grid)
+  {
+    this.grid = grid;
+    this.field = grid.getField();
+  }
+
+  /**
+   * Mirrors BasicCollisionGroup.checkCollision, with the inner loop over
+   * the Blocks replaced by a probe of the grid
+   */
+  @Override
+  public void checkCollision ()
+  {
+    SpriteGroup movers = getGroup1();
+    if (!movers.isActive() || !getGroup2().isActive())
+    {
+      return;
+    }
+    Sprite[] sprites = movers.getSprites();
+    int size = movers.getSize();
+    for (int i = 0; i < size; i++)
+    {
+      Sprite mover = sprites[i];
+      if (!mover.isActive())
+      {
+        continue;
+      }
+      CollisionShape shape1 = getCollisionShape1(mover);
+      if (shape1 == null)
+      {
+        continue;
+      }
+      checkMover(mover, shape1, -1);
+      size = movers.getSize();
+    }
+  }
+
+  /**
+   * Checks one moving sprite against the Blocks in the cells that a
+   * shape overlaps, as checkCollision does
+   * @param mover the active Sprite to check
+   * @param probe the CollisionShape whose cells give the candidate Blocks
+   * (normally the mover's own, from getCollisionShape1)
+   * @param after an int; only Blocks in slots above it are checked
+   */
+  protected final void checkMover (Sprite mover, CollisionShape probe, int after)
+  {
+    int found = grid.probe(probe);
+    CollisionShape shape1 = getCollisionShape1(mover);
+    for (int j = 0; j < found; j++)
+    {
+      int slot = grid.getFound(j);
+      if (slot <= after || !field.isAlive(slot))
+      {
+        continue;  // already checked, or destroyed earlier in this pass
+      }
+      // the grid's cells are coarse; skip Blocks that cannot touch us
+      // (with a pixel to spare, as isCollide decides the edge cases)
+      if (!field.overlaps(slot, shape1.getX(), shape1.getY(), shape1.getWidth(), shape1.getHeight(), 1))
+      {
+        continue;
+      }
+      Block block = field.getView(slot);
+      CollisionShape shape2 = getCollisionShape2(block);
+      if (shape2 != null && isCollide(mover, block, shape1, shape2))
+      {
+        collided(mover, block);
+        if (!mover.isActive() || (shape1 = getCollisionShape1(mover)) == null)
+        {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the BlockGrid indexing the Blocks we check against
+   */
+  protected final BlockGrid getGrid ()
+  {
+    return grid;
+  }
+
+  /**
+   * @return the BlockField holding the Blocks' state
+   */
+  protected final BlockField getField ()
+  {
+    return field;
+  }
+
+}
@@ -0,0 +1,104 @@
+package BOut;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of the images rendered for
+ * BlockDescs.  Blocks hold on to their own image once it is set, so
+ * evicting an image only costs a re-render if a later Block asks for
+ * the same appearance; images for appearances no longer used (e.g.,
+ * those of earlier levels) are thus released rather than kept forever.
+ * Counters of hits, misses and evictions are kept for monitoring.
+ */
+public final class BlockImageCache {
+
+  private BlockImageCache () { }
+
+  /**
+   * the default number of images kept
+   */
+  public static final int DefaultCapacity = 256;
+
+  private static int capacity = DefaultCapacity;
+
+  private static long hits = 0;
+  private static long misses = 0;
+  private static long evictions = 0;
+
+  /**
+   * the images, in access order (eldest first)
+   */
+  private static final LinkedHashMap<BlockDesc,BufferedImage> images =
+    new LinkedHashMap<BlockDesc,BufferedImage>(64, 0.75f, true) {
+      protected boolean removeEldestEntry (Map.Entry<BlockDesc,BufferedImage> eldest)
+      {
+        if (size() > capacity)
+        {
+          ++evictions;
+          return true;
+        }
+        return false;
+      }
+    };
+
+  /**
+   * Returns the image for a BlockDesc, rendering it if it is not cached
+   * @param desc the BlockDesc whose image is wanted
+   * @return the BufferedImage
+   */
+  public static synchronized BufferedImage getImage (BlockDesc desc)
+  {
+    BufferedImage image = images.get(desc);
+    if (image != null)
+    {
+      ++hits;
+      return image;
+    }
+    ++misses;
+    image = desc.render();
+    images.put(desc, image);
+    return image;
+  }
+
+  /**
+   * Changes the number of images kept, evicting the least recently used if need be
+   * @param capacity an int giving the number of images to keep (at least 1)
+   */
+  public static synchronized void setCapacity (int capacity)
+  {
+    BlockImageCache.capacity = Math.max(1, capacity);
+    while (images.size() > BlockImageCache.capacity)
+    {
+      images.remove(images.keySet().iterator().next());
+      ++evictions;
+    }
+  }
+
+  /**
+   * @return an int giving the number of images kept at most
+   */
+  public static synchronized int getCapacity () { return capacity; }
+
+  /**
+   * @return an int giving the number of images currently cached
+   */
+  public static synchronized int size () { return images.size(); }
+
+  /**
+   * @return a long giving the number of requests answered from the cache
+   */
+  public static synchronized long getHits () { return hits; }
+
+  /**
+   * @return a long giving the number of requests that rendered an image
+   */
+  public static synchronized long getMisses () { return misses; }
+
+  /**
+   * @return a long giving the number of images evicted to respect the capacity
+   */
+  public static synchronized long getEvictions () { return evictions; }
+
+}
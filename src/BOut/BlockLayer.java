@@ -0,0 +1,270 @@
+package BOut;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.golden.gamedev.object.Background;
+import com.golden.gamedev.object.collision.CollisionRect;
+import com.golden.gamedev.util.ImageUtil;
+
+/**
+ * A cached picture of the Background with the Blocks of a BlockField
+ * drawn on it.  Blocks do not move, and change only when they are added
+ * or destroyed, so rather than drawing the Background and every Block
+ * each frame, we keep them in an opaque image (one blit per frame) and
+ * repaint only the rectangles of Blocks added or destroyed since the
+ * last frame.  If the Background scrolls, or too many rectangles pile up
+ * (e.g., while a level is loading), the whole image is repainted.
+ * <br>
+ * Blocks are drawn into the cache exactly where Sprite.render would draw
+ * them, and in slot order, which is the order PlayField draws them in.
+ * The Blocks under a dirty rectangle are found through the BlockGrid,
+ * so repainting costs the same however big the level is.
+ */
+public class BlockLayer implements ActiveChangedListener<Block>
+{
+  /**
+   * beyond this many dirty rectangles, repaint everything instead
+   */
+  private static final int MaxDirtyRects = 64;
+
+  private final BlockGrid grid;
+  private final BlockField field;
+  private final Background background;
+
+  /**
+   * the dirty rectangle being repainted, in Background coordinates, for probing the grid
+   */
+  private final CollisionRect probe = new CollisionRect();
+
+  /**
+   * the picture, covering the Background's clip (the part on screen)
+   */
+  private BufferedImage image;
+
+  /**
+   * the rectangles (in image coordinates) to repaint before the next blit
+   */
+  private final List<Rectangle> dirty = new ArrayList<Rectangle>();
+
+  /**
+   * whether the whole image must be repainted
+   */
+  private boolean allDirty = true;
+
+  /**
+   * the Background view (position and clip) the image was painted for
+   */
+  private double paintedX;
+  private double paintedY;
+  private Rectangle paintedClip;
+
+  private long fullRepaints = 0;
+  private long rectRepaints = 0;
+
+  /**
+   * Constructor
+   * @param grid the BlockGrid indexing the Blocks we draw (those in its BlockField)
+   * @param background the Background the Blocks are drawn on
+   */
+  public BlockLayer (BlockGrid grid, Background background)
+  {
+    this.grid = grid;
+    this.field = grid.getField();
+    this.background = background;
+  }
+
+  /**
+   * a destroyed Block of ours leaves a rectangle to repaint
+   */
+  public void activeChanged (Block block, int delta)
+  {
+    if (delta < 0 && block.getField() == field)
+    {
+      invalidate(block);
+    }
+  }
+
+  /**
+   * Marks the rectangle of a Block (e.g., one just added) for repainting
+   * @param block the Block whose rectangle must be repainted
+   */
+  public void invalidate (Block block)
+  {
+    if (allDirty)
+    {
+      return;
+    }
+    if (dirty.size() == MaxDirtyRects)
+    {
+      invalidateAll();
+      return;
+    }
+    int slot = block.getSlot();
+    dirty.add(new Rectangle(toImageX(field.getX(slot)), toImageY(field.getY(slot)),
+                            field.getWidth(slot), field.getHeight(slot)));
+  }
+
+  /**
+   * Marks the whole picture for repainting
+   */
+  public void invalidateAll ()
+  {
+    allDirty = true;
+    dirty.clear();
+  }
+
+  /**
+   * Brings the picture up to date and draws it where the Background would be drawn
+   * @param g the Graphics2D to draw on
+   */
+  public void render (Graphics2D g)
+  {
+    Rectangle clip = background.getClip();
+    if (image == null || !clip.equals(paintedClip) ||
+        background.getX() != paintedX || background.getY() != paintedY)
+    {
+      invalidateAll();
+    }
+    if (allDirty)
+    {
+      repaintAll(clip);
+    }
+    else if (!dirty.isEmpty())
+    {
+      repaintDirty();
+    }
+    g.drawImage(image, clip.x, clip.y, null);
+  }
+
+  /**
+   * repaints the whole picture for the current Background view
+   */
+  private void repaintAll (Rectangle clip)
+  {
+    if (image == null || image.getWidth() != clip.width || image.getHeight() != clip.height)
+    {
+      image = createImage(clip.width, clip.height);
+    }
+    paintedClip = new Rectangle(clip);
+    paintedX = background.getX();
+    paintedY = background.getY();
+    Graphics2D g = image.createGraphics();
+    try
+    {
+      paintBackground(g, new Rectangle(0, 0, clip.width, clip.height));
+      for (int slot = 0, n = field.size(); slot < n; slot++)
+      {
+        if (field.isAlive(slot))
+        {
+          paintBlock(g, slot);
+        }
+      }
+    }
+    finally
+    {
+      g.dispose();
+    }
+    allDirty = false;
+    dirty.clear();
+    ++fullRepaints;
+  }
+
+  /**
+   * repaints just the dirty rectangles
+   */
+  private void repaintDirty ()
+  {
+    Graphics2D g = image.createGraphics();
+    try
+    {
+      for (Rectangle rect : dirty)
+      {
+        paintBackground(g, rect);
+        // the grid holds only alive Blocks
+        probe.setBounds(rect.x + paintedX - paintedClip.x, rect.y + paintedY - paintedClip.y,
+                        rect.width, rect.height);
+        int found = grid.probe(probe);
+        for (int i = 0; i < found; i++)
+        {
+          int slot = grid.getFound(i);
+          if (field.overlaps(slot, probe.x, probe.y, probe.width, probe.height, 1))
+          {
+            paintBlock(g, slot);
+          }
+        }
+        ++rectRepaints;
+      }
+    }
+    finally
+    {
+      g.dispose();
+    }
+    dirty.clear();
+  }
+
+  /**
+   * paints the Background within a rectangle of the picture, and
+   * limits further painting to that rectangle
+   */
+  private void paintBackground (Graphics2D g, Rectangle rect)
+  {
+    g.setClip(rect);
+    // the Background draws itself at its clip's origin; our origin is there
+    g.translate(-paintedClip.x, -paintedClip.y);
+    background.render(g);
+    g.translate(paintedClip.x, paintedClip.y);
+  }
+
+  /**
+   * paints one Block, as Sprite.render would
+   */
+  private void paintBlock (Graphics2D g, int slot)
+  {
+    BufferedImage blockImage = field.getView(slot).getImage();
+    if (blockImage != null)
+    {
+      g.drawImage(blockImage, toImageX(field.getX(slot)), toImageY(field.getY(slot)), null);
+    }
+  }
+
+  /**
+   * where Sprite.render would put a Block's left edge, less the clip's origin
+   */
+  private int toImageX (double x)
+  {
+    return (int)(x - paintedX + paintedClip.x) - paintedClip.x;
+  }
+
+  private int toImageY (double y)
+  {
+    return (int)(y - paintedY + paintedClip.y) - paintedClip.y;
+  }
+
+  /**
+   * makes an opaque image suited to the screen, if there is one
+   */
+  private static BufferedImage createImage (int width, int height)
+  {
+    if (GraphicsEnvironment.isHeadless())
+    {
+      return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+    return ImageUtil.createImage(width, height);
+  }
+
+  /**
+   * @return a long giving the number of times the whole picture was repainted
+   */
+  public long getFullRepaints () { return fullRepaints; }
+
+  /**
+   * @return a long giving the number of Block rectangles repainted
+   */
+  public long getRectRepaints () { return rectRepaints; }
+
+}
@@ -0,0 +1,103 @@
+package BOut;
+
+import java.awt.Graphics2D;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.golden.gamedev.object.*;
+
+/**
+ * A PlayField whose Blocks (and Background) are drawn from a BlockLayer,
+ * with the other SpriteGroups drawn over them as usual.  The Blocks
+ * collide like any other group; only their drawing differs.
+ * Blocks are at the bottom layer, so drawing them with the Background
+ * does not change what is on top of what.
+ */
+public class BlockLayerPlayField extends TimedPlayField
+{
+  private final BlockLayer layer;
+
+  /**
+   * the group drawn by the layer
+   */
+  private final SpriteGroup blocks;
+
+  /**
+   * the Sprites to draw, sorted by the comparator; reused between frames
+   */
+  private Sprite[] sorted = new Sprite[100];
+
+  /**
+   * Constructor
+   * @param layer the BlockLayer that draws the Blocks and Background
+   * @param blocks the SpriteGroup of the Blocks the layer draws
+   */
+  public BlockLayerPlayField (BlockLayer layer, SpriteGroup blocks)
+  {
+    this.layer = layer;
+    this.blocks = blocks;
+  }
+
+  /**
+   * @return the BlockLayer that draws the Blocks and Background
+   */
+  public BlockLayer getBlockLayer ()
+  {
+    return layer;
+  }
+
+  @Override
+  protected void renderBackground (Graphics2D g)
+  {
+    layer.render(g);
+  }
+
+  @Override
+  protected void renderSpriteGroups (Graphics2D g)
+  {
+    for (SpriteGroup group : getGroups())
+    {
+      if (group != blocks && group.isActive())
+      {
+        group.render(g);
+      }
+    }
+  }
+
+  /**
+   * Mirrors PlayField's version, leaving out the Blocks
+   */
+  @Override
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected void renderSpriteGroups (Graphics2D g, Comparator comparator)
+  {
+    int count = 0;
+    for (SpriteGroup group : getGroups())
+    {
+      if (group == blocks || !group.isActive())
+      {
+        continue;
+      }
+      Sprite[] sprites = group.getSprites();
+      int size = group.getSize();
+      for (int i = 0; i < size; i++)
+      {
+        if (sprites[i].isActive() && sprites[i].isOnScreen())
+        {
+          if (count == sorted.length)
+          {
+            sorted = Arrays.copyOf(sorted, 2 * count);
+          }
+          sorted[count++] = sprites[i];
+        }
+      }
+    }
+    Arrays.sort(sorted, 0, count, comparator);
+    for (int i = 0; i < count; i++)
+    {
+      sorted[i].render(g);
+    }
+    Arrays.fill(sorted, 0, count, null);
+  }
+
+}
@@ -0,0 +1,259 @@
+package BOut;
+
+import com.golden.gamedev.object.*;
+import com.golden.gamedev.object.collision.*;
+
+/**
+ * Sets up the collision groups that implement the rules of play,
+ * shared by BreakOutGame and the headless simulator.
+ * <br>
+ * Balls and Miniballs collide with Blocks and the bounds in one of two
+ * ways: by Golden T's overlap tests (the default), or by sweeping their
+ * paths (see SweptCollisionGroup), which does not let fast Balls, or
+ * long frames, carry them through Blocks.  The sweep is chosen with
+ * setSweptCollisions, or the BOut.sweptCollisions system property.
+ * <br>
+ * With overlap tests, when there are many Balls or Miniballs their
+ * candidate Blocks are found on several cores (see
+ * ParallelBlockCollisionGroup); play is the same either way (the
+ * "MultiBall.parity" benchmark checks this, step by step).  This is off
+ * unless turned on with setParallelCollisions, or by setting the
+ * BOut.parallelCollisions system property to true.  In the results so
+ * far (bench/results, on one core) handing out the work cost more than
+ * it saved, even with 4000 Balls; turn it on only where MultiBallBench
+ * shows a gain.
+ */
+public final class BreakOutCollisions {
+
+  private BreakOutCollisions () { }
+
+  /**
+   * whether Balls and Miniballs sweep their paths
+   */
+  private static boolean sweptCollisions = Boolean.getBoolean("BOut.sweptCollisions");
+
+  /**
+   * whether Ball and Miniball overlap tests may use several cores
+   */
+  private static boolean parallelCollisions = Boolean.getBoolean("BOut.parallelCollisions");
+
+  /**
+   * Chooses how Balls and Miniballs collide with Blocks and the bounds,
+   * for collision groups added from now on
+   * @param swept a boolean, true to sweep their paths, false for overlap tests
+   */
+  public static void setSweptCollisions (boolean swept)
+  {
+    sweptCollisions = swept;
+  }
+
+  /**
+   * @return true iff Balls and Miniballs sweep their paths
+   */
+  public static boolean isSweptCollisions ()
+  {
+    return sweptCollisions;
+  }
+
+  /**
+   * Chooses whether Balls' and Miniballs' overlap tests against the
+   * Blocks may use several cores, for collision groups added from now on
+   * @param parallel a boolean, true to allow several cores, false for one
+   */
+  public static void setParallelCollisions (boolean parallel)
+  {
+    parallelCollisions = parallel;
+  }
+
+  /**
+   * @return true iff Balls' and Miniballs' overlap tests may use several cores
+   */
+  public static boolean isParallelCollisions ()
+  {
+    return parallelCollisions;
+  }
+
+  /**
+   * Registers with the PlayField the collision groups among the given
+   * SpriteGroups and the bounds of the Background
+   * @param playField the PlayField to add the collision groups to
+   * @param background the Background whose bounds Sprites can hit
+   * @param balls the SpriteGroup of Balls
+   * @param miniballs the SpriteGroup of Miniballs
+   * @param paddles the SpriteGroup of Paddles
+   * @param blocks the SpriteGroup of Blocks
+   * @param powerUps the SpriteGroup of PowerUps
+   * @param blockGrid the BlockGrid indexing the Blocks
+   */
+  public static void addCollisionGroups (PlayField playField, Background background,
+                                         SpriteGroup balls, SpriteGroup miniballs,
+                                         SpriteGroup paddles, SpriteGroup blocks,
+                                         SpriteGroup powerUps, BlockGrid blockGrid)
+  {
+    CollisionBounds boundBallColl = new CollisionBounds(background) {
+      public void collided (Sprite ball) {
+        Ball theBall = (Ball) ball;
+        // tell the Ball of the collision, and which side(s) are involved
+        theBall.collisionWithBounds(
+            this.isCollisionSide(CollisionBounds.TOP_COLLISION   ),
+            this.isCollisionSide(CollisionBounds.BOTTOM_COLLISION),
+            this.isCollisionSide(CollisionBounds.LEFT_COLLISION  ),
+            this.isCollisionSide(CollisionBounds.RIGHT_COLLISION ));
+      }
+    };
+    
+    CollisionBounds boundMiniballColl = new CollisionBounds(background) {
+      public void collided (Sprite miniball) {
+        Miniball theMiniball = (Miniball) miniball;
+        theMiniball.collisionWithBounds();
+      }
+    };
+
+    CollisionBounds boundPowerUpColl = new CollisionBounds(background) {
+      public void collided (Sprite powerUp) {
+        PowerUp thePowerUp = (PowerUp) powerUp;
+        thePowerUp.collisionWithBounds();
+      }
+    };
+    
+    CollisionGroup ballPaddleColl    = new CollisionGroup() {
+      public void collided (Sprite ball, Sprite paddle) {
+        Paddle thePaddle = (Paddle) paddle;
+        Ball theBall = (Ball) ball;
+        // tell the Ball of the collision (the Paddle doesn't care)
+        theBall.collisionWithPaddle(thePaddle);     
+      }
+    };
+    
+    CollisionGroup powerUpPaddleColl = new CollisionGroup() {
+      public void collided (Sprite powerUp, Sprite paddle) {
+        PowerUp thePowerUp = (PowerUp) powerUp;
+        thePowerUp.collisionWithPaddle();
+      }
+    };
+    
+    CollisionGroup ballBlockColl     = parallelCollisions ?
+        new ParallelBlockCollisionGroup(blockGrid) {
+          public void collided (Sprite ball, Sprite block) {
+            ballHitBlock((Ball)ball, (Block)block, getCollisionSide());
+          }
+        } :
+        new BlockGridCollisionGroup(blockGrid) {
+          public void collided (Sprite ball, Sprite block) {
+            ballHitBlock((Ball)ball, (Block)block, getCollisionSide());
+          }
+        };
+
+    CollisionGroup miniballBlockColl = parallelCollisions ?
+        new ParallelBlockCollisionGroup(blockGrid) {
+          public void collided (Sprite miniball, Sprite block) {
+            miniballHitBlock((Miniball)miniball, (Block)block);
+          }
+        } :
+        new BlockGridCollisionGroup(blockGrid) {
+          public void collided (Sprite miniball, Sprite block) {
+            miniballHitBlock((Miniball)miniball, (Block)block);
+          }
+        };
+
+    playField.addCollisionGroup(balls    , paddles, ballPaddleColl   );
+    playField.addCollisionGroup(powerUps , paddles, powerUpPaddleColl);
+    if (sweptCollisions)
+    {
+      addSweptCollisionGroups(playField, background, balls, miniballs, blocks, blockGrid);
+      playField.addCollisionGroup(powerUps , null   , boundPowerUpColl );
+      return;
+    }
+    playField.addCollisionGroup(balls    , null   , boundBallColl    );
+    playField.addCollisionGroup(miniballs, null   , boundMiniballColl);
+    playField.addCollisionGroup(powerUps , null   , boundPowerUpColl );
+    playField.addCollisionGroup(balls    , blocks , ballBlockColl    );
+    playField.addCollisionGroup(miniballs, blocks , miniballBlockColl);
+  }
+
+  /**
+   * Registers the groups by which Balls and Miniballs sweep their paths
+   * against the Blocks and the bounds, in place of the overlap tests
+   */
+  private static void addSweptCollisionGroups (PlayField playField, Background background,
+                                               SpriteGroup balls, SpriteGroup miniballs,
+                                               SpriteGroup blocks, BlockGrid blockGrid)
+  {
+    CollisionGroup ballSweptColl     = new SweptCollisionGroup(blockGrid, background) {
+      public void collided (Sprite ball, Sprite block) {
+        ballHitBlock((Ball)ball, (Block)block, getCollisionSide());
+      }
+      public void collidedWithBounds (Sprite ball, int side) {
+        ((Ball)ball).collisionWithBounds(
+            side == CollisionBounds.TOP_COLLISION,
+            side == CollisionBounds.BOTTOM_COLLISION,
+            side == CollisionBounds.LEFT_COLLISION,
+            side == CollisionBounds.RIGHT_COLLISION);
+      }
+    };
+
+    CollisionGroup miniballSweptColl = new SweptCollisionGroup(blockGrid, background) {
+      public void collided (Sprite miniball, Sprite block) {
+        miniballHitBlock((Miniball)miniball, (Block)block);
+      }
+      public void collidedWithBounds (Sprite miniball, int side) {
+        ((Miniball)miniball).collisionWithBounds();
+      }
+    };
+
+    playField.addCollisionGroup(balls    , blocks , ballSweptColl    );
+    playField.addCollisionGroup(miniballs, blocks , miniballSweptColl);
+  }
+
+  /**
+   * tells a Block and a Ball of their collision
+   * @param theBall the Ball
+   * @param theBlock the Block
+   * @param collisionSide an int giving the side of the Ball that hit the
+   * Block, as CollisionGroup.getCollisionSide gives it
+   */
+  private static void ballHitBlock (Ball theBall, Block theBlock, int collisionSide)
+  {
+    // tell the block it was hit by a Ball
+    theBlock.collisionWithBall();
+    // compute side of the Block that the Ball hit
+    // (determines how Ball bounces)
+    boolean onBottom = false;
+    boolean onTop    = false;
+    boolean onLeft   = false;
+    boolean onRight  = false;
+    // need to take direction into account to avoid double collisions
+    // (because of how Golden T computes collisions)
+    if        (((collisionSide & CollisionGroup.BOTTOM_TOP_COLLISION) != 0) && (theBall.getVerticalSpeed() > 0))
+    {
+      onBottom = true;
+    } else if (((collisionSide & CollisionGroup.TOP_BOTTOM_COLLISION) != 0) && (theBall.getVerticalSpeed() < 0))
+    {
+      onTop = true;
+    } else if (((collisionSide & CollisionGroup.LEFT_RIGHT_COLLISION) != 0) && (theBall.getHorizontalSpeed() < 0))
+    {
+      onLeft = true;
+    } else if (((collisionSide & CollisionGroup.RIGHT_LEFT_COLLISION) != 0) && (theBall.getHorizontalSpeed() > 0))
+    {
+      onRight = true;
+    }
+    // tell the Ball about its collision
+    theBall.collisionWithBlock(onTop, onBottom, onLeft, onRight);
+  }
+
+  /**
+   * tells a Block and a Miniball of their collision, unless already told
+   * @param theMiniball the Miniball
+   * @param theBlock the Block
+   */
+  private static void miniballHitBlock (Miniball theMiniball, Block theBlock)
+  {
+    // check only one side, and check that it has not been reported before
+    if (theBlock.newerMiniball(theMiniball))
+    {
+      theBlock.collisionWithMiniball(theMiniball);
+      theMiniball.collisionWithBlock(theBlock);
+    }
+  }
+
+}
@@ -2,6 +2,8 @@ package BOut;
 
 import com.golden.gamedev.*;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
 import BOut.BreakOutGame.Memento;
 
 /**
@@ -36,6 +38,11 @@ public class BreakOutEngine extends GameEngine {
    */
   public static final String SoundsDirectory = "sounds/";
   
+  /**
+   * name of an optional file declaring more PowerUp kinds (see PowerUpFactory.loadConfig)
+   */
+  public static final String PowerUpConfigFile = "powerups.properties";
+  
   /**
    * this code is for quitting the game; the value is
    * determined by the GoldenT GameEngine
@@ -78,6 +85,38 @@ public class BreakOutEngine extends GameEngine {
     return theEngine;
   }
   
+  /**
+   * initializes the engine, reads any PowerUp kind declarations, then
+   * resolves the PowerUp images and decodes the sounds once for the whole
+   * run; the sounds are played through a SoundMixer in place of the
+   * engine's own bsSound
+   */
+  @Override
+  public void initResources ()
+  {
+    super.initResources();
+    if (new File(PowerUpConfigFile).isFile())
+    {
+      try
+      {
+        PowerUpFactory.loadConfig(PowerUpConfigFile);
+      }
+      catch (IOException exc)
+      {
+        System.out.printf("Could not read %s; using the built-in PowerUps%nInfo:%n%s%n", PowerUpConfigFile, exc);
+      }
+      catch (IllegalArgumentException exc)
+      {
+        System.out.printf("Bad declaration in %s: %s%n", PowerUpConfigFile, exc.getMessage());
+      }
+    }
+    PowerUpFactory.preloadImages();
+    if (!(bsSound instanceof SoundMixer))
+    {
+      bsSound = new SoundMixer(bsSound, SoundsDirectory, SoundMixer.openSink(), SoundMixer.DefaultVoices);
+    }
+  }
+  
   /**
    * @param GameId an int indicates which "game" to play, namely
    * -1 to quit, 0 for the menu, and 1 for UMass BreakOut
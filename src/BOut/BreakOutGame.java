@@ -9,36 +9,110 @@ import com.golden.gamedev.object.collision.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.*;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static BOut.BreakOutEngine.*;
 import XmlImporter.*;
 
 
-public class BreakOutGame extends GameObject 
+public class BreakOutGame extends GameObject implements BreakOutWorld
 {
 //instances
   PlayField playField;
   Background background;
-  SpriteGroup balls;
-  SpriteGroup miniballs;
-  SpriteGroup paddles;
-  SpriteGroup blocks;
-  SpriteGroup powerUps;
+  final SpriteGroup balls     = new SpriteGroup("balls");
+  final SpriteGroup miniballs = new SpriteGroup("miniballs");
+  final SpriteGroup paddles   = new SpriteGroup("paddles");
+  final SpriteGroup blocks    = new StaticSpriteGroup("blocks");
+  final SpriteGroup powerUps  = new SpriteGroup("powerUps");
+
+  /**
+   * the groups whose Sprites move, and so are drawn between physics steps
+   */
+  private final SpriteGroup[] movingGroups = {balls, miniballs, powerUps};
+  BlockField blockField;
+  BlockGrid blockGrid;
+  BlockLayer blockLayer;
   Paddle gamePaddle;
+
+  /**
+   * turns frame time into fixed physics steps
+   */
+  FixedStepClock physicsClock = FixedStepClock.fromSystemProperties();
+
+  /**
+   * records our input, if the BOut.recordInput system property names a file to record to
+   */
+  private InputRecorder recorder = null;
+
+  /**
+   * plays back recorded input in place of the player's, if the
+   * BOut.replayInput system property names a log to play back
+   */
+  private ReplayInput replay = null;
+
+  /**
+   * per-frame timings, allocation, and Sprite counts; F3 shows them over
+   * the game (as does the BOut.showFrameStats system property), F4 writes
+   * them to a file
+   */
+  final FrameStats frameStats = new FrameStats();
+  private boolean showFrameStats = Boolean.getBoolean("BOut.showFrameStats");
+
+  /**
+   * true positions of the moving Sprites, while they are drawn between physics steps
+   */
+  private double[] trueXs = new double[32];
+  private double[] trueYs = new double[32];
   static final int PADDLE_WIDTH = 104;
   GameFont scoreFont;
   GameFont doneFont;
+
+  /**
+   * the lines of text shown over the game, each rasterized only when it changes
+   */
+  private HudText scoreText;
+  private HudText multiplierText;
+  private HudText ballsText;
+  private HudText miniballsText;
+  private HudText messageText;
+
+  /**
+   * the Balls, Miniballs and PowerUps in play, reused once spent
+   */
+  private final SpritePool<Ball> ballPool = new SpritePool<Ball>() {
+      protected Ball create ()
+      {
+        Ball ball = new Ball(400, 400);
+        addBall(ball);
+        return ball;
+      }
+    };
+  private final SpritePool<Miniball> miniballPool = new SpritePool<Miniball>() {
+      protected Miniball create ()
+      {
+        Miniball miniball = new Miniball();
+        addMiniball(miniball);
+        return miniball;
+      }
+    };
+  private final SpritePool<PowerUp> powerUpPool = new SpritePool<PowerUp>() {
+      protected PowerUp create ()
+      {
+        PowerUp powerUp = new PowerUp();
+        addPowerUp(powerUp);
+        return powerUp;
+      }
+    };
   boolean noEndSound = true;
   private static final String WIN_SOUND = SoundsDirectory + "you-win.wav";
   private static final String LOSE_SOUND = SoundsDirectory + "you-lose.wav";
@@ -64,34 +138,96 @@ public class BreakOutGame extends GameObject
     private final List<PowerUp> powerUps = new ArrayList<PowerUp>();
     private final List<Miniball> miniballs = new ArrayList<Miniball>();
     private final GameState state;
-    private static Memento makeMemento (BreakOutGame game, GameState state)   {      return new Memento(game, state);    }
+
+    /**
+     * the game's randomness as it was (null in archives made before it was recorded)
+     */
+    private final GameRandom random;
+    private static Memento makeMemento (BreakOutGame game, GameState state)   {      return new Memento(game.balls, game.gamePaddle, game.blocks, game.powerUps, game.miniballs, state);    }
+
+    /**
+     * captures the active Sprites of the given groups, the given state, and
+     * the current GameRandom, for games not run by a BreakOutGame (e.g., the
+     * headless simulator)
+     */
+    public static Memento makeMemento (SpriteGroup balls, Paddle paddle, SpriteGroup blocks,
+                                       SpriteGroup powerUps, SpriteGroup miniballs, GameState state)
+    {
+      return new Memento(balls, paddle, blocks, powerUps, miniballs, state);
+    }
+
+    /**
+     * assembles a Memento from Sprites already copied (e.g., read from an archive);
+     * the lists' contents are taken over by the Memento
+     */
+    Memento (List<Ball> balls, Paddle paddle, List<Block> blocks,
+             List<PowerUp> powerUps, List<Miniball> miniballs, GameState state,
+             GameRandom random)
+    {
+      this.balls.addAll(balls);
+      this.thePaddle = paddle;
+      this.blocks.addAll(blocks);
+      this.powerUps.addAll(powerUps);
+      this.miniballs.addAll(miniballs);
+      this.state = state;
+      this.random = random;
+    }
+
+    List<Ball>     getBalls     () { return balls;     }
+    Paddle         getPaddle    () { return thePaddle; }
+    List<Block>    getBlocks    () { return blocks;    }
+    List<PowerUp>  getPowerUps  () { return powerUps;  }
+    List<Miniball> getMiniballs () { return miniballs; }
+    GameState      getState     () { return state;     }
+    GameRandom     getRandom    () { return random;    }
+
+    /**
+     * @return a String summarizing what the Memento holds
+     */
+    @Override
+    public String toString ()
+    {
+      return String.format("Memento[%d balls, %d miniballs, %d blocks, %d power-ups; score %d]",
+          balls.size(), miniballs.size(), blocks.size(), powerUps.size(), state.getScore());
+    }
     
 
-    private Memento (BreakOutGame game, GameState state)
+    private Memento (SpriteGroup theBalls, Paddle paddle, SpriteGroup theBlocks,
+                     SpriteGroup thePowerUps, SpriteGroup theMiniballs, GameState state)
     {
-      for (Sprite ball : game.balls.getSprites())
+      for (Sprite ball : theBalls.getSprites())
       {
         if (ball != null && ball.isActive())
         {
           balls.add(((Ball)ball).memento());
         }
       }
-      thePaddle = game.gamePaddle.memento();
-      for (Sprite block : game.blocks.getSprites())
+      thePaddle = paddle.memento();
+      // the Blocks' slots are copied at once, from the field of the first
+      BlockField copies = null;
+      for (Sprite block : theBlocks.getSprites())
       {
         if (block != null && block.isActive())
         {
-          blocks.add(((Block)block).memento());
+          if (copies == null)
+          {
+            copies = ((Block)block).getField().copySlots();
+          }
+          blocks.add(((Block)block).memento(copies));
         }
       }
-      for (Sprite powerUp : game.powerUps.getSprites())
+      if (copies != null)
+      {
+        copies.dropOriginalViews();
+      }
+      for (Sprite powerUp : thePowerUps.getSprites())
       {
         if (powerUp != null && powerUp.isActive())
         {
           powerUps.add(((PowerUp)powerUp).memento());
         }
       }
-      for (Sprite miniball : game.miniballs.getSprites())
+      for (Sprite miniball : theMiniballs.getSprites())
       {
         if (miniball != null && miniball.isActive())
         {
@@ -99,12 +235,15 @@ public class BreakOutGame extends GameObject
         }
       }
       this.state = state.memento();
+      this.random = GameRandom.getGameRandom().memento();
     }
     
 
     public void restoreStateAndSprites (BreakOutGame g)
     {
       GameState.setGameState(this.state.memento());
+      GameRandom.setGameRandom((random == null) ? new GameRandom(GameRandom.chooseSeed())
+                                                : random.memento());
 
       g.gamePaddle = this.thePaddle.memento();
       g.addPaddle(g.gamePaddle);
@@ -119,7 +258,7 @@ public class BreakOutGame extends GameObject
       }
       for (Block b : this.blocks)
       {
-        g.addBlock(b.memento());
+        g.addBlock(b.memento(g.blockField));
       }
       for (PowerUp p : powerUps)
       {
@@ -145,34 +284,96 @@ public class BreakOutGame extends GameObject
   }
   
 
+  /**
+   * how long, in milliseconds of play, the outcome of an archive stays on screen
+   */
+  private static final long ArchiveReportMillis = 3000;
+
+  /**
+   * the archive being written in the background, if any
+   */
+  private Future<File> pendingArchive = null;
+
+  /**
+   * progress or outcome of the latest archive, shown in the Normal state
+   */
+  private String archiveReport = null;
+  private long archiveReportRemaining = 0;
+
+  /**
+   * captures a Memento now, on the game thread, and leaves encoding and
+   * writing it to the ArchiveWriter; checkArchive reports the outcome.
+   * While an archive is being written no other is made, so the outcome
+   * of each is reported.
+   */
   private void archiveGame ()
   {
-    try {
-      Memento snapshot = this.memento();
-      String filename = makeArchiveFileName();
-      FileOutputStream fout = new FileOutputStream(filename);
-      ObjectOutputStream oout = new ObjectOutputStream(fout);
-      oout.writeObject(snapshot);
-      oout.close();
+    if (pendingArchive != null)
+    {
+      archiveReport = "Archive not made: still writing the last one";
+      return;
     }
-    catch (FileNotFoundException exc)
+    String filename = makeArchiveFileName();
+    pendingArchive = ArchiveWriter.write(this.memento(), filename);
+    archiveReport = "Writing archive " + filename + " ...";
+  }
+
+  /**
+   * picks up the outcome of a finished archive, and ages the report of it
+   * @param elapsedTime a long giving the milliseconds since the last update
+   */
+  private void checkArchive (long elapsedTime)
+  {
+    if (pendingArchive != null)
     {
-      System.out.printf("Could not open output file for saving; giving up!%nInfo:%n%s", exc);
+      if (!pendingArchive.isDone())
+      {
+        return;
+      }
+      try {
+        archiveReport = "Archive saved as " + pendingArchive.get().getName();
+      }
+      catch (ExecutionException exc)
+      {
+        archiveReport = "Archive FAILED: " + exc.getCause();
+      }
+      catch (InterruptedException exc)
+      {
+        Thread.currentThread().interrupt();
+        archiveReport = "Archive interrupted";
+      }
+      pendingArchive = null;
+      archiveReportRemaining = ArchiveReportMillis;
     }
-    catch (IOException exc)
+    else if (archiveReport != null)
     {
-      System.out.printf("IO problem saving; giving up!%nInfo:%n%s", exc);
+      archiveReportRemaining -= elapsedTime;
+      if (archiveReportRemaining <= 0)
+      {
+        archiveReport = null;
+      }
     }
   }
 
+  /**
+   * reads an archive: one in SnapshotCodec's format, or else one made
+   * before that format existed, written with Java serialization (see LegacyArchive)
+   */
   public static Memento restoreSnapshot (String filename)
   {
+    if (SnapshotCodec.isSnapshotFile(filename))
+    {
+      try {
+        return SnapshotCodec.read(filename);
+      }
+      catch (IOException exc)
+      {
+        System.out.printf("IO exception restoring; giving up!%nInfo:%n%s", exc);
+        return null;
+      }
+    }
     try {
-      FileInputStream fin = new FileInputStream(filename);
-      ObjectInputStream oin = new ObjectInputStream(fin);
-      Memento snapshot = (Memento)oin.readObject();
-      oin.close();
-      return snapshot;
+      return LegacyArchive.read(filename);
     }
     catch (IOException exc)
     {
@@ -199,19 +400,36 @@ public class BreakOutGame extends GameObject
   @Override
   public void initResources () 
   {
+    if (snapshot == null)
+    {
+      startReplay();
+    }
     initEventSources();
+    ActiveChangedSource.setTimed(true);
     background = createBackground();
-    playField = createPlayField(background);
+    blockField = new BlockField(256);
+    blockGrid = createBlockGrid(background);
+    blockLayer = createBlockLayer(background);
     SpriteGroup[] groups = createSpriteGroups();
+    playField = createPlayField(background);
     addSpriteGroupsToPlayField(playField, groups);
     createAndAddCollisionGroups(playField, background);
     initializeFonts();
     setDisplayRate(60);
     if (snapshot == null)
     {
+      String levelFile = ((BreakOutEngine)parent).nextLevel;
+      long seed = GameRandom.chooseSeed();
+      if (replay != null)
+      {
+        levelFile = replay.getLog().getLevelFile();
+        seed = replay.getLog().getSeed();
+      }
+      GameRandom.startLevel(seed);
       GameState.getGameState().startLevel();
       createPaddle(background);
-      createBlocks();
+      createBlocks(levelFile);
+      startRecording(levelFile, seed);
     }
     else
     {
@@ -232,10 +450,55 @@ public class BreakOutGame extends GameObject
 
   private Background createBackground ()  {    return new ColorBackground(Color.gray, 800, 600);  }
 
+  /**
+   * creates the index of the Blocks in our BlockField, used for Ball and Miniball collisions;
+   * the cell size starts at the LevelLoader default grid and is reset
+   * by the loader once it has read the level's grid
+   */
+  private BlockGrid createBlockGrid (Background background)
+  {
+    final BlockGrid grid = new BlockGrid(blockField, background.getWidth(), background.getHeight(), 64, 32);
+    Block.getActiveChangedSource().register(
+        new ActiveChangedListener<Block>()
+        {
+          public void activeChanged (Block sprite, int delta)
+          {
+            if (delta < 0)
+            {
+              grid.remove(sprite);
+            }
+          }
+        }
+    );
+    return grid;
+  }
+
+  /**
+   * creates the cached picture of the Background and Blocks, which is
+   * repainted where Blocks are destroyed
+   */
+  private BlockLayer createBlockLayer (Background background)
+  {
+    BlockLayer layer = new BlockLayer(blockGrid, background);
+    Block.getActiveChangedSource().register(layer);
+    return layer;
+  }
+
+  /**
+   * sets the cell size of the Block index to the level's grid spacing
+   * @param xGrid an int giving the horizontal grid spacing in pixels
+   * @param yGrid an int giving the vertical grid spacing in pixels
+   */
+  public void setGridSpacing (int xGrid, int yGrid)
+  {
+    blockGrid.setCellSize(xGrid, yGrid);
+  }
+
   private PlayField createPlayField (Background background)
   {
-    // create the playing field
-    PlayField playField = new PlayField();
+    // create the playing field; the Blocks are drawn from their cached layer
+    BlockLayerPlayField playField = new BlockLayerPlayField(blockLayer, blocks);
+    playField.setFrameStats(frameStats);
     playField.setComparator(new Comparator<Sprite>(){
       public int compare (Sprite s1, Sprite s2)
       {
@@ -253,11 +516,6 @@ public class BreakOutGame extends GameObject
    *****************************************************************************/
   private SpriteGroup[] createSpriteGroups ()
   {
-    balls     			= new SpriteGroup("balls");
-    miniballs 			= new SpriteGroup("miniballs");
-    paddles   			= new SpriteGroup("paddles");
-    blocks    			= new SpriteGroup("blocks");
-    powerUps  			= new SpriteGroup("powerUps");
     ballsDisplay = new BallsDisplay(2, 5, getImageFromFile("Ball"), 0, 550);
     ballsDisplay.showBalls(GameState.getGameState().getBaseBallsRemaining());
     ballsStack = ballsDisplay.getSpriteGroup();
@@ -278,100 +536,8 @@ public class BreakOutGame extends GameObject
 
   private void createAndAddCollisionGroups (PlayField playField, Background background)
   {
-    CollisionBounds boundBallColl = new CollisionBounds(background) {
-      public void collided (Sprite ball) {
-        Ball theBall = (Ball) ball;
-        // tell the Ball of the collision, and which side(s) are involved
-        theBall.collisionWithBounds(
-            this.isCollisionSide(CollisionBounds.TOP_COLLISION   ),
-            this.isCollisionSide(CollisionBounds.BOTTOM_COLLISION),
-            this.isCollisionSide(CollisionBounds.LEFT_COLLISION  ),
-            this.isCollisionSide(CollisionBounds.RIGHT_COLLISION ));
-      }
-    };
-    
-    CollisionBounds boundMiniballColl = new CollisionBounds(background) {
-      public void collided (Sprite miniball) {
-        Miniball theMiniball = (Miniball) miniball;
-        theMiniball.collisionWithBounds();
-      }
-    };
-
-    CollisionBounds boundPowerUpColl = new CollisionBounds(background) {
-      public void collided (Sprite powerUp) {
-        PowerUp thePowerUp = (PowerUp) powerUp;
-        thePowerUp.collisionWithBounds();
-      }
-    };
-    
-    CollisionGroup ballPaddleColl    = new CollisionGroup() {
-      public void collided (Sprite ball, Sprite paddle) {
-        Paddle thePaddle = (Paddle) paddle;
-        Ball theBall = (Ball) ball;
-        // tell the Ball of the collision (the Paddle doesn't care)
-        theBall.collisionWithPaddle(thePaddle);     
-      }
-    };
-    
-    CollisionGroup powerUpPaddleColl = new CollisionGroup() {
-      public void collided (Sprite powerUp, Sprite paddle) {
-        PowerUp thePowerUp = (PowerUp) powerUp;
-        thePowerUp.collisionWithPaddle();
-      }
-    };
-    
-    CollisionGroup ballBlockColl     = new CollisionGroup() {
-      public void collided (Sprite ball, Sprite block) {
-        Block theBlock = (Block) block;
-        Ball theBall = (Ball) ball;
-        // tell the block it was hit by a Ball
-        theBlock.collisionWithBall();
-        // compute side of the Block that the Ball hit
-        // (determines how Ball bounces)
-        boolean onBottom = false;
-        boolean onTop    = false;
-        boolean onLeft   = false;
-        boolean onRight  = false;
-        // need to take direction into account to avoid double collisions
-        // (because of how Golden T computes collisions)
-        if        (((getCollisionSide() & BOTTOM_TOP_COLLISION) != 0) && (theBall.getVerticalSpeed() > 0))
-        {
-          onBottom = true;
-        } else if (((getCollisionSide() & TOP_BOTTOM_COLLISION) != 0) && (theBall.getVerticalSpeed() < 0))
-        {
-          onTop = true;
-        } else if (((getCollisionSide() & LEFT_RIGHT_COLLISION) != 0) && (theBall.getHorizontalSpeed() < 0))
-        {
-          onLeft = true;
-        } else if (((getCollisionSide() & RIGHT_LEFT_COLLISION) != 0) && (theBall.getHorizontalSpeed() > 0))
-        {
-          onRight = true;
-        }
-        // tell the Ball about its collision
-        theBall.collisionWithBlock(onTop, onBottom, onLeft, onRight);
-      }
-    };
-
-    CollisionGroup miniballBlockColl = new CollisionGroup() {
-      public void collided (Sprite miniball, Sprite block) {
-        Block theBlock = (Block)block;
-        Miniball theMiniball = (Miniball)miniball;
-        // check only one side, and check that it has not been reported before
-        if (theBlock.newerMiniball(theMiniball))
-        {
-          theBlock.collisionWithMiniball(theMiniball);
-          theMiniball.collisionWithBlock(theBlock);
-        }
-      }
-    };
-
-    playField.addCollisionGroup(balls    , paddles, ballPaddleColl   );
-    playField.addCollisionGroup(powerUps , paddles, powerUpPaddleColl);
-    playField.addCollisionGroup(balls    , null   , boundBallColl    );
-    playField.addCollisionGroup(miniballs, null   , boundMiniballColl);
-    playField.addCollisionGroup(powerUps , null   , boundPowerUpColl );
-    playField.addCollisionGroup(balls    , blocks , ballBlockColl    );
-    playField.addCollisionGroup(miniballs, blocks , miniballBlockColl);
+    BreakOutCollisions.addCollisionGroups(playField, background,
+        balls, miniballs, paddles, blocks, powerUps, blockGrid);
   }
 
 
@@ -382,12 +548,133 @@ public class BreakOutGame extends GameObject
     this.addPaddle(gamePaddle);
   }
 
-  private void createBlocks ()
+  private void createBlocks (String levelFile)
   {
     // set up and load the game:
     // this handles the blocks, etc.
     LevelLoader xmlLoader = new LevelLoader(this);
-    xmlLoader.loadGame(((BreakOutEngine)parent).nextLevel);
+    xmlLoader.loadGame(levelFile);
+  }
+
+  /**
+   * Opens the input log named by the BOut.replayInput system property,
+   * if any, to be played back in place of the player's input; the game
+   * is then set up as the recorded one was (level, seed, physics clock,
+   * and collision mode)
+   */
+  private void startReplay ()
+  {
+    String filename = System.getProperty("BOut.replayInput");
+    if (filename == null)
+    {
+      return;
+    }
+    try
+    {
+      InputLog log = new InputLog(filename);
+      physicsClock = log.createClock();
+      BreakOutCollisions.setSweptCollisions(log.isSweptCollisions());
+      replay = new ReplayInput(log);
+    }
+    catch (IOException exc)
+    {
+      System.out.printf("Could not open input log %s; playing normally%nInfo:%n%s%n", filename, exc);
+    }
+  }
+
+  /**
+   * Starts recording our input to the file named by the BOut.recordInput
+   * system property, if any
+   * @param levelFile a String naming the level being played
+   * @param seed a long giving the level's GameRandom seed
+   */
+  private void startRecording (String levelFile, long seed)
+  {
+    String filename = System.getProperty("BOut.recordInput");
+    if (filename == null)
+    {
+      return;
+    }
+    try
+    {
+      recorder = new InputRecorder(filename, levelFile, seed, physicsClock,
+                                   BreakOutCollisions.isSweptCollisions());
+    }
+    catch (IOException exc)
+    {
+      System.out.printf("Could not record input to %s%nInfo:%n%s%n", filename, exc);
+    }
+  }
+
+  /**
+   * Moves recorded input on to this frame's tick, and records this
+   * frame's input
+   * @param elapsedTime a long giving the real milliseconds since the last update
+   * @return a long giving the milliseconds to play for this frame: the
+   * recorded ones when replaying, otherwise elapsedTime
+   */
+  private long advanceInput (long elapsedTime)
+  {
+    if (replay != null)
+    {
+      replay.update(elapsedTime);
+      if (replay.isFinished())
+      {
+        // the player takes over
+        replay = null;
+      }
+      else
+      {
+        elapsedTime = replay.getElapsedMillis();
+      }
+    }
+    if (recorder != null)
+    {
+      BaseInput input = getBsInput();
+      try
+      {
+        recorder.record(elapsedTime, input.getMouseX(), input.getKeyPressed(), input.getMousePressed());
+      }
+      catch (IOException exc)
+      {
+        System.out.printf("Could not record input; recording stops%nInfo:%n%s%n", exc);
+        stopRecording();
+      }
+    }
+    return elapsedTime;
+  }
+
+  /**
+   * finishes the input log being recorded, if any
+   */
+  private void stopRecording ()
+  {
+    if (recorder == null)
+    {
+      return;
+    }
+    try
+    {
+      recorder.close();
+    }
+    catch (IOException exc)
+    {
+      System.out.printf("Could not finish the input log%nInfo:%n%s%n", exc);
+    }
+    recorder = null;
+  }
+
+  @Override
+  public void finish ()
+  {
+    ActiveChangedSource.setTimed(false);
+    stopRecording();
+    if (replay != null)
+    {
+      replay.cleanup();
+      replay = null;
+    }
+    super.finish();
   }
 
  
@@ -396,6 +683,11 @@ public class BreakOutGame extends GameObject
     GameFontManager fontMgr = new GameFontManager();
     scoreFont = fontMgr.getFont(new Font("serif", Font.BOLD, 16), Color.BLACK);
     doneFont  = fontMgr.getFont(new Font("sansserif", Font.BOLD, 16), new Color(128, 0, 0));
+    scoreText      = new HudText(scoreFont, "Score: ", 10, 10);
+    multiplierText = new HudText(scoreFont, "Multiplier: ", 10, 30);
+    ballsText      = new HudText(scoreFont, "Balls left: ", 10, 50);
+    miniballsText  = new HudText(scoreFont, "Miniballs left: ", 10, 70);
+    messageText    = new HudText(doneFont, null, 10, 110);
   }
 
   private void setDisplayRate (int fps)  {    this.setFPS(fps);  }
@@ -405,17 +697,71 @@ public class BreakOutGame extends GameObject
 
   public void update (long elapsedTime) 
   {
+    frameStats.startFrame(elapsedTime);
+    long start = System.nanoTime();
+    elapsedTime = advanceInput(elapsedTime);
     positionPaddleFromMouse();
     processInput();
+    processFrameStatsKeys();
     handleEndOfGame();
-    message = state.message();
+    long now = System.nanoTime();
+    frameStats.record(FrameStats.Metric.Input, now - start);
+    checkArchive(elapsedTime);
+    message = state.message(this);
+    start = System.nanoTime();
     state.performAction(this, elapsedTime);
+    frameStats.record(FrameStats.Metric.Physics, System.nanoTime() - start);
+    if (bsSound instanceof SoundMixer)
+    {
+      // start this tick's sounds, each once however often it was played
+      ((SoundMixer)bsSound).endTick();
+    }
+    frameStats.endUpdate();
+  }
+
+  /**
+   * F3 shows or hides the frame statistics, F4 writes them to a file; these
+   * are read from the player's keyboard even while replaying, and are not
+   * part of play
+   */
+  private void processFrameStatsKeys ()
+  {
+    switch (bsInput.getKeyPressed())
+    {
+    case KeyEvent.VK_F3:
+      showFrameStats = !showFrameStats;
+      break;
+    case KeyEvent.VK_F4:
+      String filename = makeArchiveFileName().replace(".sav", "-frames.txt");
+      try
+      {
+        frameStats.dumpToFile(filename);
+        archiveReport = "Frame statistics saved as " + filename;
+      }
+      catch (IOException exc)
+      {
+        archiveReport = "Frame statistics FAILED: " + exc;
+      }
+      archiveReportRemaining = ArchiveReportMillis;
+      break;
+    default:
+      break;
+    }
   }
 
 
   private void positionPaddleFromMouse ()
   {
-    gamePaddle.setX(this.getMouseX() - (PADDLE_WIDTH / 2));
+    gamePaddle.setX(paddleXForMouse(getBsInput().getMouseX()));
+  }
+
+  /**
+   * @param mouseX an int giving the mouse's x position
+   * @return a double giving the x position of the paddle's left edge, centered under the mouse
+   */
+  public static double paddleXForMouse (int mouseX)
+  {
+    return mouseX - (PADDLE_WIDTH / 2);
   }
 
 
@@ -439,11 +785,19 @@ public class BreakOutGame extends GameObject
         return Normal;
       }
       public InputState gotP (BreakOutGame game) { return Pausing; }
+      public String message (BreakOutGame game) { return game.archiveReport; }
       public void performAction (BreakOutGame game, long elapsedTime) {
+        // play proceeds in fixed steps, however long the frame was
         GameState gs = GameState.getGameState();
-        double msPerFrame = 1000.0D / (double)game.getCurrentFPS();
-        gs.decrementWaits((long)(msPerFrame + 0.5D));  // 0.5 to round
-        game.playField.update(elapsedTime);
+        long step = game.physicsClock.getStepMillis();
+        int steps = game.physicsClock.advance(elapsedTime);
+        game.frameStats.record(FrameStats.Metric.PhysicsSteps, steps);
+        for ( ; steps > 0; steps--)
+        {
+          gs.decrementWaits(step);
+          game.playField.update(step);
+          BallSplitter.splitPending(game.balls, game.ballPool);
+        }
       }
     },
     
@@ -526,6 +880,7 @@ public class BreakOutGame extends GameObject
       return Finish;
     }
     public String message() { return null; }
+    public String message (BreakOutGame game) { return message(); }
     public void performAction (BreakOutGame game, long elapsedTime) { }
   }
   
@@ -567,7 +922,7 @@ public class BreakOutGame extends GameObject
     // get here on any other key, or none
     default:
       // treat mouse button1 the same as M key
-      if (bsInput.isMousePressed(MouseEvent.BUTTON1))
+      if (getBsInput().isMousePressed(MouseEvent.BUTTON1))
       {
         state = state.gotM(this);
       }
@@ -579,27 +934,31 @@ public class BreakOutGame extends GameObject
    * We want to be able to have a current display  *
    * of balls. In other words, when we fire a ball *
    * we want to have ball less in our ball stack.  *
+   * The stacks change only when the counts do.    *
    *************************************************/
   private void updateDisplay()
   {
 	  GameState theState = GameState.getGameState();
-		 ballsDisplay.showBalls(theState.getBallsRemaining());
-	  miniballsDisplay.showBalls(GameState.getGameState().getMiniballsRemaining());
+	  ballsDisplay.showBalls(theState.getBallsRemaining());
+	  miniballsDisplay.showBalls(theState.getMiniballsRemaining());
   }
   
 
   private void startNewBall (GameState gs)
   {
-    Ball ball = new Ball(400, 400);       // start in center of screen
+    Ball ball = ballPool.obtain();
+    ball.reset(400, 400);                 // start in center of screen
     double speed = gs.getBallSpeed();
     double angle = 0.75D * Math.PI;  // 45 degrees down and to the left
     ball.setVelocityPolar(speed, angle);
     ball.setActive(true);
-    this.addBall(ball);
   }
 
 
-  protected BaseInput getBsInput () {  return bsInput; }
+  /**
+   * @return the BaseInput to read: recorded input while replaying, otherwise the player's
+   */
+  protected BaseInput getBsInput () {  return (replay != null) ? replay : bsInput; }
 
 
   private void handleEndOfGame ()
@@ -633,23 +992,109 @@ public class BreakOutGame extends GameObject
  
   public void render (Graphics2D g)
   {
+    long start = System.nanoTime();
+    int moved = moveToDrawnPositions(physicsClock.getAlpha());
     playField.render(g);
+    moveBackFromDrawnPositions(moved);
+    long now = System.nanoTime();
+    frameStats.record(FrameStats.Metric.Render, now - start);
     updateTextualDisplay(g);
     updateDisplay();
+    frameStats.record(FrameStats.Metric.TextDisplay, System.nanoTime() - now);
+    frameStats.endFrame(countActive(balls), countActive(miniballs),
+                        GameState.getGameState().getBlocksRemaining(), countActive(powerUps));
+    if (showFrameStats)
+    {
+      frameStats.renderOverlay(g, 795, 5);
+    }
+  }
+
+  /**
+   * @return an int giving the number of active Sprites in a group
+   */
+  private static int countActive (SpriteGroup group)
+  {
+    int count = 0;
+    Sprite[] sprites = group.getSprites();
+    for (int i = 0, n = group.getSize(); i < n; i++)
+    {
+      if (sprites[i].isActive())
+      {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * The picture is drawn between physics steps: the clock is a fraction
+   * of a step ahead of the last one taken.  We draw the moving Sprites
+   * that fraction of the way from where that step took them from to
+   * where it left them, so motion looks smooth whatever the frame rate.
+   * @param alpha a double giving the fraction of a step to draw at
+   * @return an int giving the number of Sprites moved
+   */
+  private int moveToDrawnPositions (double alpha)
+  {
+    int moved = 0;
+    for (SpriteGroup group : movingGroups)
+    {
+      Sprite[] sprites = group.getSprites();
+      for (int i = 0, n = group.getSize(); i < n; i++)
+      {
+        Sprite s = sprites[i];
+        if (moved == trueXs.length)
+        {
+          trueXs = Arrays.copyOf(trueXs, 2 * moved);
+          trueYs = Arrays.copyOf(trueYs, 2 * moved);
+        }
+        trueXs[moved] = s.getX();
+        trueYs[moved] = s.getY();
+        ++moved;
+        // forceX/forceY leave the old position alone
+        s.forceX(s.getOldX() + (s.getX() - s.getOldX()) * alpha);
+        s.forceY(s.getOldY() + (s.getY() - s.getOldY()) * alpha);
+      }
+    }
+    return moved;
+  }
+
+  /**
+   * puts the Sprites moved by moveToDrawnPositions back where they are
+   * @param moved an int giving the number of Sprites moved
+   */
+  private void moveBackFromDrawnPositions (int moved)
+  {
+    int k = 0;
+    for (SpriteGroup group : movingGroups)
+    {
+      Sprite[] sprites = group.getSprites();
+      for (int i = 0, n = group.getSize(); i < n && k < moved; i++, k++)
+      {
+        sprites[i].forceX(trueXs[k]);
+        sprites[i].forceY(trueYs[k]);
+      }
+    }
   }
 
  
+  /**
+   * draws the score, counts, and message; each HudText is rasterized
+   * again only if what it shows has changed since the last frame
+   */
   private void updateTextualDisplay (Graphics2D g)
   {
     GameState theState = GameState.getGameState();
-    scoreFont.drawString(g, "Score: " + theState.getScore(), 10, 10);
-    scoreFont.drawString(g, "Multiplier: " + theState.getMultiplier(), 10, 30);
-    scoreFont.drawString(g, "Balls left: " + theState.getBallsRemaining(), 10, 50);
-    scoreFont.drawString(g, "Miniballs left: " + theState.getMiniballsRemaining(), 10, 70);
-    if (message != null)
-    {
-      doneFont.drawString(g, message, 10, 110);
-    }
+    scoreText.setValue(theState.getScore());
+    multiplierText.setValue(theState.getMultiplier());
+    ballsText.setValue(theState.getBallsRemaining());
+    miniballsText.setValue(theState.getMiniballsRemaining());
+    messageText.setText(message);
+    scoreText.render(g);
+    multiplierText.render(g);
+    ballsText.render(g);
+    miniballsText.render(g);
+    messageText.render(g);
   }    
 
 
@@ -661,13 +1106,23 @@ public class BreakOutGame extends GameObject
   }
 
 
+  public Block newBlock (BlockDesc desc, double x, double y)
+  {
+    return blockField.newBlock(desc, x, y);
+  }
+
+
   public void addBlock (Block b)
   {
     b.refreshImage();
+    b.setBackground(background);
     b.setAudio(bsSound);
     b.setGame(this);
     b.setLayer(-1);
+    this.blockField.adopt(b);
     this.blocks.add(b);
+    this.blockGrid.add(b);
+    this.blockLayer.invalidate(b);
   }
 
 
@@ -701,23 +1156,18 @@ public class BreakOutGame extends GameObject
   }
   
 
-  public void dropPowerUp (double x, double y, String type)
+  public void dropPowerUp (double x, double y, PowerUpKind kind)
   {
-    PowerUp powerUp = PowerUpFactory.createPowerUp(type, this, x, y);
+    PowerUp powerUp = powerUpPool.obtain();
+    powerUp.reset(kind, x, y);
+    powerUp.refreshImage();
     powerUp.setSpeed(0, .1);
     powerUp.setActive(true);
-    this.addPowerUp(powerUp);
   }
 
   protected void fireBall ()
   {
-    GameState gs = GameState.getGameState();
-    Ball ball = new Ball(400, 400);       // start in center of screen
-    double speed = gs.getBallSpeed();
-    double angle = 0.75D * Math.PI;  // 45 degrees down and to the left
-    ball.setVelocityPolar(speed, angle);
-    ball.setActive(true);
-    this.addBall(ball);
+    startNewBall(GameState.getGameState());
   }
 
   protected void fireMiniball ()
@@ -726,10 +1176,11 @@ public class BreakOutGame extends GameObject
     Paddle p = this.gamePaddle;
     double xStart = p.getX() + p.getWidth() / 2;
     double yStart = p.getY() + p.getHeight() / 2;
-    Miniball miniball = new Miniball(xStart, yStart);
-    miniball.setActive(true);
+    Miniball miniball = miniballPool.obtain();
+    miniball.reset(xStart, yStart);
+    // a fresh number, so Blocks this Miniball hit in a former life count again
     miniball.setID(gs.obtainMiniballNumber());
+    miniball.setActive(true);
     gs.startMiniballWaitTime(3000);
-    this.addMiniball(miniball);
   }
 }
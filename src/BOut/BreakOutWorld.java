@@ -0,0 +1,66 @@
+package BOut;
+
+/**
+ * The operations by which levels, snapshots, and Blocks populate a
+ * game: BreakOutGame implements it for play on screen, and the
+ * headless simulator implements it to run the same rules without
+ * a GameEngine, graphics, or sound.
+ */
+public interface BreakOutWorld {
+
+  /**
+   * sets the level's grid spacing (used to index the Blocks)
+   * @param xGrid an int giving the horizontal grid spacing in pixels
+   * @param yGrid an int giving the vertical grid spacing in pixels
+   */
+  public void setGridSpacing (int xGrid, int yGrid);
+
+  /**
+   * add a Paddle to the world
+   * @param p the Paddle to add
+   */
+  public void addPaddle (Paddle p);
+
+  /**
+   * make a Block whose state is kept with the world's other Blocks;
+   * it is not in play until added with addBlock
+   * @param desc a BlockDesc for displaying the block
+   * @param x a double giving the x position of the block
+   * @param y a double giving the y position of the block
+   * @return the new Block
+   */
+  public Block newBlock (BlockDesc desc, double x, double y);
+
+  /**
+   * add a Block to the world
+   * @param b the Block to add
+   */
+  public void addBlock (Block b);
+
+  /**
+   * add a Ball to the world
+   * @param b the Ball to add
+   */
+  public void addBall (Ball b);
+
+  /**
+   * add a Miniball to the world
+   * @param m the Miniball to add
+   */
+  public void addMiniball (Miniball m);
+
+  /**
+   * add a PowerUp to the world
+   * @param p the PowerUp to add
+   */
+  public void addPowerUp (PowerUp p);
+
+  /**
+   * create a PowerUp of the given kind and start it falling
+   * @param x a double giving the x position at which to drop it
+   * @param y a double giving the y position at which to drop it
+   * @param kind the PowerUpKind of PowerUp to drop
+   */
+  public void dropPowerUp (double x, double y, PowerUpKind kind);
+
+}
@@ -1,10 +1,12 @@
 package BOut;
 
-import java.util.Set;
-import java.util.HashSet;
+import java.util.Arrays;
+
 /**
  * Class that manages listener registrations and notifications
- * for a source of events
+ * for a source of events.  Listeners are kept in an array that is
+ * replaced, never modified, when registrations change, so that
+ * notification does not allocate (as iterating a Set would).
  * 
  * @author Eliot Moss
  *
@@ -14,9 +16,15 @@ import java.util.HashSet;
 public class BreakoutEventSource<E extends BreakoutEvent> {
   
   /**
-   * current listeners
+   * current listeners, in order of registration
    */
-  private Set<BreakoutListener<E>> listeners = new HashSet<BreakoutListener<E>>();
+  private BreakoutListener<E>[] listeners = empty();
+
+  @SuppressWarnings("unchecked")
+  private static <E extends BreakoutEvent> BreakoutListener<E>[] empty ()
+  {
+    return (BreakoutListener<E>[])new BreakoutListener<?>[0];
+  }
 
   /**
    * register the listener to be notified of events from this source
@@ -25,7 +33,12 @@ public class BreakoutEventSource<E extends BreakoutEvent> {
    */
   public void register (BreakoutListener<E> listener)
   {
-    listeners.add(listener);
+    if (indexOf(listener) < 0)
+    {
+      BreakoutListener<E>[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+      copy[listeners.length] = listener;
+      listeners = copy;
+    }
   }
   
   /**
@@ -34,7 +47,13 @@ public class BreakoutEventSource<E extends BreakoutEvent> {
    */
   public void deregister (BreakoutListener<E> listener)
   {
-    listeners.remove(listener);
+    int i = indexOf(listener);
+    if (i >= 0)
+    {
+      BreakoutListener<E>[] copy = Arrays.copyOf(listeners, listeners.length - 1);
+      System.arraycopy(listeners, i + 1, copy, i, listeners.length - i - 1);
+      listeners = copy;
+    }
   }
   
   /**
@@ -43,9 +62,10 @@ public class BreakoutEventSource<E extends BreakoutEvent> {
    */
   public void notify (E event)
   {
-    for (BreakoutListener<E> listener : listeners)
+    BreakoutListener<E>[] current = listeners;
+    for (int i = 0; i < current.length; i++)
     {
-      listener.happened(event);
+      current[i].happened(event);
     }
   }
 
@@ -55,7 +75,7 @@ public class BreakoutEventSource<E extends BreakoutEvent> {
    */
   public boolean anyListeners ()
   {
-    return !listeners.isEmpty();
+    return listeners.length != 0;
   }
 
   /**
@@ -63,7 +83,22 @@ public class BreakoutEventSource<E extends BreakoutEvent> {
    */
   public void reset ()
   {
-    listeners.clear();
+    listeners = empty();
+  }
+
+  /**
+   * @return the index of the listener, or -1 if it is not registered
+   */
+  private int indexOf (BreakoutListener<E> listener)
+  {
+    for (int i = 0; i < listeners.length; i++)
+    {
+      if (listeners[i].equals(listener))
+      {
+        return i;
+      }
+    }
+    return -1;
   }
 
 }
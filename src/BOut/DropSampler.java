@@ -0,0 +1,225 @@
+package BOut;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The powerup drop table of a Block, compiled into an alias-method
+ * sampler (Vose's method): one random number picks a column, and one
+ * comparison picks between the column's own outcome and its alias, so
+ * a draw costs the same however many kinds the table has.  The outcomes
+ * are the kinds, plus "no powerup" for whatever probability they leave.
+ * <br>
+ * Probabilities mean what they always have in level files: the kinds
+ * are considered in order, each taking its share of the unit interval,
+ * so a table whose probabilities sum to more than 1 never drops the
+ * kinds past the point where the sum reaches 1.
+ * <br>
+ * DropSamplers are immutable; all the Blocks of a template share one.
+ */
+public final class DropSampler implements Serializable {
+
+  /**
+   * the table that never drops anything
+   */
+  public static final DropSampler None = new DropSampler(new PowerUpKind[0], new float[0]);
+
+  /**
+   * the kinds, in the order declared
+   */
+  private final PowerUpKind[] kinds;
+
+  /**
+   * the probabilities, as declared
+   */
+  private final float[] probabilities;
+
+  /**
+   * for each column, the probability of taking the column's own outcome
+   * (column i is kind i; the last column is "no powerup")
+   */
+  private final double[] cutoffs;
+
+  /**
+   * for each column, the outcome taken otherwise
+   */
+  private final int[] aliases;
+
+  /**
+   * whether any kind can be drawn at all
+   */
+  private final boolean canDrop;
+
+  /**
+   * Compiles a drop table
+   * @param kinds a PowerUpKind[] giving the kinds that may drop
+   * @param probabilities a float[] giving the probability of each kind
+   */
+  public DropSampler (PowerUpKind[] kinds, float[] probabilities)
+  {
+    if (kinds.length != probabilities.length)
+    {
+      throw new IllegalArgumentException("need one probability per kind");
+    }
+    this.kinds = kinds.clone();
+    this.probabilities = probabilities.clone();
+    int columns = kinds.length + 1;
+    double[] weights = new double[columns];
+    // kind i is drawn when the uniform u is below the running sum of the
+    // probabilities through i, and not below it for any earlier kind
+    double sum = 0.0;
+    double covered = 0.0;
+    boolean any = false;
+    for (int i = 0; i < kinds.length; i++)
+    {
+      sum += probabilities[i];
+      double upTo = Math.min(1.0, sum);
+      weights[i] = Math.max(0.0, upTo - covered);
+      any |= (weights[i] > 0.0);
+      covered = Math.max(covered, upTo);
+    }
+    weights[kinds.length] = 1.0 - covered;
+    this.canDrop = any;
+    this.cutoffs = new double[columns];
+    this.aliases = new int[columns];
+    buildAliases(weights, cutoffs, aliases);
+  }
+
+  /**
+   * fills in the alias table (Vose's method) for weights summing to 1
+   */
+  private static void buildAliases (double[] weights, double[] cutoffs, int[] aliases)
+  {
+    int n = weights.length;
+    double[] scaled = new double[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int smalls = 0;
+    int larges = 0;
+    for (int i = 0; i < n; i++)
+    {
+      scaled[i] = weights[i] * n;
+      if (scaled[i] < 1.0)
+      {
+        small[smalls++] = i;
+      }
+      else
+      {
+        large[larges++] = i;
+      }
+    }
+    while (smalls > 0 && larges > 0)
+    {
+      int less = small[--smalls];
+      int more = large[--larges];
+      cutoffs[less] = scaled[less];
+      aliases[less] = more;
+      scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+      if (scaled[more] < 1.0)
+      {
+        small[smalls++] = more;
+      }
+      else
+      {
+        large[larges++] = more;
+      }
+    }
+    // whatever is left has (up to rounding) probability 1 in its column
+    while (larges > 0)
+    {
+      int i = large[--larges];
+      cutoffs[i] = 1.0;
+      aliases[i] = i;
+    }
+    while (smalls > 0)
+    {
+      int i = small[--smalls];
+      cutoffs[i] = 1.0;
+      aliases[i] = i;
+    }
+  }
+
+  /**
+   * @param kind a PowerUpKind to add
+   * @param probability a float giving its probability
+   * @return a new DropSampler with the kind added at the end
+   */
+  public DropSampler with (PowerUpKind kind, float probability)
+  {
+    PowerUpKind[] moreKinds = Arrays.copyOf(kinds, kinds.length + 1);
+    float[] moreProbabilities = Arrays.copyOf(probabilities, probabilities.length + 1);
+    moreKinds[kinds.length] = kind;
+    moreProbabilities[probabilities.length] = probability;
+    return new DropSampler(moreKinds, moreProbabilities);
+  }
+
+  /**
+   * @return true iff some kind has a chance of dropping (if not, there is
+   * no need to draw a random number)
+   */
+  public boolean canDrop ()
+  {
+    return canDrop;
+  }
+
+  /**
+   * Draws the powerup (if any) to drop
+   * @param random a double, uniformly distributed in [0, 1), to draw with
+   * @return the PowerUpKind to drop, or null for none
+   */
+  public PowerUpKind draw (double random)
+  {
+    if (!canDrop)
+    {
+      return null;
+    }
+    double u = random * cutoffs.length;
+    int column = Math.min((int)u, cutoffs.length - 1);
+    int outcome = (u - column < cutoffs[column]) ? column : aliases[column];
+    return (outcome < kinds.length) ? kinds[outcome] : null;
+  }
+
+  /**
+   * @return an int giving the number of kinds in the table
+   */
+  public int size ()
+  {
+    return kinds.length;
+  }
+
+  /**
+   * @param i an int giving the index of a kind, in the order declared
+   * @return the PowerUpKind at that index
+   */
+  public PowerUpKind getKind (int i)
+  {
+    return kinds[i];
+  }
+
+  /**
+   * @param i an int giving the index of a kind, in the order declared
+   * @return a float giving its probability, as declared
+   */
+  public float getProbability (int i)
+  {
+    return probabilities[i];
+  }
+
+  /**
+   * DropSamplers with the same kinds and probabilities are equal
+   */
+  @Override
+  public boolean equals (Object other)
+  {
+    return (other instanceof DropSampler) &&
+      Arrays.equals(kinds, ((DropSampler)other).kinds) &&
+      Arrays.equals(probabilities, ((DropSampler)other).probabilities);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return Arrays.hashCode(kinds) * 31 + Arrays.hashCode(probabilities);
+  }
+
+}
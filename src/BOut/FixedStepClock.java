@@ -0,0 +1,117 @@
+package BOut;
+
+/**
+ * Turns the varying time between frames into a whole number of fixed
+ * physics steps, so that the game plays the same whatever the frame
+ * rate.  Frame time is added to an accumulator, and each frame takes as
+ * many steps as the accumulator holds; what is left over (less than a
+ * step) carries to the next frame, and gives the fraction of a step by
+ * which the picture lags the clock, for interpolating when drawing.
+ * <br>
+ * A frame takes at most a set number of steps.  After a long stall
+ * (e.g., a garbage collection pause) the time beyond that is dropped,
+ * and the game slows down for a frame, rather than taking a huge step
+ * or falling ever further behind.
+ */
+public final class FixedStepClock {
+
+  /**
+   * the default physics step, in milliseconds
+   */
+  public static final long DefaultStepMillis = 2;
+
+  /**
+   * the default most steps per frame (64 ms of play at the default step)
+   */
+  public static final int DefaultMaxStepsPerFrame = 32;
+
+  private final long stepMillis;
+  private final int maxStepsPerFrame;
+
+  /**
+   * frame time not yet taken as steps, in milliseconds
+   */
+  private long accumulated = 0;
+
+  /**
+   * total frame time dropped because frames would have taken too many steps
+   */
+  private long droppedMillis = 0;
+
+  /**
+   * Constructor
+   * @param stepMillis a long giving the physics step in milliseconds (at least 1)
+   * @param maxStepsPerFrame an int giving the most steps to take in one frame (at least 1)
+   */
+  public FixedStepClock (long stepMillis, int maxStepsPerFrame)
+  {
+    if (stepMillis < 1 || maxStepsPerFrame < 1)
+    {
+      throw new IllegalArgumentException("step and steps per frame must be positive");
+    }
+    this.stepMillis = stepMillis;
+    this.maxStepsPerFrame = maxStepsPerFrame;
+  }
+
+  /**
+   * @return a FixedStepClock whose step and most steps per frame come from
+   * the BOut.physicsStepMillis and BOut.maxPhysicsStepsPerFrame system
+   * properties, or the defaults
+   */
+  public static FixedStepClock fromSystemProperties ()
+  {
+    return new FixedStepClock(Long.getLong("BOut.physicsStepMillis", DefaultStepMillis),
+                              Integer.getInteger("BOut.maxPhysicsStepsPerFrame", DefaultMaxStepsPerFrame));
+  }
+
+  /**
+   * Adds a frame's time, and says how many steps to take for it
+   * @param elapsedMillis a long giving the time since the previous frame, in milliseconds
+   * @return an int giving the number of steps to take now
+   */
+  public int advance (long elapsedMillis)
+  {
+    accumulated += Math.max(0, elapsedMillis);
+    long steps = accumulated / stepMillis;
+    if (steps > maxStepsPerFrame)
+    {
+      droppedMillis += (steps - maxStepsPerFrame) * stepMillis;
+      steps = maxStepsPerFrame;
+    }
+    accumulated %= stepMillis;
+    return (int)steps;
+  }
+
+  /**
+   * @return a double in [0, 1) giving the fraction of a step accumulated
+   * but not yet taken
+   */
+  public double getAlpha ()
+  {
+    return accumulated / (double)stepMillis;
+  }
+
+  /**
+   * forgets any time accumulated (e.g., on resuming after a pause)
+   */
+  public void reset ()
+  {
+    accumulated = 0;
+  }
+
+  /**
+   * @return a long giving the physics step in milliseconds
+   */
+  public long getStepMillis () { return stepMillis; }
+
+  /**
+   * @return an int giving the most steps taken in one frame
+   */
+  public int getMaxStepsPerFrame () { return maxStepsPerFrame; }
+
+  /**
+   * @return a long giving the total frame time dropped, in milliseconds
+   */
+  public long getDroppedMillis () { return droppedMillis; }
+
+}
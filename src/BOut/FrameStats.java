@@ -0,0 +1,429 @@
+package BOut;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import com.golden.gamedev.object.CollisionManager;
+import com.golden.gamedev.object.SpriteGroup;
+import com.golden.gamedev.object.collision.CollisionBounds;
+
+/**
+ * Where the time goes, frame by frame: how long each part of the game's
+ * update and render takes, how much the game thread allocates, and how
+ * many Sprites of each kind are in play, each kept in a LogHistogram.
+ * The update's physics is broken down (through a TimedPlayField) into
+ * updating the Sprites and checking each collision group, and the time
+ * spent notifying activity listeners is reported on its own (it is
+ * part of the collision time, where Blocks are destroyed).
+ * <br>
+ * The game reports to us from its thread; the histograms may be read
+ * from any thread.  We can draw a summary over the game (renderOverlay),
+ * and write the full figures to a file (dump), e.g., to compare runs
+ * before and after a change.
+ */
+public final class FrameStats {
+
+  /**
+   * what a Metric's values measure
+   */
+  public static enum Unit
+  {
+    Nanos, Bytes, Count
+  }
+
+  /**
+   * what is measured each frame, in the order shown
+   */
+  public static enum Metric
+  {
+    FrameInterval ("frame interval",   Unit.Nanos),
+    Update        ("update",           Unit.Nanos),
+    Input         ("  input",          Unit.Nanos),
+    Physics       ("  physics",        Unit.Nanos),
+    SpriteUpdate  ("    sprites",      Unit.Nanos),
+    Collisions    ("    collisions",   Unit.Nanos),
+    EventDispatch ("      (events)",   Unit.Nanos),
+    PhysicsSteps  ("  steps",          Unit.Count),
+    Render        ("render",           Unit.Nanos),
+    TextDisplay   ("  text",           Unit.Nanos),
+    Allocated     ("allocated",        Unit.Bytes),
+    Balls         ("balls",            Unit.Count),
+    Miniballs     ("miniballs",        Unit.Count),
+    Blocks        ("blocks",           Unit.Count),
+    PowerUps      ("power-ups",        Unit.Count);
+
+    private final String label;
+    private final Unit unit;
+
+    private Metric (String label, Unit unit)
+    {
+      this.label = label;
+      this.unit = unit;
+    }
+
+    public String getLabel () { return label; }
+    public Unit getUnit () { return unit; }
+  }
+
+  /**
+   * the source of per-thread allocation counts, or null if the JVM has none
+   */
+  private static final com.sun.management.ThreadMXBean allocations = findAllocationCounter();
+
+  private final LogHistogram[] histograms = new LogHistogram[Metric.values().length];
+
+  /**
+   * for each collision group (in the order the PlayField checks them),
+   * its name and its histogram
+   */
+  private String[] collisionNames = new String[0];
+  private LogHistogram[] collisionHistograms = new LogHistogram[0];
+
+  /**
+   * sums over the current frame's physics steps
+   */
+  private long spriteUpdateNanos = 0;
+  private long collisionNanos = 0;
+  private long[] collisionGroupNanos = new long[0];
+
+  /**
+   * when the current frame's update started, and the game thread's
+   * allocation count then
+   */
+  private long updateStart;
+  private long allocatedAtStart = -1;
+
+  public FrameStats ()
+  {
+    for (int i = 0; i < histograms.length; i++)
+    {
+      histograms[i] = new LogHistogram();
+    }
+  }
+
+  /**
+   * @return the JVM's per-thread allocation counter, if it has one
+   */
+  private static com.sun.management.ThreadMXBean findAllocationCounter ()
+  {
+    try
+    {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean)
+      {
+        com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean)bean;
+        if (counter.isThreadAllocatedMemorySupported())
+        {
+          counter.setThreadAllocatedMemoryEnabled(true);
+          return counter;
+        }
+      }
+    }
+    catch (LinkageError err)
+    {
+      // not a JVM with com.sun.management
+    }
+    catch (UnsupportedOperationException exc)
+    {
+      // allocation counting cannot be turned on
+    }
+    return null;
+  }
+
+  /**
+   * @return a long giving the bytes the current thread has allocated, or -1 if unknown
+   */
+  private static long allocatedByThisThread ()
+  {
+    return (allocations == null) ? -1 : allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Starts a frame: call first thing in the game's update
+   * @param elapsedMillis a long giving the time since the previous frame, in milliseconds
+   */
+  public void startFrame (long elapsedMillis)
+  {
+    allocatedAtStart = allocatedByThisThread();
+    record(Metric.FrameInterval, elapsedMillis * 1000000L);
+    updateStart = System.nanoTime();
+  }
+
+  /**
+   * Records a value for the current frame
+   * @param metric the Metric measured
+   * @param value a long giving the value, in the Metric's Unit
+   */
+  public void record (Metric metric, long value)
+  {
+    histograms[metric.ordinal()].record(value);
+  }
+
+  /**
+   * Adds time spent updating the Sprites to the current frame's sum
+   * @param nanos a long giving the time in nanoseconds
+   */
+  void addSpriteUpdateNanos (long nanos)
+  {
+    spriteUpdateNanos += nanos;
+  }
+
+  /**
+   * Adds time spent checking a collision group to the current frame's sum
+   * @param index an int giving the group's position in the PlayField's list
+   * @param manager the group's CollisionManager (named when first seen)
+   * @param nanos a long giving the time in nanoseconds
+   */
+  void addCollisionNanos (int index, CollisionManager manager, long nanos)
+  {
+    if (index >= collisionGroupNanos.length)
+    {
+      int n = index + 1;
+      collisionGroupNanos = Arrays.copyOf(collisionGroupNanos, n);
+      collisionNames = Arrays.copyOf(collisionNames, n);
+      collisionHistograms = Arrays.copyOf(collisionHistograms, n);
+    }
+    if (collisionHistograms[index] == null)
+    {
+      collisionNames[index] = nameOf(manager);
+      collisionHistograms[index] = new LogHistogram();
+    }
+    collisionGroupNanos[index] += nanos;
+    collisionNanos += nanos;
+  }
+
+  /**
+   * @return a name for a collision group, from the names of its SpriteGroups
+   */
+  private static String nameOf (CollisionManager manager)
+  {
+    SpriteGroup first = manager.getGroup1();
+    String name = ((first == null) ? "?" : first.getName()) + " x ";
+    if (manager instanceof CollisionBounds)
+    {
+      // its second group is a placeholder
+      return name + "bounds";
+    }
+    if (manager instanceof SweptCollisionGroup)
+    {
+      return name + manager.getGroup2().getName() + "+bounds (swept)";
+    }
+    return name + ((manager.getGroup2() == null) ? "?" : manager.getGroup2().getName());
+  }
+
+  /**
+   * Ends the current frame's update: records its total time, and the sums
+   * over its physics steps; call last thing in the game's update
+   */
+  public void endUpdate ()
+  {
+    record(Metric.Update, System.nanoTime() - updateStart);
+    record(Metric.SpriteUpdate, spriteUpdateNanos);
+    record(Metric.Collisions, collisionNanos);
+    record(Metric.EventDispatch, ActiveChangedSource.takeDispatchNanos());
+    for (int i = 0; i < collisionGroupNanos.length; i++)
+    {
+      if (collisionHistograms[i] != null)
+      {
+        collisionHistograms[i].record(collisionGroupNanos[i]);
+        collisionGroupNanos[i] = 0;
+      }
+    }
+    spriteUpdateNanos = 0;
+    collisionNanos = 0;
+  }
+
+  /**
+   * Ends the current frame: records the bytes allocated since it started,
+   * and the Sprites in play; call last thing in the game's render
+   * @param balls an int giving the number of active Balls
+   * @param miniballs an int giving the number of active Miniballs
+   * @param blocks an int giving the number of Blocks remaining
+   * @param powerUps an int giving the number of active PowerUps
+   */
+  public void endFrame (int balls, int miniballs, int blocks, int powerUps)
+  {
+    if (allocatedAtStart >= 0)
+    {
+      record(Metric.Allocated, allocatedByThisThread() - allocatedAtStart);
+    }
+    record(Metric.Balls, balls);
+    record(Metric.Miniballs, miniballs);
+    record(Metric.Blocks, blocks);
+    record(Metric.PowerUps, powerUps);
+  }
+
+  /**
+   * @param metric a Metric
+   * @return the LogHistogram of its values
+   */
+  public LogHistogram getHistogram (Metric metric)
+  {
+    return histograms[metric.ordinal()];
+  }
+
+  /**
+   * Forgets everything recorded so far
+   */
+  public void reset ()
+  {
+    for (LogHistogram h : histograms)
+    {
+      h.reset();
+    }
+    for (LogHistogram h : collisionHistograms)
+    {
+      if (h != null)
+      {
+        h.reset();
+      }
+    }
+  }
+
+  /**
+   * @return a String giving a value in a convenient unit: milliseconds
+   * for times, kilobytes for bytes
+   */
+  private static String format (Unit unit, double value)
+  {
+    switch (unit)
+    {
+    case Nanos: return String.format("%.3f", value / 1.0e6);
+    case Bytes: return String.format("%.1fK", value / 1024.0);
+    default:    return String.format("%.0f", value);
+    }
+  }
+
+  /**
+   * the rows shown and written: each Metric, with the collision groups
+   * after Collisions (and EventDispatch, which is part of it)
+   */
+  private interface RowVisitor
+  {
+    void row (String label, Unit unit, LogHistogram h);
+  }
+
+  private void visitRows (RowVisitor visitor)
+  {
+    for (Metric m : Metric.values())
+    {
+      visitor.row(m.getLabel(), m.getUnit(), getHistogram(m));
+      if (m == Metric.EventDispatch)
+      {
+        for (int i = 0; i < collisionHistograms.length; i++)
+        {
+          if (collisionHistograms[i] != null)
+          {
+            visitor.row("      " + collisionNames[i], Unit.Nanos, collisionHistograms[i]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * font, colors, and layout of the overlay
+   */
+  private static final Font OverlayFont = new Font("monospaced", Font.PLAIN, 11);
+  private static final Color OverlayBack = new Color(0, 0, 0, 160);
+  private static final String OverlayRow = "%-24.24s%8s%8s%8s";
+
+  /**
+   * Draws the 50th and 99th percentiles and maximum of each row (times in
+   * milliseconds) in a translucent box
+   * @param g the Graphics2D to draw on
+   * @param right an int giving the right edge of the box
+   * @param top an int giving the top edge of the box
+   */
+  public void renderOverlay (final Graphics2D g, int right, int top)
+  {
+    final List<String> lines = new ArrayList<String>();
+    lines.add(String.format(OverlayRow, "(times in ms)", "p50", "p99", "max"));
+    visitRows(new RowVisitor() {
+      public void row (String label, Unit unit, LogHistogram h)
+      {
+        lines.add(String.format(OverlayRow, label,
+                                format(unit, h.getValueAtPercentile(50)),
+                                format(unit, h.getValueAtPercentile(99)),
+                                format(unit, h.getMax())));
+      }
+    });
+    g.setFont(OverlayFont);
+    FontMetrics metrics = g.getFontMetrics();
+    int width = metrics.stringWidth(lines.get(0)) + 8;
+    int lineHeight = metrics.getHeight();
+    int left = right - width;
+    Composite composite = g.getComposite();
+    g.setComposite(AlphaComposite.SrcOver);
+    g.setColor(OverlayBack);
+    g.fillRect(left, top, width, lines.size() * lineHeight + 6);
+    g.setComposite(composite);
+    g.setColor(Color.WHITE);
+    int baseline = top + 3 + metrics.getAscent();
+    for (String line : lines)
+    {
+      g.drawString(line, left + 4, baseline);
+      baseline += lineHeight;
+    }
+  }
+
+  /**
+   * Writes every row's count, mean, percentiles, and maximum
+   * @param out the PrintWriter to write to
+   */
+  public void dump (final PrintWriter out)
+  {
+    out.printf("# BreakOut frame statistics, %s%n", new Date());
+    out.printf("# times in ms, sizes in KB; allocation counting %s%n",
+               (allocations == null) ? "unavailable" : "on");
+    out.printf("%-32s %10s %10s %10s %10s %10s %10s %10s%n",
+               "row", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+    visitRows(new RowVisitor() {
+      public void row (String label, Unit unit, LogHistogram h)
+      {
+        out.printf("%-32s %10d %10s %10s %10s %10s %10s %10s%n", label, h.getCount(),
+                   format(unit, h.getMean()),
+                   format(unit, h.getValueAtPercentile(50)),
+                   format(unit, h.getValueAtPercentile(90)),
+                   format(unit, h.getValueAtPercentile(99)),
+                   format(unit, h.getValueAtPercentile(99.9)),
+                   format(unit, h.getMax()));
+      }
+    });
+  }
+
+  /**
+   * Writes the statistics (see dump) to a file
+   * @param filename a String naming the file (replaced if it exists)
+   * @throws IOException if the file cannot be written
+   */
+  public void dumpToFile (String filename) throws IOException
+  {
+    PrintWriter out = new PrintWriter(new FileWriter(filename));
+    try
+    {
+      dump(out);
+    }
+    finally
+    {
+      out.close();
+    }
+    if (out.checkError())
+    {
+      throw new IOException("error writing " + filename);
+    }
+  }
+
+}
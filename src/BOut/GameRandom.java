@@ -0,0 +1,274 @@
+package BOut;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The game's randomness, all from one seed chosen when a level starts.
+ * Each use of random numbers draws from its own stream, split from the
+ * seed, so that (for example) a powerup drop does not shift the jitter
+ * of every later Ball bounce; given the seed and the player's moves, a
+ * level plays out the same every time.
+ * <br>
+ * Each stream is a splitmix64 generator, as java.util.SplittableRandom
+ * is (and split from the seed as SplittableRandom splits, so it draws
+ * the same numbers): two longs, its state and its gamma, the odd step
+ * by which the state advances at each draw.  Those, with the seed and
+ * a count of the draws from each stream, are a GameRandom's whole
+ * state, which snapshots record and mementos copy, without replaying
+ * any draws.  As the state only advances by the gamma, a GameRandom
+ * can also be rebuilt from just the seed and the counts (as snapshots
+ * of version 2 record it).
+ * <br>
+ * Like GameState, there is one current GameRandom, shared by the game.
+ */
+public final class GameRandom implements Serializable {
+
+  /**
+   * the uses of random numbers, each with its own stream
+   */
+  public static enum Stream
+  {
+    /**
+     * the small random change of speed in each Ball bounce
+     */
+    BounceJitter,
+
+    /**
+     * which powerup, if any, a destroyed Block drops
+     */
+    PowerUpDrops
+  }
+
+  private static GameRandom current = new GameRandom(chooseSeed());
+
+  /**
+   * @return the current GameRandom
+   */
+  public static GameRandom getGameRandom () { return current; }
+
+  /**
+   * Installs a new current GameRandom, for a level starting
+   * @param seed a long giving the seed
+   * @return the new current GameRandom
+   */
+  public static GameRandom startLevel (long seed)
+  {
+    current = new GameRandom(seed);
+    return current;
+  }
+
+  /**
+   * installs a GameRandom (e.g., one restored from a snapshot) as the current one
+   */
+  static void setGameRandom (GameRandom random) { current = random; }
+
+  /**
+   * @return a long giving the seed for a new level: the value of the
+   * BOut.seed system property if it is set, otherwise an arbitrary one
+   */
+  public static long chooseSeed ()
+  {
+    Long seed = Long.getLong("BOut.seed");
+    return (seed != null) ? seed.longValue() : new SplittableRandom().nextLong();
+  }
+
+  /**
+   * as computed when a GameRandom kept only its seed and draws, so those still read
+   */
+  private static final long serialVersionUID = -8714345645385002495L;
+
+  /**
+   * the gamma of the generator from which the streams are split, as
+   * SplittableRandom's
+   */
+  private static final long GoldenGamma = 0x9e3779b97f4a7c15L;
+
+  private final long seed;
+
+  /**
+   * for each Stream, the number of draws so far
+   */
+  private final long[] draws;
+
+  /**
+   * for each Stream, its generator's state; null in a GameRandom
+   * serialized when only the seed and draws were kept
+   */
+  private final long[] states;
+
+  /**
+   * for each Stream, its generator's gamma (odd)
+   */
+  private final long[] gammas;
+
+  /**
+   * Constructor
+   * @param seed a long giving the seed from which all the streams are split
+   */
+  public GameRandom (long seed)
+  {
+    this.seed = seed;
+    int n = Stream.values().length;
+    this.draws = new long[n];
+    this.states = new long[n];
+    this.gammas = new long[n];
+    // as SplittableRandom(seed).split(), once for each stream
+    long root = seed;
+    for (int i = 0; i < n; i++)
+    {
+      states[i] = mix64(root += GoldenGamma);
+      gammas[i] = mixGamma(root += GoldenGamma);
+    }
+  }
+
+  /**
+   * Constructor of a copy
+   */
+  private GameRandom (long seed, long[] draws, long[] states, long[] gammas)
+  {
+    this.seed = seed;
+    this.draws = draws.clone();
+    this.states = states.clone();
+    this.gammas = gammas.clone();
+  }
+
+  /**
+   * Rebuilds a GameRandom from its seed and the draws taken from each stream
+   * @param seed a long giving the seed
+   * @param draws a long[] giving the number of draws from each Stream, in order
+   * @return a GameRandom whose next draws are those the original's would be
+   */
+  public static GameRandom restore (long seed, long[] draws)
+  {
+    checkStreams("draws", draws);
+    GameRandom random = new GameRandom(seed);
+    for (int i = 0; i < draws.length; i++)
+    {
+      random.states[i] += draws[i] * random.gammas[i];
+      random.draws[i] = draws[i];
+    }
+    return random;
+  }
+
+  /**
+   * Rebuilds a GameRandom from its whole state (e.g., read from a snapshot)
+   * @param seed a long giving the seed
+   * @param draws a long[] giving the number of draws from each Stream, in order
+   * @param states a long[] giving each Stream's generator state, in order
+   * @param gammas a long[] giving each Stream's generator gamma, in order
+   * @return a GameRandom whose next draws are those the original's would be
+   */
+  static GameRandom restore (long seed, long[] draws, long[] states, long[] gammas)
+  {
+    checkStreams("draws", draws);
+    checkStreams("states", states);
+    checkStreams("gammas", gammas);
+    for (long gamma : gammas)
+    {
+      if ((gamma & 1L) == 0)
+      {
+        throw new IllegalArgumentException("even gamma " + gamma);
+      }
+    }
+    return new GameRandom(seed, draws, states, gammas);
+  }
+
+  /**
+   * @throws IllegalArgumentException unless values has one entry per Stream
+   */
+  private static void checkStreams (String what, long[] values)
+  {
+    if (values.length != Stream.values().length)
+    {
+      throw new IllegalArgumentException("expected " + what + " for " + Stream.values().length +
+                                         " streams, got " + values.length);
+    }
+  }
+
+  /**
+   * splitmix64's output function, as SplittableRandom's mix64
+   */
+  private static long mix64 (long z)
+  {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * gives a split stream's gamma, as SplittableRandom's mixGamma
+   */
+  private static long mixGamma (long z)
+  {
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    z = (z ^ (z >>> 33)) | 1L;
+    int n = Long.bitCount(z ^ (z >>> 1));
+    return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+  }
+
+  /**
+   * Draws from a stream
+   * @param stream the Stream to draw from
+   * @return a double uniformly distributed in [0, 1)
+   */
+  public double nextDouble (Stream stream)
+  {
+    int i = stream.ordinal();
+    ++draws[i];
+    // as SplittableRandom.nextDouble: the top 53 bits of the next long
+    return (mix64(states[i] += gammas[i]) >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * @return the seed from which the streams were split
+   */
+  public long getSeed () { return seed; }
+
+  /**
+   * @param stream a Stream
+   * @return a long giving the number of draws taken from it so far
+   */
+  public long getDraws (Stream stream) { return draws[stream.ordinal()]; }
+
+  /**
+   * @return a long[] giving the number of draws from each Stream, in order
+   */
+  public long[] getDraws () { return draws.clone(); }
+
+  /**
+   * @return a long[] giving each Stream's generator state, in order
+   */
+  long[] getStates () { return states.clone(); }
+
+  /**
+   * @return a long[] giving each Stream's generator gamma, in order
+   */
+  long[] getGammas () { return gammas.clone(); }
+
+  /**
+   * @return a memento (copy) of this GameRandom, which continues as this one would
+   */
+  public GameRandom memento ()
+  {
+    return new GameRandom(seed, draws, states, gammas);
+  }
+
+  /**
+   * after deserialization of a GameRandom that kept only its seed and
+   * draws, the streams are rebuilt from them
+   */
+  private Object readResolve ()
+  {
+    return (states == null) ? restore(seed, draws) : this;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return "GameRandom[seed=" + seed + ", draws=" + Arrays.toString(draws) + "]";
+  }
+
+}
@@ -1,10 +1,17 @@
 package BOut;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 
 public class GameState implements Cloneable, Serializable
 {
+  /**
+   * the serialVersionUID computed for GameState as first archived;
+   * fields since added read as 0 from those archives (see LegacyArchive)
+   */
+  private static final long serialVersionUID = -9176393116255562935L;
+
 // instances
   private int score;
   private int scoreMultiplier;
@@ -22,17 +29,39 @@ public class GameState implements Cloneable, Serializable
   private long miniballWaitTimeRemaining; 
   private int blocksRemaining;
   private int powerUpsActive;
+
+  /**
+   * the most Balls that may be in play at once; 1 is the classic game,
+   * more is multi-ball (set by the BOut.maxBalls system property, or setMaxBallsActive)
+   */
+  private static int maxBallsActive = Math.max(1, Integer.getInteger("BOut.maxBalls", 1));
+
+  /**
+   * Balls split off others (see BallSplitter) that are about to go into
+   * play; these do not use up ballsRemaining
+   */
+  private int freeBallsPending = 0;
+
+  /**
+   * splits asked for by PowerUps and not yet made
+   */
+  private int ballSplitsPending = 0;
   private static GameState GAMESTATE = new GameState();
   public static GameState getGameState ()  {    return GAMESTATE;  }
+  public static GameState resetGameState ()  {    GAMESTATE = new GameState();  return GAMESTATE;  }
   //ACCESSORS AND MUTATORS
 public int getMultiplier ()  {    return scoreMultiplier;  }
 public int getScore ()  {   return score;  }
-public boolean canFireBall ()  {    return (ballsRemaining > 0) & (ballsActive == 0);  }
+public boolean canFireBall ()  {    return (ballsRemaining > 0) & (ballsActive < maxBallsActive);  }
+public int getBallsActive ()  {    return ballsActive;  }
+public static int getMaxBallsActive ()  {    return maxBallsActive;  }
+public static void setMaxBallsActive (int max)  {    maxBallsActive = Math.max(1, max);  }
 public double getBallSpeed ()  {    return ballSpeed;  }
 public void setBallSpeed (double num)  {    ballSpeed = num;  }
 public double getBaseSpeed ()  {    return baseSpeed;  }
 public int getBallsRemaining ()  {    return ballsRemaining;  }
 public int getMiniballsRemaining ()  {    return miniballsRemaining;  }
+public int getBlocksRemaining ()  {    return blocksRemaining;  }
 public void addMiniballs (int number)  {    miniballsRemaining += number;  }
 						/* **************************************************************
 						 * We need to be able to add balls everytime the user           *
@@ -76,38 +105,38 @@ public void addMiniballs (int number)  {    miniballsRemaining += number;  }
   private void connectEventSources ()
   {
     PowerUp.getActiveChangedSource().register(
-        new BreakoutListener<ActiveChangedEvent<PowerUp>>()
+        new ActiveChangedListener<PowerUp>()
         {
-          public void happened (ActiveChangedEvent<PowerUp> event)
+          public void activeChanged (PowerUp sprite, int delta)
           {
-            activeChanged(event.getSprite(), event.getDelta());
+            GameState.this.activeChanged(sprite, delta);
           }
         }
     );
     Ball.getActiveChangedSource().register(
-        new BreakoutListener<ActiveChangedEvent<Ball>>()
+        new ActiveChangedListener<Ball>()
         {
-          public void happened (ActiveChangedEvent<Ball> event)
+          public void activeChanged (Ball sprite, int delta)
           {
-            activeChanged(event.getSprite(), event.getDelta());
+            GameState.this.activeChanged(sprite, delta);
           }
         }
     );
     Miniball.getActiveChangedSource().register(
-        new BreakoutListener<ActiveChangedEvent<Miniball>>()
+        new ActiveChangedListener<Miniball>()
         {
-          public void happened (ActiveChangedEvent<Miniball> event)
+          public void activeChanged (Miniball sprite, int delta)
           {
-            activeChanged(event.getSprite(), event.getDelta());
+            GameState.this.activeChanged(sprite, delta);
           }
         }
     );
     Block.getActiveChangedSource().register(
-        new BreakoutListener<ActiveChangedEvent<Block>>()
+        new ActiveChangedListener<Block>()
         {
-          public void happened (ActiveChangedEvent<Block> event)
+          public void activeChanged (Block sprite, int delta)
           {
-            activeChanged(event.getSprite(), event.getDelta());
+            GameState.this.activeChanged(sprite, delta);
           }
         }
     );
@@ -153,10 +182,39 @@ public void addMiniballs (int number)  {    miniballsRemaining += number;  }
     ballsActive += delta;
     if (delta > 0)
     {
-      ballsRemaining -= delta;
+      if (freeBallsPending > 0)
+      {
+        freeBallsPending -= delta;
+      }
+      else
+      {
+        ballsRemaining -= delta;
+      }
     }
   }
 
+  /**
+   * Lets the next Balls put into play come free, rather than from ballsRemaining
+   * @param number an int giving how many Balls
+   */
+  public void expectFreeBalls (int number)  {    freeBallsPending += number;  }
+
+  /**
+   * Asks for a Ball in play to be split (done by the game after the
+   * current step; see BallSplitter)
+   */
+  public void requestBallSplit ()  {    ++ballSplitsPending;  }
+
+  /**
+   * @return an int giving the splits asked for since the last call
+   */
+  public int takeBallSplits ()
+  {
+    int splits = ballSplitsPending;
+    ballSplitsPending = 0;
+    return splits;
+  }
+
 
   private void activeChanged (Miniball miniball, int delta)
   {
@@ -174,6 +232,52 @@ public void addMiniballs (int number)  {    miniballsRemaining += number;  }
       incrementScore(block.getValue());
     }
   }
+  /**
+   * writes every field, in a fixed order, for SnapshotCodec
+   * @param out the ByteBuffer to write to
+   */
+  void writeTo (ByteBuffer out)
+  {
+    out.putInt(score);
+    out.putInt(scoreMultiplier);
+    out.putDouble(ballSpeed);
+    out.putInt(ballsRemaining);
+    out.putInt(ballsActive);
+    out.putInt(miniballsRemaining);
+    out.putInt(miniballsActive);
+    out.putInt(miniballsFired);
+    out.putLong(miniballWaitTimeRemaining);
+    out.putInt(blocksRemaining);
+    out.putInt(powerUpsActive);
+  }
+
+  /**
+   * number of bytes written by writeTo
+   */
+  static final int snapshotSize = 9 * 4 + 8 + 8;
+
+  /**
+   * reads a GameState written by writeTo
+   * @param in the ByteBuffer to read from
+   * @return a new GameState (not installed as the current one)
+   */
+  static GameState readFrom (ByteBuffer in)
+  {
+    GameState gs = new GameState();
+    gs.score = in.getInt();
+    gs.scoreMultiplier = in.getInt();
+    gs.ballSpeed = in.getDouble();
+    gs.ballsRemaining = in.getInt();
+    gs.ballsActive = in.getInt();
+    gs.miniballsRemaining = in.getInt();
+    gs.miniballsActive = in.getInt();
+    gs.miniballsFired = in.getInt();
+    gs.miniballWaitTimeRemaining = in.getLong();
+    gs.blocksRemaining = in.getInt();
+    gs.powerUpsActive = in.getInt();
+    return gs;
+  }
+
   public GameState memento ()
   {
     try
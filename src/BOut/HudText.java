@@ -0,0 +1,169 @@
+package BOut;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+import com.golden.gamedev.object.GameFont;
+import com.golden.gamedev.util.ImageUtil;
+
+/**
+ * One line of the heads-up display (a label and a number, such as
+ * "Score: 1200", or a whole message), drawn with a GameFont into a
+ * cached translucent image.  The text is rasterized again only when the
+ * value shown changes; otherwise drawing it is one blit, with no
+ * Strings built and no glyphs looked up.
+ * <br>
+ * The image is reused for as long as the text fits in it, so a HUD line
+ * whose value changes now and then allocates only when it grows wider
+ * than it has ever been.
+ */
+public class HudText
+{
+  /**
+   * extra width given to a new image, so that a growing number does not
+   * need a new image for each extra digit
+   */
+  private static final int WidthSlack = 32;
+
+  private final GameFont font;
+  private final String label;
+  private final int x;
+  private final int y;
+
+  /**
+   * the number shown after the label (meaningful only if hasValue)
+   */
+  private int value;
+  private boolean hasValue = false;
+
+  /**
+   * the text shown, null if none
+   */
+  private String text = null;
+
+  private BufferedImage image = null;
+
+  /**
+   * the part of the image the text covers
+   */
+  private int textWidth = 0;
+  private int textHeight = 0;
+
+  private int rasterizations = 0;
+
+  /**
+   * Constructor
+   * @param font the GameFont to draw with
+   * @param label a String put before the number shown (by setValue);
+   * null or "" for a line that shows only messages (by setText)
+   * @param x an int giving where the text's left edge goes on screen
+   * @param y an int giving where the text's top edge goes on screen
+   */
+  public HudText (GameFont font, String label, int x, int y)
+  {
+    this.font = font;
+    this.label = (label == null) ? "" : label;
+    this.x = x;
+    this.y = y;
+  }
+
+  /**
+   * Shows the label followed by a number; does nothing if that number
+   * is already shown
+   * @param value an int giving the number to show
+   */
+  public void setValue (int value)
+  {
+    if (hasValue && value == this.value)
+    {
+      return;
+    }
+    this.value = value;
+    hasValue = true;
+    rasterize(label + value);
+  }
+
+  /**
+   * Shows a message in place of the label and number; does nothing if
+   * that message is already shown
+   * @param text the String to show; null to show nothing
+   */
+  public void setText (String text)
+  {
+    if (!hasValue && (text == this.text || (text != null && text.equals(this.text))))
+    {
+      return;
+    }
+    hasValue = false;
+    rasterize(text);
+  }
+
+  /**
+   * Draws the cached text, if any
+   * @param g the Graphics2D to draw on
+   */
+  public void render (Graphics2D g)
+  {
+    if (text != null)
+    {
+      g.drawImage(image, x, y, x + textWidth, y + textHeight, 0, 0, textWidth, textHeight, null);
+    }
+  }
+
+  /**
+   * @return an int giving how many times the text has been rasterized
+   */
+  public int getRasterizations ()
+  {
+    return rasterizations;
+  }
+
+  /**
+   * draws text into the cached image, replacing what was there
+   */
+  private void rasterize (String text)
+  {
+    this.text = text;
+    if (text == null)
+    {
+      return;
+    }
+    textWidth = Math.max(1, font.getWidth(text));
+    textHeight = Math.max(1, font.getHeight());
+    if (image == null || image.getWidth() < textWidth || image.getHeight() < textHeight)
+    {
+      image = createImage(textWidth + WidthSlack, textHeight);
+    }
+    Graphics2D g = image.createGraphics();
+    try
+    {
+      Composite composite = g.getComposite();
+      g.setComposite(AlphaComposite.Clear);
+      g.fillRect(0, 0, image.getWidth(), image.getHeight());
+      g.setComposite(composite);
+      font.drawString(g, text, 0, 0);
+    }
+    finally
+    {
+      g.dispose();
+    }
+    ++rasterizations;
+  }
+
+  /**
+   * makes a translucent image suited to the screen, if there is one
+   */
+  private static BufferedImage createImage (int width, int height)
+  {
+    if (GraphicsEnvironment.isHeadless())
+    {
+      return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+    return ImageUtil.createImage(width, height, Transparency.TRANSLUCENT);
+  }
+
+}
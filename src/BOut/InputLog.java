@@ -0,0 +1,197 @@
+package BOut;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.golden.gamedev.engine.BaseInput;
+
+/**
+ * An input log written by InputRecorder, read one tick at a time.  The
+ * file is read through a buffer, refilled as it empties, so logs of any
+ * length are streamed rather than loaded whole.
+ */
+public final class InputLog {
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+  private final long seed;
+  private final long stepMillis;
+  private final int maxStepsPerFrame;
+  private final boolean sweptCollisions;
+  private final String levelFile;
+
+  /**
+   * the current tick
+   */
+  private long elapsed = 0;
+  private int mouseX = 0;
+  private int key = BaseInput.NO_KEY;
+  private int button = BaseInput.NO_BUTTON;
+
+  private long ticks = 0;
+
+  /**
+   * Opens a log and reads its header
+   * @param filename a String naming the log file
+   * @throws IOException if the file cannot be read, or is not an input log we know
+   */
+  public InputLog (String filename) throws IOException
+  {
+    channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+    buffer.limit(0);
+    try
+    {
+      fill(4 + 2);
+      if (buffer.getInt() != InputRecorder.Magic)
+      {
+        throw new IOException(filename + " is not a BreakOut input log");
+      }
+      short version = buffer.getShort();
+      if (version != InputRecorder.Version)
+      {
+        throw new IOException("unsupported input log version " + version);
+      }
+      fill(8 + 8 + 4 + 1 + 2);
+      seed = buffer.getLong();
+      stepMillis = buffer.getLong();
+      maxStepsPerFrame = buffer.getInt();
+      sweptCollisions = (buffer.get() != 0);
+      byte[] level = new byte[buffer.getShort() & 0xFFFF];
+      fill(level.length);
+      buffer.get(level);
+      levelFile = new String(level, StandardCharsets.UTF_8);
+    }
+    catch (IOException exc)
+    {
+      channel.close();
+      throw exc;
+    }
+  }
+
+  /**
+   * makes sure the buffer holds at least the given number of bytes
+   * @throws EOFException if the file ends first
+   */
+  private void fill (int needed) throws IOException
+  {
+    if (buffer.remaining() >= needed)
+    {
+      return;
+    }
+    buffer.compact();
+    while (buffer.position() < needed)
+    {
+      if (channel.read(buffer) < 0)
+      {
+        buffer.flip();
+        throw new EOFException();
+      }
+    }
+    buffer.flip();
+  }
+
+  /**
+   * Reads the next tick, making it the current one
+   * @return true iff there was another tick; false at the end of the log
+   * @throws IOException if the log cannot be read, or ends part way through a tick
+   */
+  public boolean next () throws IOException
+  {
+    try
+    {
+      fill(1);
+    }
+    catch (EOFException exc)
+    {
+      return false;
+    }
+    int flags = buffer.get();
+    fill(Integer.bitCount(flags & 0xF) * 4);
+    if ((flags & InputRecorder.ElapsedChanged) != 0)
+    {
+      elapsed = buffer.getInt();
+    }
+    if ((flags & InputRecorder.MouseXChanged) != 0)
+    {
+      mouseX = buffer.getInt();
+    }
+    key = ((flags & InputRecorder.KeyPressed) != 0) ? buffer.getInt() : BaseInput.NO_KEY;
+    button = ((flags & InputRecorder.ButtonPressed) != 0) ? buffer.getInt() : BaseInput.NO_BUTTON;
+    ++ticks;
+    return true;
+  }
+
+  /**
+   * Closes the file
+   * @throws IOException if closing fails
+   */
+  public void close () throws IOException
+  {
+    channel.close();
+  }
+
+  /**
+   * @return a long giving the GameRandom seed of the recorded level
+   */
+  public long getSeed () { return seed; }
+
+  /**
+   * @return a long giving the physics step of the recorded game, in milliseconds
+   */
+  public long getStepMillis () { return stepMillis; }
+
+  /**
+   * @return an int giving the most physics steps per frame of the recorded game
+   */
+  public int getMaxStepsPerFrame () { return maxStepsPerFrame; }
+
+  /**
+   * @return a FixedStepClock set as the recorded game's was
+   */
+  public FixedStepClock createClock ()
+  {
+    return new FixedStepClock(stepMillis, maxStepsPerFrame);
+  }
+
+  /**
+   * @return true iff the recorded game used swept collisions
+   */
+  public boolean isSweptCollisions () { return sweptCollisions; }
+
+  /**
+   * @return a String naming the recorded level's file
+   */
+  public String getLevelFile () { return levelFile; }
+
+  /**
+   * @return a long giving the current tick's elapsed time in milliseconds
+   */
+  public long getElapsedMillis () { return elapsed; }
+
+  /**
+   * @return an int giving the mouse's x position in the current tick
+   */
+  public int getMouseX () { return mouseX; }
+
+  /**
+   * @return an int giving the key pressed in the current tick, or BaseInput.NO_KEY
+   */
+  public int getKeyPressed () { return key; }
+
+  /**
+   * @return an int giving the mouse button pressed in the current tick, or BaseInput.NO_BUTTON
+   */
+  public int getMousePressed () { return button; }
+
+  /**
+   * @return a long giving the number of ticks read so far
+   */
+  public long getTicks () { return ticks; }
+
+}
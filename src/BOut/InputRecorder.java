@@ -0,0 +1,173 @@
+package BOut;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.golden.gamedev.engine.BaseInput;
+
+/**
+ * Records a session's input, one entry per game update (tick), so that
+ * InputLog can play it back.  Given the level, the GameRandom seed, the
+ * physics clock settings, and the collision mode (all recorded in the
+ * header), the time and input of each tick determine everything that
+ * happens in the game.
+ * <br>
+ * Entries are written into a buffer, and the buffer to the file when it
+ * fills, so recording costs a few bytes of copying per tick.  Most ticks
+ * repeat the previous one's time and mouse position and have no key or
+ * button, so each entry holds only what changed:
+ * <pre>
+ *   byte flags,
+ *   [int elapsed millis] [int mouse x] [int key pressed] [int button pressed]
+ * </pre>
+ * each field present iff its flag is set.  The header is:
+ * <pre>
+ *   int magic, short version, long seed, long step millis,
+ *   int most steps per frame, byte swept collisions (0 or 1),
+ *   short length, UTF-8 bytes of the level file name
+ * </pre>
+ */
+public final class InputRecorder {
+
+  /**
+   * first four bytes of every input log ("BOIL")
+   */
+  public static final int Magic = 0x424F494C;
+
+  /**
+   * the layout version we write
+   */
+  public static final short Version = 1;
+
+  /*
+   * flags saying which fields of an entry are present
+   */
+  static final int ElapsedChanged = 1;
+  static final int MouseXChanged  = 2;
+  static final int KeyPressed     = 4;
+  static final int ButtonPressed  = 8;
+
+  /**
+   * the most bytes one entry takes
+   */
+  static final int MaxEntrySize = 1 + 4 * 4;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+  /**
+   * the previous entry's time and mouse position
+   */
+  private long lastElapsed = 0;
+  private int lastMouseX = 0;
+
+  private long ticks = 0;
+
+  /**
+   * Creates (or replaces) a log and writes its header
+   * @param filename a String naming the log file
+   * @param levelFile a String naming the level being played
+   * @param seed a long giving the level's GameRandom seed
+   * @param clock the FixedStepClock of the game being recorded
+   * @param sweptCollisions a boolean, true iff the game uses swept collisions
+   * @throws IOException if the file cannot be written
+   */
+  public InputRecorder (String filename, String levelFile, long seed, FixedStepClock clock,
+                        boolean sweptCollisions)
+    throws IOException
+  {
+    channel = FileChannel.open(Paths.get(filename),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    byte[] level = levelFile.getBytes(StandardCharsets.UTF_8);
+    buffer.putInt(Magic);
+    buffer.putShort(Version);
+    buffer.putLong(seed);
+    buffer.putLong(clock.getStepMillis());
+    buffer.putInt(clock.getMaxStepsPerFrame());
+    buffer.put((byte)(sweptCollisions ? 1 : 0));
+    buffer.putShort((short)level.length);
+    buffer.put(level);
+  }
+
+  /**
+   * Records one tick
+   * @param elapsedMillis a long giving the tick's elapsed time in milliseconds
+   * @param mouseX an int giving the mouse's x position
+   * @param key an int giving the key pressed during the tick, or BaseInput.NO_KEY
+   * @param button an int giving the mouse button pressed during the tick, or BaseInput.NO_BUTTON
+   * @throws IOException if the log cannot be written
+   */
+  public void record (long elapsedMillis, int mouseX, int key, int button) throws IOException
+  {
+    if (buffer.remaining() < MaxEntrySize)
+    {
+      flush();
+    }
+    int flags = 0;
+    int start = buffer.position();
+    buffer.put((byte)0);
+    if (elapsedMillis != lastElapsed)
+    {
+      flags |= ElapsedChanged;
+      buffer.putInt((int)elapsedMillis);
+      lastElapsed = elapsedMillis;
+    }
+    if (mouseX != lastMouseX)
+    {
+      flags |= MouseXChanged;
+      buffer.putInt(mouseX);
+      lastMouseX = mouseX;
+    }
+    if (key != BaseInput.NO_KEY)
+    {
+      flags |= KeyPressed;
+      buffer.putInt(key);
+    }
+    if (button != BaseInput.NO_BUTTON)
+    {
+      flags |= ButtonPressed;
+      buffer.putInt(button);
+    }
+    buffer.put(start, (byte)flags);
+    ++ticks;
+  }
+
+  /**
+   * writes out what is buffered
+   */
+  private void flush () throws IOException
+  {
+    buffer.flip();
+    while (buffer.hasRemaining())
+    {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Writes out the rest of the log and closes the file
+   * @throws IOException if the log cannot be written
+   */
+  public void close () throws IOException
+  {
+    try
+    {
+      flush();
+    }
+    finally
+    {
+      channel.close();
+    }
+  }
+
+  /**
+   * @return a long giving the number of ticks recorded
+   */
+  public long getTicks () { return ticks; }
+
+}
@@ -0,0 +1,348 @@
+package BOut;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.golden.gamedev.object.Sprite;
+
+import BOut.BreakOutGame.Memento;
+import XmlImporter.BlockDescFactory;
+
+/**
+ * Reads the archives BreakOutGame wrote before SnapshotCodec existed:
+ * a Memento written with Java serialization.  None of the classes
+ * involved declared a serialVersionUID, and most have since changed
+ * their fields (a Block is now a view of a BlockField, a Ball no longer
+ * has its own Random, and so on), so those archives no longer read as
+ * the classes now are.
+ * <br>
+ * Instead, each of our classes an archive names is read as a stand-in
+ * (below) declaring the serialVersionUID and serializable fields the
+ * class had then; GameState, whose fields have only been added to,
+ * is read as itself.  The stand-ins are then made into a Memento, as
+ * SnapshotCodec makes one.  An archive of any other form (e.g., a
+ * class with other fields) is refused with an InvalidClassException.
+ * <br>
+ * These archives recorded no GameRandom, so a game restored from one
+ * gets a fresh seed, and no PowerUp kinds, which are told from their
+ * colors, as each kind then had its own.
+ */
+final class LegacyArchive {
+
+  private LegacyArchive () { }
+
+  /**
+   * the stand-in for each of our classes an archive may name, by name
+   */
+  private static final Map<String,Class<?>> standIns = new HashMap<String,Class<?>>();
+
+  /**
+   * the kind of PowerUp of each color (other colors were plain)
+   */
+  private static final Map<String,String> kindsByColor = new HashMap<String,String>();
+
+  static
+  {
+    standIns.put("BOut.BreakOutGame$Memento", OldMemento.class);
+    standIns.put("BOut.Ball",        OldBall.class);
+    standIns.put("BOut.Miniball",    OldMiniball.class);
+    standIns.put("BOut.Paddle",      OldPaddle.class);
+    standIns.put("BOut.Block",       OldBlock.class);
+    standIns.put("BOut.BlockDesc",   OldBlockDesc.class);
+    standIns.put("BOut.PowerUp",     OldPowerUp.class);
+    standIns.put("BOut.PowerUpDesc", OldPowerUpDesc.class);
+    standIns.put("BOut.PowerUpStrategyPlain",              OldPlain.class);
+    standIns.put("BOut.PowerUpStrategyDecorator",          OldDecorator.class);
+    standIns.put("BOut.PowerUpStrategyDecoratorIncr",      OldIncr.class);
+    standIns.put("BOut.PowerUpStrategyDecoratorDecr",      OldDecr.class);
+    standIns.put("BOut.PowerUpStrategyDecoratorMiniballs", OldMiniballs.class);
+    standIns.put("BOut.PowerUpStrategyDecoratorBall",      OldBallDecorator.class);
+
+    kindsByColor.put("Purple", "incrOnHit");
+    kindsByColor.put("Cyan",   "decrOnMiss");
+    kindsByColor.put("Blue",   "incrDecr");
+    kindsByColor.put("Red",    "miniballs");
+    kindsByColor.put("Orange", "extra");
+  }
+
+  /**
+   * Reads an archive written with Java serialization (see the class comment)
+   * @param filename a String naming the file
+   * @return the Memento the archive records
+   * @throws IOException if the file cannot be read, or is not such an archive
+   * @throws ClassNotFoundException if the archive names a class we do not have
+   */
+  static Memento read (String filename) throws IOException, ClassNotFoundException
+  {
+    ObjectInputStream in = new StandInInputStream(new BufferedInputStream(new FileInputStream(filename)));
+    try
+    {
+      Object archived = in.readObject();
+      if (!(archived instanceof OldMemento))
+      {
+        throw new InvalidClassException(archived.getClass().getName(), "not an archived game");
+      }
+      return ((OldMemento)archived).toMemento();
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /**
+   * An ObjectInputStream that reads our classes as their stand-ins
+   */
+  private static final class StandInInputStream extends ObjectInputStream
+  {
+    StandInInputStream (InputStream in) throws IOException
+    {
+      super(in);
+    }
+
+    /**
+     * gives, for each of our classes, its stand-in's descriptor, so the
+     * stand-in is read in its place, provided the two agree
+     */
+    @Override
+    protected ObjectStreamClass readClassDescriptor () throws IOException, ClassNotFoundException
+    {
+      ObjectStreamClass written = super.readClassDescriptor();
+      Class<?> standIn = standIns.get(written.getName());
+      if (standIn == null)
+      {
+        return written;
+      }
+      ObjectStreamClass local = ObjectStreamClass.lookup(standIn);
+      if (local.getSerialVersionUID() != written.getSerialVersionUID() || !sameFields(local, written))
+      {
+        throw new InvalidClassException(written.getName(),
+            "not as archived before SnapshotCodec (serialVersionUID " + written.getSerialVersionUID() + ")");
+      }
+      return local;
+    }
+
+    /**
+     * @return true iff the descriptors have fields of the same names and
+     * kinds of type, in the same order
+     */
+    private static boolean sameFields (ObjectStreamClass local, ObjectStreamClass written)
+    {
+      ObjectStreamField[] ours = local.getFields();
+      ObjectStreamField[] theirs = written.getFields();
+      if (ours.length != theirs.length)
+      {
+        return false;
+      }
+      for (int i = 0; i < ours.length; i++)
+      {
+        if (!ours[i].getName().equals(theirs[i].getName()) ||
+            ours[i].getTypeCode() != theirs[i].getTypeCode())
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /*
+   * The stand-ins.  Each has the serialVersionUID and serializable fields
+   * of the class it stands in for, as they were; the Sprites' own state
+   * is read by Sprite, which has not changed.
+   */
+
+  private static final class OldMemento implements Serializable
+  {
+    private static final long serialVersionUID = 8548399566386322507L;
+
+    private List<OldBall> balls;
+    private OldPaddle thePaddle;
+    private List<OldBlock> blocks;
+    private List<OldPowerUp> powerUps;
+    private List<OldMiniball> miniballs;
+    private GameState state;
+
+    /**
+     * @return a Memento of the same game
+     */
+    Memento toMemento ()
+    {
+      Paddle paddle = new Paddle(thePaddle.getX(), thePaddle.getY());
+
+      List<Ball> newBalls = new ArrayList<Ball>(balls.size());
+      for (OldBall old : balls)
+      {
+        Ball b = new Ball(old.getX(), old.getY());
+        b.setSpeed(old.getHorizontalSpeed(), old.getVerticalSpeed());
+        b.setSpin(old.spin);
+        newBalls.add(b);
+      }
+
+      List<Miniball> newMiniballs = new ArrayList<Miniball>(miniballs.size());
+      for (OldMiniball old : miniballs)
+      {
+        Miniball m = new Miniball(old.getX(), old.getY());
+        m.setVerticalSpeed(old.getVerticalSpeed());
+        m.setID(old.getID());
+        m.setBlockHitsRemaining(old.blockHitsRemaining);
+        newMiniballs.add(m);
+      }
+
+      // Blocks with the same drop table share one DropSampler, as when loaded from a level
+      Map<DropSampler,DropSampler> samplers = new HashMap<DropSampler,DropSampler>();
+      List<Block> newBlocks = new ArrayList<Block>(blocks.size());
+      BlockField blockField = new BlockField(blocks.size());
+      for (OldBlock old : blocks)
+      {
+        Block b = new Block(blockField,
+            BlockDescFactory.getBlockDesc(old.desc.width, old.desc.height, old.desc.r, old.desc.g, old.desc.b),
+            old.getX(), old.getY());
+        b.setValue(old.value);
+        b.setHitsNeeded(old.hitsNeeded);
+        b.setLastMiniball(old.lastMiniball);
+        int k = Math.min(old.powerups.size(), old.probabilities.size());
+        PowerUpKind[] kinds = new PowerUpKind[k];
+        float[] probabilities = new float[k];
+        for (int j = 0; j < k; j++)
+        {
+          kinds[j] = PowerUpFactory.getKind(old.powerups.get(j));
+          probabilities[j] = old.probabilities.get(j);
+        }
+        DropSampler drops = new DropSampler(kinds, probabilities);
+        DropSampler shared = samplers.get(drops);
+        if (shared == null)
+        {
+          samplers.put(drops, drops);
+          shared = drops;
+        }
+        b.setPowerups(shared);
+        newBlocks.add(b);
+      }
+
+      List<PowerUp> newPowerUps = new ArrayList<PowerUp>(powerUps.size());
+      for (OldPowerUp old : powerUps)
+      {
+        String kind = kindsByColor.get(old.desc.desc);
+        PowerUp p = PowerUpFactory.createPowerUp((kind == null) ? PowerUpFactory.PlainKind : kind,
+                                                 null, old.getX(), old.getY());
+        p.setSpeed(old.getHorizontalSpeed(), old.getVerticalSpeed());
+        newPowerUps.add(p);
+      }
+
+      return new Memento(newBalls, paddle, newBlocks, newPowerUps, newMiniballs, state, null);
+    }
+  }
+
+  private static final class OldBall extends Sprite
+  {
+    private static final long serialVersionUID = -7359794724365979756L;
+
+    private double spin;
+    private Random random;
+  }
+
+  private static final class OldMiniball extends Sprite
+  {
+    private static final long serialVersionUID = 5960282914980856714L;
+
+    private double magnitude;
+    private int blockHitsRemaining;
+  }
+
+  private static final class OldPaddle extends Sprite
+  {
+    private static final long serialVersionUID = 560724834380898679L;
+  }
+
+  private static final class OldBlock extends Sprite
+  {
+    private static final long serialVersionUID = -8814919417210154295L;
+
+    private int value;
+    private double xPos;
+    private double yPos;
+    private OldBlockDesc desc;
+    private int hitsNeeded;
+    private List<String> powerups;
+    private List<Float> probabilities;
+    private int lastMiniball;
+  }
+
+  private static final class OldBlockDesc implements Serializable
+  {
+    private static final long serialVersionUID = -5829939227496882348L;
+
+    private int width;
+    private int height;
+    private int r;
+    private int g;
+    private int b;
+  }
+
+  private static final class OldPowerUp extends Sprite
+  {
+    private static final long serialVersionUID = -3074581526197284256L;
+
+    private OldStrategy strategy;
+    private OldPowerUpDesc desc;
+  }
+
+  private static final class OldPowerUpDesc implements Serializable
+  {
+    private static final long serialVersionUID = 4883506866758560237L;
+
+    private String desc;
+    private String filename;
+  }
+
+  /**
+   * the PowerUpStrategy classes, read only to pass over them
+   */
+  private static interface OldStrategy extends Serializable { }
+
+  private static final class OldPlain implements OldStrategy
+  {
+    private static final long serialVersionUID = 3215776086245241933L;
+  }
+
+  private static abstract class OldDecorator implements OldStrategy
+  {
+    private static final long serialVersionUID = 7186541231637480977L;
+
+    private OldStrategy decorated;
+  }
+
+  private static final class OldIncr extends OldDecorator
+  {
+    private static final long serialVersionUID = 6788980146958034259L;
+  }
+
+  private static final class OldDecr extends OldDecorator
+  {
+    private static final long serialVersionUID = -4809229615360216042L;
+  }
+
+  private static final class OldMiniballs extends OldDecorator
+  {
+    private static final long serialVersionUID = 4400514388852565333L;
+  }
+
+  private static final class OldBallDecorator extends OldDecorator
+  {
+    private static final long serialVersionUID = -88184732247628762L;
+  }
+
+}
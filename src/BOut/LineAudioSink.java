@@ -0,0 +1,66 @@
+package BOut;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * An AudioSink that plays through the default sound card line
+ */
+public class LineAudioSink implements AudioSink
+{
+  /**
+   * how many blocks of sound the line buffers; more delays sounds,
+   * fewer risks gaps when the audio thread is late
+   */
+  private final int bufferBlocks;
+
+  /**
+   * the bytes in one block, as written by the mixer
+   */
+  private final int blockBytes;
+
+  private SourceDataLine line = null;
+
+  /**
+   * Constructor
+   * @param blockBytes an int giving the size of the blocks the mixer writes
+   * @param bufferBlocks an int giving how many blocks the line should buffer
+   */
+  public LineAudioSink (int blockBytes, int bufferBlocks)
+  {
+    this.blockBytes = blockBytes;
+    this.bufferBlocks = bufferBlocks;
+  }
+
+  public void open (AudioFormat format) throws LineUnavailableException
+  {
+    try
+    {
+      line = AudioSystem.getSourceDataLine(format);
+    }
+    catch (IllegalArgumentException exc)
+    {
+      // thrown when no installed mixer supports the format
+      throw new LineUnavailableException(exc.getMessage());
+    }
+    line.open(format, blockBytes * bufferBlocks);
+    line.start();
+  }
+
+  public void write (byte[] data, int length)
+  {
+    line.write(data, 0, length);
+  }
+
+  public void close ()
+  {
+    if (line != null)
+    {
+      line.drain();
+      line.close();
+      line = null;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package BOut;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values (times, byte counts, and so
+ * on) in the style of HdrHistogram: buckets are exact up to 64, and
+ * above that each power of two is split into 32 buckets, so any value
+ * is reported to within about 3% however large it is, with a fixed
+ * table of under 2000 counts.
+ * <br>
+ * Recording is one atomic increment (plus, rarely, an update of the
+ * maximum), and reading never blocks recording, so the game thread may
+ * record while another thread reads; a reading taken while values are
+ * being recorded may be off by those values.
+ */
+public final class LogHistogram {
+
+  /**
+   * each power of two above ExactLimit is split into 2^SubBucketBits buckets
+   */
+  private static final int SubBucketBits = 5;
+  private static final int SubBuckets = 1 << SubBucketBits;
+
+  /**
+   * values below this have buckets of their own
+   */
+  private static final int ExactLimit = 2 * SubBuckets;
+
+  /**
+   * the number of buckets, enough for any non-negative long
+   */
+  private static final int BucketCount = ExactLimit + (63 - (SubBucketBits + 1)) * SubBuckets;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BucketCount);
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value
+   * @param value a long giving the value; negative values are recorded as 0
+   */
+  public void record (long value)
+  {
+    if (value < 0)
+    {
+      value = 0;
+    }
+    counts.incrementAndGet(bucketOf(value));
+    total.incrementAndGet();
+    sum.addAndGet(value);
+    long m = max.get();
+    while (value > m && !max.compareAndSet(m, value))
+    {
+      m = max.get();
+    }
+  }
+
+  /**
+   * @return the bucket holding a (non-negative) value
+   */
+  private static int bucketOf (long value)
+  {
+    if (value < ExactLimit)
+    {
+      return (int)value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int)(value >>> (exponent - SubBucketBits)) & (SubBuckets - 1);
+    return ExactLimit + (exponent - (SubBucketBits + 1)) * SubBuckets + subBucket;
+  }
+
+  /**
+   * @return the largest value that falls in a bucket
+   */
+  private static long highestValueIn (int bucket)
+  {
+    if (bucket < ExactLimit)
+    {
+      return bucket;
+    }
+    int exponent = (bucket - ExactLimit) / SubBuckets + SubBucketBits + 1;
+    long subBucket = (bucket - ExactLimit) % SubBuckets;
+    long lowest = (SubBuckets + subBucket) << (exponent - SubBucketBits);
+    return lowest + (1L << (exponent - SubBucketBits)) - 1;
+  }
+
+  /**
+   * @param percentile a double giving the percentile wanted, from 0 to 100
+   * @return a long giving a value (to within the histogram's precision)
+   * that at least that percentage of the recorded values do not exceed;
+   * 0 if nothing has been recorded
+   */
+  public long getValueAtPercentile (double percentile)
+  {
+    long count = total.get();
+    if (count == 0)
+    {
+      return 0;
+    }
+    long rank = Math.max(1, (long)Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+    long seen = 0;
+    for (int bucket = 0; bucket < BucketCount; bucket++)
+    {
+      seen += counts.get(bucket);
+      if (seen >= rank)
+      {
+        return Math.min(highestValueIn(bucket), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * @return a long giving the number of values recorded
+   */
+  public long getCount () { return total.get(); }
+
+  /**
+   * @return a long giving the largest value recorded (0 if none)
+   */
+  public long getMax () { return max.get(); }
+
+  /**
+   * @return a double giving the mean of the values recorded (0 if none)
+   */
+  public double getMean ()
+  {
+    long count = total.get();
+    return (count == 0) ? 0.0 : sum.get() / (double)count;
+  }
+
+  /**
+   * Forgets all the values recorded
+   */
+  public void reset ()
+  {
+    for (int bucket = 0; bucket < BucketCount; bucket++)
+    {
+      counts.set(bucket, 0);
+    }
+    total.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+}
@@ -5,7 +5,7 @@ import com.golden.gamedev.engine.*;
 
 import static BOut.BreakOutEngine.*;
 
-public class Miniball extends Sprite implements Cloneable
+public class Miniball extends Sprite implements Cloneable, SweptMover
 {
   /**
    * magnitude of the miniball in pixels per second;
@@ -13,10 +13,20 @@ public class Miniball extends Sprite implements Cloneable
    */
   private double magnitude;
 
+  /**
+   * number of blocks a Miniball can hit when fired
+   */
+  private static final int BlockHits = 3;
+
   /**
    * number of blocks this Miniball can still hit
    */
-  private int blockHitsRemaining = 3;
+  private int blockHitsRemaining = BlockHits;
+
+  /**
+   * elapsed time of our most recent movement step, in milliseconds
+   */
+  private transient long stepMillis;
   
   /**
    * audio channel for the miniball's sounds to play
@@ -31,14 +41,14 @@ public class Miniball extends Sprite implements Cloneable
   /**
    * event source for hearing about changes in status of Miniballs 
    */
-  private static BreakoutEventSource<ActiveChangedEvent<Miniball>> activitySource =
-    new BreakoutEventSource<ActiveChangedEvent<Miniball>>();
+  private static ActiveChangedSource<Miniball> activitySource =
+    new ActiveChangedSource<Miniball>();
   
   /**
    * getter of event source for changes in activity status of Miniball
-   * @return the current BreakoutEventSource<ActiveChangedEvent<Miniball>>
+   * @return the current ActiveChangedSource<Miniball>
    */
-  public static BreakoutEventSource<ActiveChangedEvent<Miniball>> getActiveChangedSource ()
+  public static ActiveChangedSource<Miniball> getActiveChangedSource ()
   {
     return activitySource;
   }
@@ -82,6 +92,40 @@ public class Miniball extends Sprite implements Cloneable
     notifyActivityChanged();
   }
 	
+  /**
+   * Makes a spent Miniball (from a SpritePool) as good as new, at the
+   * given position; does not change whether it is active
+   * @param x a double giving the new x position
+   * @param y a double giving the new y position
+   */
+  public void reset (double x, double y)
+  {
+    setLocation(x, y);
+    setHorizontalSpeed(0);
+    initState();
+    blockHitsRemaining = BlockHits;
+    stepMillis = 0;
+  }
+
+  /**
+   * moves as any Sprite does, remembering the length of the step
+   * @param elapsedTime a long giving the elapsed time in milliseconds
+   */
+  @Override
+  protected void updateMovement (long elapsedTime)
+  {
+    super.updateMovement(elapsedTime);
+    stepMillis = elapsedTime;
+  }
+
+  /**
+   * @return a long giving the elapsed time, in milliseconds, of our most recent movement step
+   */
+  public long getStepMillis ()
+  {
+    return stepMillis;
+  }
+
   /**
    * This method is called if there is a collision with the boundary
    */
@@ -105,6 +149,23 @@ public class Miniball extends Sprite implements Cloneable
     }
   }
 	
+  /**
+   * @return an int giving the number of blocks this Miniball can still hit
+   */
+  int getBlockHitsRemaining ()
+  {
+    return blockHitsRemaining;
+  }
+
+  /**
+   * used when restoring a Miniball from an archive
+   * @param hits an int giving the number of blocks this Miniball can still hit
+   */
+  void setBlockHitsRemaining (int hits)
+  {
+    blockHitsRemaining = hits;
+  }
+
   /**
    * Must be set for any sounds to play.  If null, no sounds will be made when the ball 
    * collides with something.
@@ -136,7 +197,7 @@ public class Miniball extends Sprite implements Cloneable
   {
     if (activitySource != null && activitySource.anyListeners())
     {
-      activitySource.notify(new ActiveChangedEvent<Miniball>(this));
+      activitySource.notifyActiveChanged(this);
     }
   }
 
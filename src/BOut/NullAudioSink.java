@@ -0,0 +1,78 @@
+package BOut;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * An AudioSink that throws the sound away, for running without a sound
+ * card (headless, or in tests and benchmarks).  It can keep the mixer to
+ * real time, as a line would, by sleeping for as long as each block
+ * would take to play, or let it run flat out.  It counts what it is
+ * given, and remembers the loudest sample, so a test can tell whether
+ * anything was played.
+ */
+public class NullAudioSink implements AudioSink
+{
+  private final boolean paced;
+
+  private int bytesPerFrame = 1;
+  private float frameRate = 1.0f;
+
+  private volatile long framesWritten = 0;
+  private volatile int peak = 0;
+
+  /**
+   * Constructor
+   * @param paced a boolean: true to sleep as long as each block would
+   * take to play, false to take blocks as fast as they come
+   */
+  public NullAudioSink (boolean paced)
+  {
+    this.paced = paced;
+  }
+
+  public void open (AudioFormat format)
+  {
+    bytesPerFrame = format.getFrameSize();
+    frameRate = format.getFrameRate();
+  }
+
+  public void write (byte[] data, int length)
+  {
+    int frames = length / bytesPerFrame;
+    framesWritten += frames;
+    // the mixer writes 16-bit little-endian samples
+    int loudest = peak;
+    for (int i = 0; i + 1 < length; i += 2)
+    {
+      int sample = Math.abs((short)((data[i] & 0xFF) | (data[i+1] << 8)));
+      if (sample > loudest)
+      {
+        loudest = sample;
+      }
+    }
+    peak = loudest;
+    if (paced)
+    {
+      try
+      {
+        Thread.sleep((long)(frames * 1000.0f / frameRate));
+      }
+      catch (InterruptedException exc)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  public void close () { }
+
+  /**
+   * @return a long giving how many frames have been written
+   */
+  public long getFramesWritten () { return framesWritten; }
+
+  /**
+   * @return an int giving the largest absolute sample written so far
+   */
+  public int getPeak () { return peak; }
+}
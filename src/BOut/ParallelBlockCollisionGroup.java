@@ -0,0 +1,327 @@
+package BOut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.golden.gamedev.object.*;
+import com.golden.gamedev.object.collision.*;
+
+/**
+ * A BlockGridCollisionGroup that, when there are many moving sprites,
+ * finds their candidate Blocks on several cores.  Each check has two
+ * phases:
+ * <ol>
+ * <li>the plan: the moving sprites are split into runs of ChunkSize,
+ * and the common ForkJoinPool finds, for each sprite, the live Blocks
+ * whose bounds are near its own.  Nothing is changed in this phase, so
+ * the BlockGrid and BlockField serve as a snapshot of the Blocks as of
+ * the start of the check.</li>
+ * <li>the merge: on the calling thread, the sprites are taken in group
+ * order, as by the serial group, and each one's candidates go through
+ * isCollide and collided.  A candidate destroyed by an earlier
+ * collision is skipped, as the serial group would skip it.</li>
+ * </ol>
+ * Blocks only die during a check, so a sprite's planned candidates are
+ * the serial group's, in the same (slot) order, less those that have
+ * died since.  A sprite not as planned (put into play, or moved, by a
+ * collision) is checked as the serial group checks it.  The calls to
+ * collided thus come in the same order, with the same arguments, as
+ * from the serial group, and play is the same bit for bit.
+ */
+public abstract class ParallelBlockCollisionGroup extends BlockGridCollisionGroup
+{
+  /**
+   * fewest moving sprites for which the plan is made in parallel;
+   * below this the serial check is quicker than handing out the work
+   */
+  public static final int ParallelThreshold = 256;
+
+  /**
+   * number of moving sprites planned by one task
+   */
+  private static final int ChunkSize = 128;
+
+  /**
+   * the group's array of sprites when the plan was made
+   */
+  private Sprite[] plannedSprites = new Sprite[0];
+
+  /**
+   * the number of sprites planned
+   */
+  private int planned = 0;
+
+  /**
+   * for each sprite planned, whether it was active, and if so its bounds
+   */
+  private boolean[] wasActive = new boolean[0];
+  private double[] plannedX = new double[0];
+  private double[] plannedY = new double[0];
+  private int[] plannedWidth = new int[0];
+  private int[] plannedHeight = new int[0];
+
+  /**
+   * the tasks of the plan, of which the first ceil(planned / ChunkSize)
+   * are used; kept from check to check, with their arrays
+   */
+  private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+  private final Plan plan = new Plan();
+
+  /**
+   * the planned bounds of a sprite that a collision has moved
+   */
+  private final CollisionRect probeRect = new CollisionRect();
+
+  private long parallelChecks = 0;
+  private long fallbacks = 0;
+
+  /**
+   * Constructor
+   * @param grid the BlockGrid indexing the Blocks we check against
+   */
+  public ParallelBlockCollisionGroup (BlockGrid grid)
+  {
+    super(grid);
+  }
+
+  /**
+   * Checks serially when there are few moving sprites; otherwise plans
+   * in parallel and merges (see the class comment)
+   */
+  @Override
+  public void checkCollision ()
+  {
+    SpriteGroup movers = getGroup1();
+    if (movers.getSize() < ParallelThreshold || !movers.isActive() || !getGroup2().isActive())
+    {
+      super.checkCollision();
+      return;
+    }
+    makePlan(movers);
+    ++parallelChecks;
+    Sprite[] sprites = movers.getSprites();
+    int size = movers.getSize();
+    for (int i = 0; i < size; i++)
+    {
+      Sprite mover = sprites[i];
+      if (!mover.isActive())
+      {
+        continue;
+      }
+      CollisionShape shape1 = getCollisionShape1(mover);
+      if (shape1 == null)
+      {
+        continue;
+      }
+      if (isAsPlanned(i, mover, shape1))
+      {
+        checkPlanned(i, mover, shape1);
+      }
+      else
+      {
+        ++fallbacks;
+        checkMover(mover, shape1, -1);
+      }
+      size = movers.getSize();
+    }
+  }
+
+  /**
+   * @return a long giving how many checks were planned in parallel
+   */
+  public long getParallelChecks ()
+  {
+    return parallelChecks;
+  }
+
+  /**
+   * @return a long giving how many times a sprite in a parallel check
+   * was not as planned, and was checked serially
+   */
+  public long getFallbacks ()
+  {
+    return fallbacks;
+  }
+
+  /**
+   * finds the candidates of every sprite in the group, in parallel
+   */
+  private void makePlan (SpriteGroup movers)
+  {
+    planned = movers.getSize();
+    plannedSprites = movers.getSprites();
+    if (wasActive.length < planned)
+    {
+      int length = Math.max(planned, 2 * wasActive.length);
+      wasActive     = new boolean[length];
+      plannedX      = new double[length];
+      plannedY      = new double[length];
+      plannedWidth  = new int[length];
+      plannedHeight = new int[length];
+    }
+    int used = (planned + ChunkSize - 1) / ChunkSize;
+    while (chunks.size() < used)
+    {
+      chunks.add(new Chunk(chunks.size() * ChunkSize));
+    }
+    for (int c = 0; c < used; c++)
+    {
+      Chunk chunk = chunks.get(c);
+      chunk.to = Math.min(chunk.from + ChunkSize, planned);
+      chunk.reinitialize();
+    }
+    plan.used = used;
+    plan.reinitialize();
+    ForkJoinPool.commonPool().invoke(plan);
+  }
+
+  /**
+   * records the bounds, and the nearby live Blocks, of the sprites of a
+   * chunk; reads, but does not change, the sprites, grid and field
+   */
+  private void planChunk (Chunk chunk)
+  {
+    BlockGrid grid = getGrid();
+    BlockField field = getField();
+    int count = 0;
+    for (int i = chunk.from; i < chunk.to; i++)
+    {
+      Sprite mover = plannedSprites[i];
+      wasActive[i] = mover.isActive();
+      if (wasActive[i])
+      {
+        // the bounds as BasicCollisionGroup.getCollisionShape1 gives them
+        double x = mover.getX();
+        double y = mover.getY();
+        int width = mover.getWidth();
+        int height = mover.getHeight();
+        plannedX[i] = x;
+        plannedY[i] = y;
+        plannedWidth[i] = width;
+        plannedHeight[i] = height;
+        int found;
+        while ((found = grid.probe(x, y, width, height, chunk.probe)) > chunk.probe.length)
+        {
+          chunk.probe = new int[found];
+        }
+        for (int j = 0; j < found; j++)
+        {
+          int slot = chunk.probe[j];
+          if (field.isAlive(slot) && field.overlaps(slot, x, y, width, height, 1))
+          {
+            if (count == chunk.slots.length)
+            {
+              chunk.slots = Arrays.copyOf(chunk.slots, 2 * count);
+            }
+            chunk.slots[count++] = slot;
+          }
+        }
+      }
+      chunk.ends[i - chunk.from] = count;
+    }
+  }
+
+  /**
+   * @return true iff sprite i was planned, and is where, and as big as,
+   * it was then
+   */
+  private boolean isAsPlanned (int i, Sprite mover, CollisionShape shape1)
+  {
+    return i < planned && plannedSprites[i] == mover && wasActive[i] &&
+           shape1.getX() == plannedX[i] && shape1.getY() == plannedY[i] &&
+           shape1.getWidth() == plannedWidth[i] && shape1.getHeight() == plannedHeight[i];
+  }
+
+  /**
+   * checks sprite i against its planned candidates, as checkMover would
+   * against the grid
+   */
+  private void checkPlanned (int i, Sprite mover, CollisionShape shape1)
+  {
+    BlockField field = getField();
+    Chunk chunk = chunks.get(i / ChunkSize);
+    int k = i - chunk.from;
+    int end = chunk.ends[k];
+    for (int c = (k == 0) ? 0 : chunk.ends[k - 1]; c < end; c++)
+    {
+      int slot = chunk.slots[c];
+      if (!field.isAlive(slot))
+      {
+        continue;  // destroyed earlier in this pass
+      }
+      Block block = field.getView(slot);
+      CollisionShape shape2 = getCollisionShape2(block);
+      if (shape2 != null && isCollide(mover, block, shape1, shape2))
+      {
+        collided(mover, block);
+        if (!mover.isActive() || (shape1 = getCollisionShape1(mover)) == null)
+        {
+          return;
+        }
+        if (!isAsPlanned(i, mover, shape1))
+        {
+          // moved: the rest of the Blocks found where it was, as the
+          // serial group would check them
+          ++fallbacks;
+          probeRect.setBounds(plannedX[i], plannedY[i], plannedWidth[i], plannedHeight[i]);
+          checkMover(mover, probeRect, slot);
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * plans the sprites from one index up to (not including) another
+   */
+  private final class Chunk extends RecursiveAction
+  {
+    private final int from;
+    private int to;
+
+    /**
+     * the candidates of the chunk's sprites, one run after another
+     */
+    private int[] slots = new int[4 * ChunkSize];
+
+    /**
+     * for each sprite, the end of its run in slots
+     */
+    private final int[] ends = new int[ChunkSize];
+
+    /**
+     * the grid's candidates for one sprite, before screening
+     */
+    private int[] probe = new int[16];
+
+    Chunk (int from)
+    {
+      this.from = from;
+    }
+
+    @Override
+    protected void compute ()
+    {
+      planChunk(this);
+    }
+  }
+
+  /**
+   * runs the used chunks, and returns once all are done
+   */
+  private final class Plan extends RecursiveAction
+  {
+    private int used;
+
+    @Override
+    protected void compute ()
+    {
+      invokeAll(chunks.subList(0, used));
+    }
+  }
+
+}
@@ -33,24 +33,30 @@ public final class PowerUp extends Sprite implements Cloneable
   /**
    * strategy object for PowerUp's varying behavior 
    */
-  private final PowerUpStrategy strategy;
+  private PowerUpStrategy strategy;
 
   /**
    * describes the appearance of the PowerUp
    */
   private PowerUpDesc desc;
 
+  /**
+   * the kind of PowerUp, as named in level files (see PowerUpFactory);
+   * null for PowerUps restored from archives made before it was recorded
+   */
+  private String kind;
+
   /**
    * event source for hearing about changes in status of PowerUps 
    */
-  private static BreakoutEventSource<ActiveChangedEvent<PowerUp>> activitySource =
-    new BreakoutEventSource<ActiveChangedEvent<PowerUp>>();
+  private static ActiveChangedSource<PowerUp> activitySource =
+    new ActiveChangedSource<PowerUp>();
 
   /**
    * getter of event source for changes in activity status of PowerUps
-   * @return the current BreakoutEventSource<ActiveChangedEvent<PowerUp>>
+   * @return the current ActiveChangedSource<PowerUp>
    */
-  public static BreakoutEventSource<ActiveChangedEvent<PowerUp>> getActiveChangedSource ()
+  public static ActiveChangedSource<PowerUp> getActiveChangedSource ()
   {
     return activitySource;
   }
@@ -63,7 +69,8 @@ public final class PowerUp extends Sprite implements Cloneable
   }
 
   /**
-   * no-argument constructor for deserialization
+   * no-argument constructor for deserialization, and for SpritePools,
+   * which give the PowerUp its kind with reset
    */
   public PowerUp ()
   {
@@ -73,20 +80,49 @@ public final class PowerUp extends Sprite implements Cloneable
   }
 
   /**
-   * Constructor that requires a String to describe what kind of block it is, with a BufferedImage
-   * and a specified location. 
-   * @param image
+   * Constructor that requires a PowerUpDesc to describe what it looks like,
+   * a specified location, and its strategy.  The image is not loaded
+   * until refreshImage is called (BreakOutGame.addPowerUp does so).
+   * @param kind
+   * @param desc
    * @param x
    * @param y
+   * @param strategy
    */
-  protected PowerUp (PowerUpDesc desc, double x, double y, PowerUpStrategy strategy)
+  protected PowerUp (String kind, PowerUpDesc desc, double x, double y, PowerUpStrategy strategy)
   {
-    super(desc.getImage(), x, y);
+    super(x, y);
     this.strategy = strategy;
     this.desc     = desc;
+    this.kind     = kind;
     notifyActivityChanged();
   }
 
+  /**
+   * Makes a spent PowerUp (from a SpritePool) into a new one of the given
+   * kind, at rest at the given position; does not change whether it is
+   * active.  As with the constructor, the image is set by refreshImage.
+   * @param kind the PowerUpKind to become
+   * @param x a double giving the new x position
+   * @param y a double giving the new y position
+   */
+  public void reset (PowerUpKind kind, double x, double y)
+  {
+    setLocation(x, y);
+    setSpeed(0, 0);
+    this.strategy = kind.getStrategy();
+    this.desc     = kind.getDesc();
+    this.kind     = kind.getName();
+  }
+
+  /**
+   * @return a String giving the kind of PowerUp (may be null; see the field)
+   */
+  public String getKind ()
+  {
+    return kind;
+  }
+
   /**
    * Activates the PowerUp (is special action) and makes its Sprite inactive.
    */
@@ -161,7 +197,7 @@ public final class PowerUp extends Sprite implements Cloneable
   {
     if (activitySource != null && activitySource.anyListeners())
     {
-      activitySource.notify(new ActiveChangedEvent<PowerUp>(this));
+      activitySource.notifyActiveChanged(this);
     }
   }
 
@@ -186,6 +222,9 @@ public final class PowerUp extends Sprite implements Cloneable
    */
   public void refreshImage ()
   {
-    this.setImage(desc.getImage());
+    if (desc != null)
+    {
+      this.setImage(desc.getImage());
+    }
   }
 }
@@ -2,15 +2,25 @@ package BOut;
 
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import static BOut.BreakOutEngine.*;
 
 /**
  * Describes the appearance of a PowerUp
- * It is just part of a filename used to find an image file
+ * It is just part of a filename used to find an image file.
+ * PowerUpDescs are flyweights: there is one per appearance, and
+ * it resolves its image once (see preloadImages).
  * 
  * @author Eliot Moss
  */
 public class PowerUpDesc implements Serializable {
+
+  /**
+   * the one PowerUpDesc of each appearance, by short name
+   */
+  private static final Map<String,PowerUpDesc> registry =
+    new ConcurrentHashMap<String,PowerUpDesc>();
   
   /**
    * the short name of the PowerUp appearance
@@ -21,6 +31,11 @@ public class PowerUpDesc implements Serializable {
    * the full filename we will use
    */
   private final String filename;
+
+  /**
+   * the image, once resolved
+   */
+  private transient volatile BufferedImage image;
   
   /**
    * Create a description given the String that names it
@@ -34,14 +49,46 @@ public class PowerUpDesc implements Serializable {
   }
 
   /**
-   * Factory method for making a PowerUpDesc;
-   * allows for future optimization :-)
+   * Factory method for making a PowerUpDesc: returns the one
+   * for the appearance, creating it the first time
    * @param desc the String naming the PowerUp appearance
-   * @return a PowerUpDesc for that appearance
+   * @return the PowerUpDesc for that appearance
    */
   public static PowerUpDesc getPowerUpDesc (String desc)
   {
-    return new PowerUpDesc(desc);
+    PowerUpDesc pDesc = registry.get(desc);
+    if (pDesc == null)
+    {
+      PowerUpDesc fresh = new PowerUpDesc(desc);
+      pDesc = registry.putIfAbsent(desc, fresh);
+      if (pDesc == null)
+      {
+        pDesc = fresh;
+      }
+    }
+    return pDesc;
+  }
+
+  /**
+   * Resolves the image of every PowerUpDesc made so far, so that
+   * no image is looked up while the game is being played; needs
+   * the BreakOutEngine to be initialized
+   */
+  public static void preloadImages ()
+  {
+    for (PowerUpDesc pDesc : registry.values())
+    {
+      pDesc.getImage();
+    }
+  }
+
+  /**
+   * deserialization gives back the registered PowerUpDesc
+   * @return the PowerUpDesc registered for our appearance
+   */
+  private Object readResolve ()
+  {
+    return getPowerUpDesc(desc);
   }
   
   /**
@@ -53,10 +100,15 @@ public class PowerUpDesc implements Serializable {
 
   /**
    * Obtain the image corresponding to this appearance description
+   * (looked up the first time only)
    * @return the BufferedImage for this PowerUp description
    */
   public BufferedImage getImage ()
   {
-    return BreakOutEngine.getEngine().getImage(filename);
+    if (image == null)
+    {
+      image = BreakOutEngine.getEngine().getImage(filename);
+    }
+    return image;
   }
 }
@@ -1,51 +1,262 @@
 package BOut;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 
+/**
+ * Makes PowerUps from a registry of PowerUpKinds, each mapping the name
+ * used in level files to a color and a chain of PowerUpStrategy
+ * decorators.  Kinds are looked up by name (when a level is loaded) or
+ * by ID, both in constant time.  The built-in kinds are registered
+ * below; more can be registered from code, or read from a properties
+ * file whose lines look like
+ * <pre>
+ *   incrDecr = Blue incr decr
+ * </pre>
+ * giving the kind's name, its color (the PowerUp&lt;color&gt;.png image),
+ * and the decorations to apply, innermost first, to the plain strategy.
+ * Names not registered give plain yellow PowerUps, as they always have:
+ * they are looked up as the plain kind, and are not themselves
+ * registered, so that kind IDs do not depend on which levels are loaded.
+ */
 public class PowerUpFactory {
-  
+
 
   private PowerUpFactory () { }
-  
+
+  /**
+   * A named way of decorating a PowerUpStrategy, for use in kind declarations
+   */
+  public static interface Decoration {
+    /**
+     * @param decorated the PowerUpStrategy to decorate
+     * @return the decorated PowerUpStrategy
+     */
+    public PowerUpStrategy decorate (PowerUpStrategy decorated);
+  }
+
 
   private static final PowerUpStrategy plain  = new PowerUpStrategyPlain();
-  private static final PowerUpStrategy incr   = new PowerUpStrategyDecoratorIncr(plain);
-  private static final PowerUpStrategy decr   = new PowerUpStrategyDecoratorDecr(plain);
-  private static final PowerUpStrategy incDec = new PowerUpStrategyDecoratorDecr(incr);
-  private static final PowerUpStrategy mini   = new PowerUpStrategyDecoratorMiniballs(plain);
-  private static final PowerUpStrategy extraball = new PowerUpStrategyDecoratorBall(plain);////added from our new powerupstrategydecoratorball class
-  
 
-  public static PowerUp createPowerUp (String desc, BreakOutGame theGame, double x, double y)
+  /**
+   * the color of PowerUps of unregistered kinds
+   */
+  private static final String DefaultColor = "Yellow";
+
+  /**
+   * the name of the kind that names not registered are looked up as
+   */
+  public static final String PlainKind = "plain";
+
+  /**
+   * the decorations that kind declarations may name
+   */
+  private static final Map<String,Decoration> decorations = new HashMap<String,Decoration>();
+
+  /**
+   * the registered kinds, by name and by ID
+   */
+  private static final Map<String,PowerUpKind> kindsByName = new HashMap<String,PowerUpKind>();
+  private static PowerUpKind[] kindsById = new PowerUpKind[8];
+  private static int kindCount = 0;
+
+  /**
+   * counts the registrations, so that names resolved earlier can tell
+   * whether they would now resolve differently
+   */
+  private static int generation = 0;
+
+  static
+  {
+    registerDecoration("incr", new Decoration() {
+      public PowerUpStrategy decorate (PowerUpStrategy decorated) { return new PowerUpStrategyDecoratorIncr(decorated); }
+    });
+    registerDecoration("decr", new Decoration() {
+      public PowerUpStrategy decorate (PowerUpStrategy decorated) { return new PowerUpStrategyDecoratorDecr(decorated); }
+    });
+    registerDecoration("miniballs", new Decoration() {
+      public PowerUpStrategy decorate (PowerUpStrategy decorated) { return new PowerUpStrategyDecoratorMiniballs(decorated); }
+    });
+    registerDecoration("ball", new Decoration() {
+      public PowerUpStrategy decorate (PowerUpStrategy decorated) { return new PowerUpStrategyDecoratorBall(decorated); }
+    });
+    registerDecoration("split", new Decoration() {
+      public PowerUpStrategy decorate (PowerUpStrategy decorated) { return new PowerUpStrategyDecoratorSplit(decorated); }
+    });
+
+    register(PlainKind,     DefaultColor);
+    register("nothing",    DefaultColor);  // as the shipped levels name plain ones
+    register("incrOnHit",  "Purple", "incr");
+    register("decrOnMiss", "Cyan",   "decr");
+    register("incrDecr",   "Blue",   "incr", "decr");
+    register("miniballs",  "Red",    "miniballs");
+    register("extra",      "Orange", "ball");  // an extra Ball when caught
+    register("split",      "Green",  "split"); // a Ball in play splits when caught
+  }
+
+  /**
+   * Makes a decoration available to kind declarations
+   * @param name a String giving the name declarations use for it
+   * @param decoration the Decoration
+   */
+  public static synchronized void registerDecoration (String name, Decoration decoration)
+  {
+    decorations.put(name, decoration);
+  }
+
+  /**
+   * Registers (or re-registers) a kind, built from the plain strategy and named decorations
+   * @param name a String giving the kind's name, as used in level files
+   * @param color a String giving the kind's color (names the image file)
+   * @param decorationNames the names of the decorations to apply, innermost first
+   * @return the registered PowerUpKind
+   * @throws IllegalArgumentException if a decoration is not known
+   */
+  public static synchronized PowerUpKind register (String name, String color, String... decorationNames)
   {
-    String color = "Yellow";
     PowerUpStrategy strategy = plain;
-    if (desc.equals("incrOnHit"))
+    for (String decorationName : decorationNames)
+    {
+      Decoration decoration = decorations.get(decorationName);
+      if (decoration == null)
+      {
+        throw new IllegalArgumentException("unknown PowerUp decoration " + decorationName);
+      }
+      strategy = decoration.decorate(strategy);
+    }
+    return register(name, color, strategy);
+  }
+
+  /**
+   * Registers (or re-registers) a kind with a given strategy.  Blocks
+   * loaded before a kind is re-registered keep the old definition.
+   * @param name a String giving the kind's name, as used in level files
+   * @param color a String giving the kind's color (names the image file)
+   * @param strategy the PowerUpStrategy giving the kind's behavior
+   * @return the registered PowerUpKind
+   */
+  public static synchronized PowerUpKind register (String name, String color, PowerUpStrategy strategy)
+  {
+    PowerUpKind old = kindsByName.get(name);
+    int id = (old == null) ? kindCount++ : old.getId();
+    if (id == kindsById.length)
+    {
+      kindsById = Arrays.copyOf(kindsById, 2 * id);
+    }
+    PowerUpKind kind = new PowerUpKind(id, name, PowerUpDesc.getPowerUpDesc(color), strategy);
+    kindsById[id] = kind;
+    kindsByName.put(name, kind);
+    ++generation;
+    return kind;
+  }
+
+  /**
+   * Registers the kinds declared in a properties file (see the class comment)
+   * @param filename a String naming the file
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if any declaration is malformed (the others are still registered)
+   */
+  public static void loadConfig (String filename) throws IOException
+  {
+    Properties declarations = new Properties();
+    InputStream in = new FileInputStream(filename);
+    try
     {
-      color = "Purple";
-      strategy = incr;
+      declarations.load(in);
     }
-    else if (desc.equals("decrOnMiss"))
+    finally
     {
-      color = "Cyan";
-      strategy = decr;
+      in.close();
     }
-    else if (desc.equals("incrDecr"))
+    // register every good declaration, then complain about any bad ones
+    StringBuilder problems = new StringBuilder();
+    for (String name : declarations.stringPropertyNames())
     {
-      color = "Blue";
-      strategy = incDec;
+      String[] words = declarations.getProperty(name).trim().split("\\s+");
+      try
+      {
+        if (words[0].length() == 0)
+        {
+          throw new IllegalArgumentException("PowerUp kind " + name + " has no color");
+        }
+        register(name, words[0], Arrays.copyOfRange(words, 1, words.length));
+      }
+      catch (IllegalArgumentException exc)
+      {
+        problems.append((problems.length() == 0) ? "" : "; ").append(exc.getMessage());
+      }
     }
-    else if (desc.equals("miniballs"))
+    if (problems.length() > 0)
     {
-      color = "Red";
-      strategy = mini;
+      throw new IllegalArgumentException(problems.toString());
     }
-   ////create a new powerup orange for extraball
-    else if (desc.equals("extra")){
-    	color = "Orange";
-    	strategy = extraball;
+  }
+
+  /**
+   * Looks up a kind by name; a name not registered gives the plain kind
+   * (see isKind to tell them apart)
+   * @param name a String giving the kind's name
+   * @return the PowerUpKind
+   */
+  public static synchronized PowerUpKind getKind (String name)
+  {
+    PowerUpKind kind = kindsByName.get(name);
+    return (kind != null) ? kind : kindsByName.get(PlainKind);
+  }
+
+  /**
+   * @return an int that changes whenever a kind is registered (or
+   * re-registered), so that kinds looked up by name before may differ now
+   */
+  public static synchronized int getGeneration ()
+  {
+    return generation;
+  }
+
+  /**
+   * @param name a String giving a kind's name
+   * @return true iff a kind is registered under that name
+   */
+  public static synchronized boolean isKind (String name)
+  {
+    return kindsByName.containsKey(name);
+  }
+
+  /**
+   * @param id an int giving the ID of a registered kind
+   * @return the PowerUpKind with that ID
+   */
+  public static synchronized PowerUpKind getKind (int id)
+  {
+    if (id < 0 || id >= kindCount)
+    {
+      throw new IllegalArgumentException("no PowerUp kind with ID " + id);
     }
-    PowerUpDesc pDesc = PowerUpDesc.getPowerUpDesc(color);
-    return new PowerUp(pDesc, x, y, strategy);
+    return kindsById[id];
+  }
+
+  /**
+   * resolves the images of all the PowerUp appearances we use;
+   * call once the engine is initialized
+   */
+  public static void preloadImages ()
+  {
+    PowerUpDesc.preloadImages();
+  }
+
+  public static PowerUp createPowerUp (PowerUpKind kind, BreakOutWorld theGame, double x, double y)
+  {
+    return new PowerUp(kind.getName(), kind.getDesc(), x, y, kind.getStrategy());
+  }
+
+  public static PowerUp createPowerUp (String desc, BreakOutWorld theGame, double x, double y)
+  {
+    return createPowerUp(getKind(desc), theGame, x, y);
   }
 
 }
@@ -0,0 +1,86 @@
+package BOut;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * One kind of PowerUp, as registered with PowerUpFactory: its name (as
+ * used in level files), its appearance, and its behavior.  Each kind has
+ * a small integer ID, its index in the registry.  Blocks resolve the
+ * kinds they may drop when they are loaded, so dropping a PowerUp needs
+ * no lookup by name.
+ *
+ * @see PowerUpFactory
+ */
+public final class PowerUpKind implements Serializable {
+
+  /**
+   * the index of this kind in PowerUpFactory's registry
+   */
+  private final int id;
+
+  /**
+   * the name of this kind, as used in level files
+   */
+  private final String name;
+
+  /**
+   * the appearance of PowerUps of this kind
+   */
+  private final PowerUpDesc desc;
+
+  /**
+   * the (shared) behavior of PowerUps of this kind
+   */
+  private final PowerUpStrategy strategy;
+
+  /**
+   * @param id an int giving the index in the registry
+   * @param name a String giving the name of the kind
+   * @param desc the PowerUpDesc giving the appearance
+   * @param strategy the PowerUpStrategy giving the behavior
+   */
+  PowerUpKind (int id, String name, PowerUpDesc desc, PowerUpStrategy strategy)
+  {
+    this.id = id;
+    this.name = name;
+    this.desc = desc;
+    this.strategy = strategy;
+  }
+
+  /**
+   * @return an int giving the index of this kind in the registry
+   */
+  public int getId () { return id; }
+
+  /**
+   * @return a String giving the name of this kind
+   */
+  public String getName () { return name; }
+
+  /**
+   * @return the PowerUpDesc giving the appearance of this kind
+   */
+  public PowerUpDesc getDesc () { return desc; }
+
+  /**
+   * @return the PowerUpStrategy giving the behavior of this kind
+   */
+  public PowerUpStrategy getStrategy () { return strategy; }
+
+  /**
+   * deserialization gives back the kind now registered under our name
+   * @return the registered PowerUpKind
+   */
+  private Object readResolve () throws ObjectStreamException
+  {
+    return PowerUpFactory.getKind(name);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return name;
+  }
+
+}
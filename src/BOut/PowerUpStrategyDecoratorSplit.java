@@ -0,0 +1,28 @@
+package BOut;
+
+/**
+ * Implements the PowerUpStrategyDecorator that splits a Ball in play
+ * into several when hit (see BallSplitter)
+ */
+public class PowerUpStrategyDecoratorSplit extends PowerUpStrategyDecorator {
+
+  /**
+   * wraps the given strategy with our behavior
+   * @param decorated
+   */
+  public PowerUpStrategyDecoratorSplit (PowerUpStrategy decorated)
+  {
+    super(decorated);
+  }
+
+  /**
+   * ask for a Ball to be split once this step is over
+   */
+  @Override
+  public void activate ()
+  {
+    super.activate();
+    GameState.getGameState().requestBallSplit();
+  }
+
+}
@@ -0,0 +1,147 @@
+package BOut;
+
+import java.io.IOException;
+
+import com.golden.gamedev.engine.BaseInput;
+
+/**
+ * A BaseInput that plays back an InputLog instead of reading the mouse
+ * and keyboard: each update moves to the log's next tick.  Only what the
+ * log records is played back (the mouse's x position, and the key and
+ * mouse button pressed); the mouse's y position is always 0, nothing is
+ * ever released, and a key or button is down only in the tick in which
+ * it was pressed.  That is all BreakOutGame reads.
+ * <br>
+ * When the log runs out, the input is finished: no keys or buttons are
+ * pressed, and the mouse stays where it last was.
+ */
+public class ReplayInput implements BaseInput
+{
+  private final InputLog log;
+
+  /**
+   * true once the log has run out
+   */
+  private boolean finished = false;
+
+  private int previousMouseX = 0;
+  private boolean mouseVisible = true;
+
+  /**
+   * Constructor
+   * @param log the InputLog to play back, positioned before its first tick
+   */
+  public ReplayInput (InputLog log)
+  {
+    this.log = log;
+  }
+
+  /**
+   * @return the InputLog being played back
+   */
+  public InputLog getLog ()
+  {
+    return log;
+  }
+
+  /**
+   * @return true iff the log has run out
+   */
+  public boolean isFinished ()
+  {
+    return finished;
+  }
+
+  /**
+   * @return a long giving the current tick's elapsed time, in milliseconds
+   * (0 once the log has run out)
+   */
+  public long getElapsedMillis ()
+  {
+    return finished ? 0 : log.getElapsedMillis();
+  }
+
+  /**
+   * Moves to the log's next tick; the elapsed time given is ignored, the
+   * tick's own being the one that counts (see getElapsedMillis)
+   * @param elapsedTime a long giving the real time since the last update
+   */
+  public void update (long elapsedTime)
+  {
+    previousMouseX = log.getMouseX();
+    if (finished)
+    {
+      return;
+    }
+    try
+    {
+      finished = !log.next();
+    }
+    catch (IOException exc)
+    {
+      System.out.printf("Could not read the input log; replay ends here%nInfo:%n%s%n", exc);
+      finished = true;
+    }
+    if (finished)
+    {
+      cleanup();
+    }
+  }
+
+  public void refresh () { }
+
+  /**
+   * closes the log
+   */
+  public void cleanup ()
+  {
+    try
+    {
+      log.close();
+    }
+    catch (IOException exc)
+    {
+      System.out.printf("Could not close the input log%nInfo:%n%s%n", exc);
+    }
+  }
+
+  /**
+   * the played back mouse cannot be moved
+   */
+  public void mouseMove (int x, int y) { }
+
+  public boolean isMouseExists () { return true; }
+
+  public int getMouseX () { return log.getMouseX(); }
+
+  public int getMouseY () { return 0; }
+
+  public int getMouseDX () { return log.getMouseX() - previousMouseX; }
+
+  public int getMouseDY () { return 0; }
+
+  public int getMouseReleased () { return NO_BUTTON; }
+
+  public boolean isMouseReleased (int button) { return false; }
+
+  public int getMousePressed () { return finished ? NO_BUTTON : log.getMousePressed(); }
+
+  public boolean isMousePressed (int button) { return button != NO_BUTTON && button == getMousePressed(); }
+
+  public boolean isMouseDown (int button) { return isMousePressed(button); }
+
+  public int getKeyReleased () { return NO_KEY; }
+
+  public boolean isKeyReleased (int key) { return false; }
+
+  public int getKeyPressed () { return finished ? NO_KEY : log.getKeyPressed(); }
+
+  public boolean isKeyPressed (int key) { return key != NO_KEY && key == getKeyPressed(); }
+
+  public boolean isKeyDown (int key) { return isKeyPressed(key); }
+
+  public void setMouseVisible (boolean visible) { mouseVisible = visible; }
+
+  public boolean isMouseVisible () { return mouseVisible; }
+
+}
@@ -0,0 +1,430 @@
+package BOut;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import BOut.BreakOutGame.Memento;
+import XmlImporter.BlockDescFactory;
+
+/**
+ * Reads and writes Mementos in a compact binary archive format, with an
+ * explicit layout for each kind of Sprite, instead of Java serialization.
+ * Only the state the game needs is written (no Golden T internals), so
+ * archives stay small and survive changes to the classes.
+ * <br>
+ * Layout (big-endian), version 3:
+ * <pre>
+ *   int magic, short version
+ *   GameState         (see GameState.writeTo)
+ *   GameRandom:       long seed, short n, n x (long draws, state, gamma) (one per stream)
+ *   strings:   int n, n x (short length, UTF-8 bytes)
+ *   descs:     int n, n x (int width, height, r, g, b)
+ *   paddle:    double x, y
+ *   balls:     int n, n x (double x, y, dx, dy, spin)
+ *   miniballs: int n, n x (double x, y, dy; int id, hitsRemaining)
+ *   blocks:    int n, n x (int desc; double x, y; int value, hitsNeeded,
+ *                          lastMiniball; short k, k x (int kind string, float probability))
+ *   powerUps:  int n, n x (int kind string; double x, y, dx, dy)
+ * </pre>
+ * Version 2 records only each stream's draws, from which its state is
+ * rebuilt (see GameRandom.restore).  Version 1 is the same without the
+ * GameRandom; a game restored from such an archive gets a fresh seed.
+ */
+public final class SnapshotCodec {
+
+  private SnapshotCodec () { }
+
+  /**
+   * first four bytes of every archive in this format ("BOSN")
+   */
+  public static final int Magic = 0x424F534E;
+
+  /**
+   * the layout version we write
+   */
+  public static final short Version = 3;
+
+  /**
+   * the oldest layout version we can still read
+   */
+  public static final short OldestVersion = 1;
+
+  /**
+   * Tests whether a file begins like an archive in this format
+   * (archives written with Java serialization do not)
+   * @param filename a String naming the file
+   * @return true iff the file starts with our magic number
+   */
+  public static boolean isSnapshotFile (String filename)
+  {
+    try
+    {
+      FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+      try
+      {
+        ByteBuffer head = ByteBuffer.allocate(4);
+        while (head.hasRemaining() && channel.read(head) >= 0) { }
+        return !head.hasRemaining() && head.getInt(0) == Magic;
+      }
+      finally
+      {
+        channel.close();
+      }
+    }
+    catch (IOException exc)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Writes a Memento to a file
+   * @param filename a String naming the file (replaced if it exists)
+   * @param snapshot the Memento to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void write (String filename, Memento snapshot) throws IOException
+  {
+    ByteBuffer buffer = encode(snapshot);
+    FileChannel channel = FileChannel.open(Paths.get(filename),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try
+    {
+      while (buffer.hasRemaining())
+      {
+        channel.write(buffer);
+      }
+    }
+    finally
+    {
+      channel.close();
+    }
+  }
+
+  /**
+   * Reads a Memento from a file written by write
+   * @param filename a String naming the file
+   * @return the Memento, whose Sprites are ready to be added to a game
+   * @throws IOException if the file cannot be read, or is not in a format we know
+   */
+  public static Memento read (String filename) throws IOException
+  {
+    FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+    ByteBuffer buffer;
+    try
+    {
+      buffer = ByteBuffer.allocate((int)channel.size());
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) { }
+    }
+    finally
+    {
+      channel.close();
+    }
+    buffer.flip();
+    try
+    {
+      return decode(buffer);
+    }
+    catch (java.nio.BufferUnderflowException exc)
+    {
+      throw new IOException("archive " + filename + " is truncated");
+    }
+  }
+
+  /**
+   * Encodes a Memento into a buffer sized exactly to fit
+   * @param snapshot the Memento to encode
+   * @return a ByteBuffer, flipped and ready to be written out
+   */
+  public static ByteBuffer encode (Memento snapshot)
+  {
+    // intern strings and block appearances, so each is written once
+    List<String> strings = new ArrayList<String>();
+    Map<String,Integer> stringIndex = new HashMap<String,Integer>();
+    List<BlockDesc> descs = new ArrayList<BlockDesc>();
+    Map<BlockDesc,Integer> descIndex = new HashMap<BlockDesc,Integer>();
+    int powerupEntries = 0;
+    for (Block b : snapshot.getBlocks())
+    {
+      if (!descIndex.containsKey(b.getDesc()))
+      {
+        descIndex.put(b.getDesc(), descs.size());
+        descs.add(b.getDesc());
+      }
+      for (int i = 0; i < b.getPowerupCount(); i++)
+      {
+        intern(b.getPowerupKind(i).getName(), strings, stringIndex);
+      }
+      powerupEntries += b.getPowerupCount();
+    }
+    for (PowerUp p : snapshot.getPowerUps())
+    {
+      intern(kindOf(p), strings, stringIndex);
+    }
+
+    GameRandom random = snapshot.getRandom();
+    long[] draws = (random == null) ? new long[0] : random.getDraws();
+    long[] states = (random == null) ? new long[0] : random.getStates();
+    long[] gammas = (random == null) ? new long[0] : random.getGammas();
+
+    int size = 4 + 2 + GameState.snapshotSize;
+    size += 8 + 2 + draws.length * 3 * 8;
+    size += 4;
+    for (String s : strings)
+    {
+      size += 2 + s.getBytes(StandardCharsets.UTF_8).length;
+    }
+    size += 4 + descs.size() * 5 * 4;
+    size += 2 * 8;
+    size += 4 + snapshot.getBalls().size() * 5 * 8;
+    size += 4 + snapshot.getMiniballs().size() * (3 * 8 + 2 * 4);
+    size += 4 + snapshot.getBlocks().size() * (4 + 2 * 8 + 3 * 4 + 2) + powerupEntries * (4 + 4);
+    size += 4 + snapshot.getPowerUps().size() * (4 + 4 * 8);
+
+    ByteBuffer out = ByteBuffer.allocate(size);
+    out.putInt(Magic);
+    out.putShort(Version);
+    snapshot.getState().writeTo(out);
+    out.putLong((random == null) ? 0 : random.getSeed());
+    out.putShort((short)draws.length);
+    for (int i = 0; i < draws.length; i++)
+    {
+      out.putLong(draws[i]);
+      out.putLong(states[i]);
+      out.putLong(gammas[i]);
+    }
+
+    out.putInt(strings.size());
+    for (String s : strings)
+    {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      out.putShort((short)bytes.length);
+      out.put(bytes);
+    }
+
+    out.putInt(descs.size());
+    for (BlockDesc d : descs)
+    {
+      out.putInt(d.getWidth());
+      out.putInt(d.getHeight());
+      out.putInt(d.getR());
+      out.putInt(d.getG());
+      out.putInt(d.getB());
+    }
+
+    Paddle paddle = snapshot.getPaddle();
+    out.putDouble(paddle.getX());
+    out.putDouble(paddle.getY());
+
+    out.putInt(snapshot.getBalls().size());
+    for (Ball b : snapshot.getBalls())
+    {
+      out.putDouble(b.getX());
+      out.putDouble(b.getY());
+      out.putDouble(b.getHorizontalSpeed());
+      out.putDouble(b.getVerticalSpeed());
+      out.putDouble(b.getSpin());
+    }
+
+    out.putInt(snapshot.getMiniballs().size());
+    for (Miniball m : snapshot.getMiniballs())
+    {
+      out.putDouble(m.getX());
+      out.putDouble(m.getY());
+      out.putDouble(m.getVerticalSpeed());
+      out.putInt(m.getID());
+      out.putInt(m.getBlockHitsRemaining());
+    }
+
+    out.putInt(snapshot.getBlocks().size());
+    for (Block b : snapshot.getBlocks())
+    {
+      out.putInt(descIndex.get(b.getDesc()));
+      out.putDouble(b.getXVal());
+      out.putDouble(b.getYVal());
+      out.putInt(b.getValue());
+      out.putInt(b.getHitsNeeded());
+      out.putInt(b.getLastMiniball());
+      out.putShort((short)b.getPowerupCount());
+      for (int i = 0; i < b.getPowerupCount(); i++)
+      {
+        out.putInt(stringIndex.get(b.getPowerupKind(i).getName()));
+        out.putFloat(b.getPowerupProbability(i));
+      }
+    }
+
+    out.putInt(snapshot.getPowerUps().size());
+    for (PowerUp p : snapshot.getPowerUps())
+    {
+      out.putInt(stringIndex.get(kindOf(p)));
+      out.putDouble(p.getX());
+      out.putDouble(p.getY());
+      out.putDouble(p.getHorizontalSpeed());
+      out.putDouble(p.getVerticalSpeed());
+    }
+
+    out.flip();
+    return out;
+  }
+
+  /**
+   * Decodes a Memento from a buffer produced by encode
+   * @param in the ByteBuffer to read from
+   * @return the decoded Memento
+   * @throws IOException if the buffer is not in a format we know
+   */
+  public static Memento decode (ByteBuffer in) throws IOException
+  {
+    if (in.getInt() != Magic)
+    {
+      throw new IOException("not a BreakOut archive");
+    }
+    short version = in.getShort();
+    if (version < OldestVersion || version > Version)
+    {
+      throw new IOException("unsupported archive version " + version);
+    }
+    GameState state = GameState.readFrom(in);
+
+    GameRandom random = null;
+    if (version >= 2)
+    {
+      long seed = in.getLong();
+      long[] draws = new long[in.getShort()];
+      long[] states = (version >= 3) ? new long[draws.length] : null;
+      long[] gammas = (version >= 3) ? new long[draws.length] : null;
+      for (int i = 0; i < draws.length; i++)
+      {
+        draws[i] = in.getLong();
+        if (states != null)
+        {
+          states[i] = in.getLong();
+          gammas[i] = in.getLong();
+        }
+      }
+      // an archive of a Memento without a GameRandom records no streams
+      if (draws.length > 0)
+      {
+        try
+        {
+          random = (states != null) ? GameRandom.restore(seed, draws, states, gammas)
+                                    : GameRandom.restore(seed, draws);
+        }
+        catch (IllegalArgumentException exc)
+        {
+          throw new IOException("archive's GameRandom does not fit this game: " + exc.getMessage());
+        }
+      }
+    }
+
+    String[] strings = new String[in.getInt()];
+    for (int i = 0; i < strings.length; i++)
+    {
+      byte[] bytes = new byte[in.getShort() & 0xFFFF];
+      in.get(bytes);
+      strings[i] = new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    BlockDesc[] descs = new BlockDesc[in.getInt()];
+    for (int i = 0; i < descs.length; i++)
+    {
+      descs[i] = BlockDescFactory.getBlockDesc(in.getInt(), in.getInt(), in.getInt(), in.getInt(), in.getInt());
+    }
+
+    Paddle paddle = new Paddle(in.getDouble(), in.getDouble());
+
+    int n = in.getInt();
+    List<Ball> balls = new ArrayList<Ball>(n);
+    for (int i = 0; i < n; i++)
+    {
+      Ball b = new Ball(in.getDouble(), in.getDouble());
+      b.setSpeed(in.getDouble(), in.getDouble());
+      b.setSpin(in.getDouble());
+      balls.add(b);
+    }
+
+    n = in.getInt();
+    List<Miniball> miniballs = new ArrayList<Miniball>(n);
+    for (int i = 0; i < n; i++)
+    {
+      Miniball m = new Miniball(in.getDouble(), in.getDouble());
+      m.setVerticalSpeed(in.getDouble());
+      m.setID(in.getInt());
+      m.setBlockHitsRemaining(in.getInt());
+      miniballs.add(m);
+    }
+
+    // Blocks with the same drop table share one DropSampler, as when loaded from a level
+    Map<DropSampler,DropSampler> samplers = new HashMap<DropSampler,DropSampler>();
+    n = in.getInt();
+    List<Block> blocks = new ArrayList<Block>(n);
+    BlockField blockField = new BlockField(n);
+    for (int i = 0; i < n; i++)
+    {
+      Block b = new Block(blockField, descs[in.getInt()], in.getDouble(), in.getDouble());
+      b.setValue(in.getInt());
+      b.setHitsNeeded(in.getInt());
+      b.setLastMiniball(in.getInt());
+      int k = in.getShort();
+      PowerUpKind[] kinds = new PowerUpKind[k];
+      float[] probabilities = new float[k];
+      for (int j = 0; j < k; j++)
+      {
+        kinds[j] = PowerUpFactory.getKind(strings[in.getInt()]);
+        probabilities[j] = in.getFloat();
+      }
+      DropSampler drops = new DropSampler(kinds, probabilities);
+      DropSampler shared = samplers.get(drops);
+      if (shared == null)
+      {
+        samplers.put(drops, drops);
+        shared = drops;
+      }
+      b.setPowerups(shared);
+      blocks.add(b);
+    }
+
+    n = in.getInt();
+    List<PowerUp> powerUps = new ArrayList<PowerUp>(n);
+    for (int i = 0; i < n; i++)
+    {
+      String kind = strings[in.getInt()];
+      PowerUp p = PowerUpFactory.createPowerUp(kind, null, in.getDouble(), in.getDouble());
+      p.setSpeed(in.getDouble(), in.getDouble());
+      powerUps.add(p);
+    }
+
+    return new Memento(balls, paddle, blocks, powerUps, miniballs, state, random);
+  }
+
+  /**
+   * adds a String to the table if it is not already there
+   */
+  private static void intern (String s, List<String> strings, Map<String,Integer> index)
+  {
+    if (!index.containsKey(s))
+    {
+      index.put(s, strings.size());
+      strings.add(s);
+    }
+  }
+
+  /**
+   * @param p a PowerUp
+   * @return the PowerUp's kind; PowerUps restored from old archives do not
+   * know theirs, and are written as plain ones
+   */
+  private static String kindOf (PowerUp p)
+  {
+    return (p.getKind() == null) ? "" : p.getKind();
+  }
+
+}
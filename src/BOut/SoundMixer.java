@@ -0,0 +1,515 @@
+package BOut;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import com.golden.gamedev.engine.BaseAudio;
+
+/**
+ * A BaseAudio that plays short sounds from PCM decoded once, at
+ * startup, instead of opening and decoding a file for every play.  Every
+ * sound file in a directory is converted to one format (44.1 kHz, 16-bit
+ * stereo) and kept in memory; a dedicated audio thread mixes them through
+ * a fixed pool of voices into an AudioSink.
+ * <br>
+ * The game thread only marks a sound as wanted: play costs a hash
+ * lookup and a store, and allocates nothing.  At the end of each tick,
+ * endTick hands the wanted sounds to the audio thread, so a sound asked
+ * for many times in one tick (a barrage of Miniballs hitting Blocks)
+ * starts once.  A sound is also started no more often than its minimum
+ * interval allows, and when every voice is busy the voice that has
+ * played longest is taken over.
+ * <br>
+ * Files not found in the directory are played by BaseAudio as before,
+ * so the mixer can stand in for the engine's bsSound unnoticed.
+ */
+public class SoundMixer extends BaseAudio
+{
+  /**
+   * the format sounds are mixed in
+   */
+  public static final AudioFormat MixFormat = new AudioFormat(44100.0f, 16, 2, true, false);
+
+  private static final int Channels = 2;
+  private static final int BytesPerFrame = 2 * Channels;
+
+  /**
+   * the frames mixed at a time (about 12 ms); also the unit of latency
+   */
+  public static final int BlockFrames = 512;
+
+  /**
+   * how many blocks a sound card line buffers
+   */
+  public static final int LineBufferBlocks = 4;
+
+  /**
+   * the default number of voices, i.e., of sounds that play at once
+   */
+  public static final int DefaultVoices = 8;
+
+  /**
+   * the default least time between starts of the same sound, in milliseconds
+   */
+  public static final long DefaultMinIntervalMillis = 30;
+
+  /**
+   * the file names the sounds were loaded from, as passed to play,
+   * mapped to their index in the arrays below
+   */
+  private final Map<String,Integer> index = new HashMap<String,Integer>();
+
+  /**
+   * each sound's interleaved stereo samples
+   */
+  private final short[][] samples;
+
+  private final long[] minIntervalNanos;
+
+  /*
+   * owned by the game thread: which sounds were asked for this tick, how
+   * many times, and when each was last started
+   */
+  private final int[] requests;
+  private final long[] lastStartNanos;
+
+  /**
+   * sounds handed to the audio thread and not yet started (1 if wanted)
+   */
+  private final AtomicIntegerArray triggers;
+
+  /*
+   * owned by the audio thread: the sound each voice plays (-1 if none),
+   * and the next sample it plays
+   */
+  private final int[] voiceSound;
+  private final int[] voicePosition;
+
+  private final int[] mixBuffer = new int[BlockFrames * Channels];
+  private final byte[] outBuffer = new byte[BlockFrames * BytesPerFrame];
+
+  private final AudioSink sink;
+  private final Thread thread;
+  private volatile boolean running = true;
+  private volatile boolean silenceRequested = false;
+
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong rateLimited = new AtomicLong();
+  private final AtomicLong started = new AtomicLong();
+  private final AtomicLong stolen = new AtomicLong();
+
+  /**
+   * Constructor: loads every sound in a directory, then starts the audio
+   * thread; files that cannot be decoded are reported and left to BaseAudio
+   * @param base the BaseAudio being replaced, whose BaseIO, renderer and
+   * settings are taken over
+   * @param directory a String naming the directory of sound files, as it
+   * appears at the start of the names passed to play (e.g., "sounds/")
+   * @param sink the AudioSink to mix into, already opened with MixFormat
+   * @param voices an int giving the number of voices
+   */
+  public SoundMixer (BaseAudio base, String directory, AudioSink sink, int voices)
+  {
+    super(base.getBaseIO(), base.getBaseRenderer());
+    List<short[]> loaded = new ArrayList<short[]>();
+    File[] files = new File(directory).listFiles();
+    if (files != null)
+    {
+      Arrays.sort(files);
+      for (File file : files)
+      {
+        if (!file.isFile())
+        {
+          continue;
+        }
+        String name = directory + file.getName();
+        try
+        {
+          short[] pcm = decode(file);
+          index.put(name, loaded.size());
+          loaded.add(pcm);
+        }
+        catch (UnsupportedAudioFileException exc)
+        {
+          // not a sound (or one Java Sound cannot read); BaseAudio may still play it
+        }
+        catch (IOException exc)
+        {
+          System.out.printf("Could not load sound %s; it will be played from the file%nInfo:%n%s%n", name, exc);
+        }
+        catch (IllegalArgumentException exc)
+        {
+          System.out.printf("Could not convert sound %s; it will be played from the file%nInfo:%n%s%n", name, exc);
+        }
+      }
+    }
+    int count = loaded.size();
+    samples = loaded.toArray(new short[count][]);
+    minIntervalNanos = new long[count];
+    Arrays.fill(minIntervalNanos, DefaultMinIntervalMillis * 1000000L);
+    requests = new int[count];
+    lastStartNanos = new long[count];
+    Arrays.fill(lastStartNanos, Long.MIN_VALUE / 2);
+    triggers = new AtomicIntegerArray(count);
+    voiceSound = new int[voices];
+    Arrays.fill(voiceSound, -1);
+    voicePosition = new int[voices];
+
+    // an unavailable renderer leaves base inactive, but need not silence the mixer
+    setActive(base.isActive() || !base.isAvailable());
+    setVolume(base.getVolume());
+    setAudioPolicy(base.getAudioPolicy());
+    setMaxSimultaneous(base.getMaxSimultaneous());
+    setExclusive(base.isExclusive());
+
+    this.sink = sink;
+    thread = new Thread(new Runnable() {
+        public void run () { mixLoop(); }
+      }, "BOut sound mixer");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MAX_PRIORITY);
+    thread.start();
+  }
+
+  /**
+   * Makes the AudioSink a SoundMixer should play through: the sound card's
+   * line, unless the BOut.nullAudio system property is true or there is no
+   * line, in which case a (paced) NullAudioSink
+   * @return an AudioSink, opened with MixFormat
+   */
+  public static AudioSink openSink ()
+  {
+    if (!Boolean.getBoolean("BOut.nullAudio"))
+    {
+      AudioSink line = new LineAudioSink(BlockFrames * BytesPerFrame, LineBufferBlocks);
+      try
+      {
+        line.open(MixFormat);
+        return line;
+      }
+      catch (LineUnavailableException exc)
+      {
+        System.out.printf("No sound line available; playing silently%nInfo:%n%s%n", exc);
+      }
+    }
+    AudioSink sink = new NullAudioSink(true);
+    try
+    {
+      sink.open(MixFormat);
+    }
+    catch (LineUnavailableException exc)
+    {
+      // a NullAudioSink always opens
+    }
+    return sink;
+  }
+
+  /**
+   * reads a sound file and converts it to MixFormat
+   */
+  private static short[] decode (File file) throws UnsupportedAudioFileException, IOException
+  {
+    AudioInputStream in = AudioSystem.getAudioInputStream(file);
+    try
+    {
+      AudioInputStream converted = in;
+      if (!in.getFormat().matches(MixFormat))
+      {
+        converted = AudioSystem.getAudioInputStream(MixFormat, in);
+      }
+      byte[] bytes = readAll(converted);
+      short[] pcm = new short[bytes.length / 2];
+      for (int i = 0; i < pcm.length; i++)
+      {
+        pcm[i] = (short)((bytes[2*i] & 0xFF) | (bytes[2*i+1] << 8));
+      }
+      return pcm;
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  private static byte[] readAll (InputStream in) throws IOException
+  {
+    byte[] buffer = new byte[1 << 16];
+    int length = 0;
+    int n;
+    while ((n = in.read(buffer, length, buffer.length - length)) > 0)
+    {
+      length += n;
+      if (length == buffer.length)
+      {
+        buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+      }
+    }
+    // whole frames only
+    return Arrays.copyOf(buffer, length - length % BytesPerFrame);
+  }
+
+  /**
+   * Asks for a sound to start at the end of this tick; sounds not loaded
+   * by the mixer are played by BaseAudio
+   * @param audiofile a String naming the sound file
+   * @param policy an int giving BaseAudio's policy, used only for sounds
+   * played by BaseAudio
+   * @return an int: for a mixed sound, its index; otherwise as BaseAudio
+   */
+  @Override
+  public int play (String audiofile, int policy)
+  {
+    Integer sound = index.get(audiofile);
+    if (sound == null)
+    {
+      return getBaseRenderer().isAvailable() ? super.play(audiofile, policy) : -1;
+    }
+    if (!isActive())
+    {
+      return -1;
+    }
+    ++requests[sound];
+    return sound;
+  }
+
+  /**
+   * Ends a tick: each sound asked for during the tick is handed to the
+   * audio thread once, unless it started less than its minimum interval
+   * ago; to be called by the game thread, as the last thing in update
+   */
+  public void endTick ()
+  {
+    long now = System.nanoTime();
+    for (int sound = 0; sound < requests.length; sound++)
+    {
+      int n = requests[sound];
+      if (n == 0)
+      {
+        continue;
+      }
+      requests[sound] = 0;
+      requested.addAndGet(n);
+      coalesced.addAndGet(n - 1);
+      if (now - lastStartNanos[sound] < minIntervalNanos[sound])
+      {
+        rateLimited.incrementAndGet();
+        continue;
+      }
+      lastStartNanos[sound] = now;
+      triggers.set(sound, 1);
+    }
+  }
+
+  /**
+   * Sets the least time between starts of one sound
+   * @param audiofile a String naming the sound file, as passed to play
+   * @param millis a long giving the interval, in milliseconds
+   * @return true iff the sound is one the mixer plays
+   */
+  public boolean setMinInterval (String audiofile, long millis)
+  {
+    Integer sound = index.get(audiofile);
+    if (sound == null)
+    {
+      return false;
+    }
+    minIntervalNanos[sound] = millis * 1000000L;
+    return true;
+  }
+
+  /**
+   * @param audiofile a String naming a sound file, as passed to play
+   * @return true iff the mixer has the sound loaded
+   */
+  public boolean isLoaded (String audiofile)
+  {
+    return index.containsKey(audiofile);
+  }
+
+  /**
+   * @return true iff sounds can be played: the mixer has sounds loaded,
+   * or BaseAudio's renderer is available
+   */
+  @Override
+  public boolean isAvailable ()
+  {
+    return samples.length > 0 || getBaseRenderer().isAvailable();
+  }
+
+  /**
+   * Stops every sound, both mixed ones and those played by BaseAudio
+   */
+  @Override
+  public void stopAll ()
+  {
+    silenceRequested = true;
+    super.stopAll();
+  }
+
+  /**
+   * Stops the audio thread, plays out what was mixed, and closes the sink
+   */
+  public void shutdown ()
+  {
+    running = false;
+    thread.interrupt();
+    try
+    {
+      thread.join(1000);
+    }
+    catch (InterruptedException exc)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return a long giving how many times mixed sounds were asked for
+   */
+  public long getRequested () { return requested.get(); }
+
+  /**
+   * @return a long giving how many requests were merged with another of
+   * the same sound in the same tick
+   */
+  public long getCoalesced () { return coalesced.get(); }
+
+  /**
+   * @return a long giving how many ticks' requests of a sound were dropped
+   * because the sound had started too recently
+   */
+  public long getRateLimited () { return rateLimited.get(); }
+
+  /**
+   * @return a long giving how many sounds the audio thread started
+   */
+  public long getStarted () { return started.get(); }
+
+  /**
+   * @return a long giving how many sounds were cut off to free a voice
+   */
+  public long getStolen () { return stolen.get(); }
+
+  /**
+   * the audio thread: start wanted sounds, mix a block, write it, repeat
+   */
+  private void mixLoop ()
+  {
+    try
+    {
+      while (running)
+      {
+        if (silenceRequested)
+        {
+          silenceRequested = false;
+          Arrays.fill(voiceSound, -1);
+        }
+        startTriggered();
+        mixBlock();
+        sink.write(outBuffer, outBuffer.length);
+      }
+    }
+    finally
+    {
+      sink.close();
+    }
+  }
+
+  /**
+   * gives each sound handed over by endTick a voice
+   */
+  private void startTriggered ()
+  {
+    for (int sound = 0; sound < samples.length; sound++)
+    {
+      if (triggers.get(sound) != 0 && triggers.getAndSet(sound, 0) != 0)
+      {
+        int voice = freeVoice();
+        voiceSound[voice] = sound;
+        voicePosition[voice] = 0;
+        started.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * @return an idle voice, or else the one furthest through its sound
+   */
+  private int freeVoice ()
+  {
+    int furthest = 0;
+    for (int voice = 0; voice < voiceSound.length; voice++)
+    {
+      if (voiceSound[voice] < 0)
+      {
+        return voice;
+      }
+      if (voicePosition[voice] > voicePosition[furthest])
+      {
+        furthest = voice;
+      }
+    }
+    stolen.incrementAndGet();
+    return furthest;
+  }
+
+  /**
+   * sums the voices' next samples into outBuffer, clipping to 16 bits
+   */
+  private void mixBlock ()
+  {
+    Arrays.fill(mixBuffer, 0);
+    for (int voice = 0; voice < voiceSound.length; voice++)
+    {
+      int sound = voiceSound[voice];
+      if (sound < 0)
+      {
+        continue;
+      }
+      short[] pcm = samples[sound];
+      int position = voicePosition[voice];
+      int n = Math.min(mixBuffer.length, pcm.length - position);
+      for (int i = 0; i < n; i++)
+      {
+        mixBuffer[i] += pcm[position + i];
+      }
+      position += n;
+      if (position >= pcm.length)
+      {
+        voiceSound[voice] = -1;
+      }
+      voicePosition[voice] = position;
+    }
+    float gain = getVolume();
+    for (int i = 0, b = 0; i < mixBuffer.length; i++, b += 2)
+    {
+      int sample = (int)(mixBuffer[i] * gain);
+      if (sample > Short.MAX_VALUE)
+      {
+        sample = Short.MAX_VALUE;
+      }
+      else if (sample < Short.MIN_VALUE)
+      {
+        sample = Short.MIN_VALUE;
+      }
+      outBuffer[b] = (byte)sample;
+      outBuffer[b+1] = (byte)(sample >> 8);
+    }
+  }
+
+}
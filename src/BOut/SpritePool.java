@@ -0,0 +1,88 @@
+package BOut;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.golden.gamedev.object.*;
+
+/**
+ * Reuses Sprites of one kind (Balls, Miniballs, PowerUps) instead of
+ * making a new one each time one is fired or dropped.  The pool's
+ * Sprites are immutable, so their SpriteGroup keeps them when they go
+ * inactive (Golden T's periodic cleanup removes only mutable ones); a
+ * Sprite that has gone inactive is handed out again by obtain.  The
+ * group thus grows only to the largest number of Sprites of the kind
+ * active at once.
+ * <br>
+ * obtain returns either a reused Sprite, which is inactive, or a new
+ * one, which (like every Sprite) is born active and has already been
+ * announced to its ActiveChangedSource.  Either way the caller resets
+ * it and then calls setActive(true), so exactly one +1 activity change
+ * is seen per Sprite obtained, as when every Sprite was new.  Listeners
+ * therefore see a reused Sprite only once it has been reset.
+ *
+ * @param <S> the type of Sprite pooled
+ */
+public abstract class SpritePool<S extends Sprite>
+{
+  /**
+   * every Sprite the pool has made, in order of creation
+   */
+  private final List<S> members = new ArrayList<S>();
+
+  /**
+   * where the search for an inactive member starts, so that members are
+   * reused in turn and a search usually succeeds at once
+   */
+  private int next = 0;
+
+  private long reused = 0;
+
+  /**
+   * Makes a new Sprite and adds it to the world (as BreakOutWorld's add
+   * methods do); called when no member is inactive
+   * @return the new S
+   */
+  protected abstract S create ();
+
+  /**
+   * @return an S to reset and then activate: an inactive member if there
+   * is one, otherwise a new one (see the class comment)
+   */
+  public S obtain ()
+  {
+    int n = members.size();
+    for (int k = 0; k < n; k++)
+    {
+      int i = (next + k < n) ? next + k : next + k - n;
+      S sprite = members.get(i);
+      if (!sprite.isActive())
+      {
+        next = (i + 1 < n) ? i + 1 : 0;
+        ++reused;
+        return sprite;
+      }
+    }
+    S sprite = create();
+    sprite.setImmutable(true);
+    members.add(sprite);
+    return sprite;
+  }
+
+  /**
+   * @return an int giving how many Sprites the pool has made
+   */
+  public int getCreated ()
+  {
+    return members.size();
+  }
+
+  /**
+   * @return a long giving how many times a Sprite was reused
+   */
+  public long getReused ()
+  {
+    return reused;
+  }
+
+}
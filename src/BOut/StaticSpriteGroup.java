@@ -0,0 +1,33 @@
+package BOut;
+
+import com.golden.gamedev.object.*;
+
+/**
+ * A SpriteGroup of Sprites that never move, such as the Blocks.  A
+ * SpriteGroup's update calls every active Sprite's update, which moves
+ * it by its speed; ours have none, so we leave that out, and only
+ * remove the inactive Sprites when the group's scan timer says to, as
+ * SpriteGroup does.  Do not add Sprites that move, or that do anything
+ * else in update.
+ */
+public class StaticSpriteGroup extends SpriteGroup
+{
+  /**
+   * Constructor
+   * @param name a String giving the group's name
+   */
+  public StaticSpriteGroup (String name)
+  {
+    super(name);
+  }
+
+  @Override
+  public void update (long elapsedTime)
+  {
+    if (getScanFrequence().action(elapsedTime))
+    {
+      removeInactiveSprites();
+    }
+  }
+
+}
@@ -0,0 +1,335 @@
+package BOut;
+
+import java.util.Arrays;
+
+import com.golden.gamedev.object.*;
+import com.golden.gamedev.object.collision.*;
+
+/**
+ * A CollisionGroup between moving sprites (group 1) and Blocks (group 2)
+ * that also handles the bounds of the Background, and that does not miss
+ * collisions however far a sprite moves in one step.  Rather than asking
+ * whether a sprite overlaps something where its step left it, we sweep
+ * the sprite's box along its path, from its old position to its new one,
+ * against the Blocks near the path (found through the BlockGrid) and the
+ * bounds, and find the first thing it touches and when.  The sprite is
+ * put at that point, the collision is reported, and the rest of the step
+ * is swept at the sprite's (possibly new) velocity; so within one step,
+ * collisions are reported in the order they happen.  Things touched at
+ * the same moment (e.g., two Blocks meeting under the sprite) are all
+ * reported, in slot order, as the overlap tests would report them.
+ * <br>
+ * Block collisions are reported through collided, with getCollisionSide
+ * saying which side of the sprite hit the Block, as CollisionGroup does;
+ * bounds collisions through collidedWithBounds, with the sides named as
+ * CollisionBounds names them.  Group 1 must hold SweptMovers.
+ */
+public abstract class SweptCollisionGroup extends CollisionGroup
+{
+  /**
+   * most collisions one sprite may have in one step; the rest of the
+   * step is dropped after that many (the sprite is trapped, or nearly)
+   */
+  public static final int MaxImpactsPerStep = 16;
+
+  /**
+   * pseudo-slots for the bounds, so that they can be "the last thing hit"
+   */
+  private static final int LeftBound   = -1;
+  private static final int RightBound  = -2;
+  private static final int TopBound    = -3;
+  private static final int BottomBound = -4;
+
+  /**
+   * impacts this close together (as fractions of a move) are simultaneous
+   */
+  private static final double Simultaneous = 1e-9;
+
+  private final BlockGrid grid;
+  private final BlockField field;
+  private final Background background;
+
+  /**
+   * the box swept by the current step, for probing the grid
+   */
+  private final CollisionRect swept = new CollisionRect();
+
+  /**
+   * the result of the most recent search for the first impact: its time,
+   * and the slots (or bounds) hit then, with the sides hit
+   */
+  private double impactTime;
+  private int impacts = 0;
+  private int[] impactSlots = new int[4];
+  private int[] impactSides = new int[4];
+
+  /**
+   * the slots (or bounds) hit at the end of the previous part of a step,
+   * which the sprite is touching and must not hit again at once
+   */
+  private int lastHits = 0;
+  private int[] lastHitSlots = new int[4];
+
+  /**
+   * Constructor
+   * @param grid the BlockGrid indexing the Blocks we check against
+   * @param background the Background whose bounds sprites can hit
+   */
+  public SweptCollisionGroup (BlockGrid grid, Background background)
+  {
+    this.grid = grid;
+    this.field = grid.getField();
+    this.background = background;
+  }
+
+  /**
+   * Called when a sprite's path reaches the bounds
+   * @param mover the Sprite
+   * @param side an int giving the bound reached, one of CollisionBounds'
+   * LEFT_COLLISION, RIGHT_COLLISION, TOP_COLLISION, and BOTTOM_COLLISION
+   */
+  public abstract void collidedWithBounds (Sprite mover, int side);
+
+  @Override
+  public void checkCollision ()
+  {
+    SpriteGroup movers = getGroup1();
+    if (!movers.isActive())
+    {
+      return;
+    }
+    Sprite[] sprites = movers.getSprites();
+    int size = movers.getSize();
+    for (int i = 0; i < size; i++)
+    {
+      Sprite mover = sprites[i];
+      if (mover.isActive())
+      {
+        sweep(mover);
+        size = movers.getSize();
+      }
+    }
+  }
+
+  /**
+   * replays one sprite's step, reporting what it hits along the way
+   */
+  private void sweep (Sprite mover)
+  {
+    double x = mover.getOldX();
+    double y = mover.getOldY();
+    double dx = mover.getX() - x;
+    double dy = mover.getY() - y;
+    double stepLeft = ((SweptMover)mover).getStepMillis();
+    boolean moved = false;
+    lastHits = 0;
+    for (int reported = 0; reported < MaxImpactsPerStep; )
+    {
+      if ((dx == 0 && dy == 0) || !findImpact(mover, x, y, dx, dy))
+      {
+        if (moved)
+        {
+          mover.forceX(x + dx);
+          mover.forceY(y + dy);
+        }
+        return;
+      }
+      // go to the point of impact, and report what was hit there
+      x += dx * impactTime;
+      y += dy * impactTime;
+      stepLeft *= (1.0 - impactTime);
+      // forceX/forceY leave the old position alone, as the step's start,
+      // for drawing between steps and for the collision groups after us
+      mover.forceX(x);
+      mover.forceY(y);
+      moved = true;
+      for (int k = 0; k < impacts; k++, reported++)
+      {
+        report(mover, impactSlots[k], impactSides[k]);
+        if (!mover.isActive())
+        {
+          return;
+        }
+      }
+      // the rest of the step, at the velocity we now have
+      int[] swap = lastHitSlots;
+      lastHitSlots = impactSlots;
+      impactSlots = swap;
+      lastHits = impacts;
+      dx = mover.getHorizontalSpeed() * stepLeft;
+      dy = mover.getVerticalSpeed() * stepLeft;
+    }
+  }
+
+  /**
+   * @return true iff the slot (or bound) was hit at the end of the previous part of the step
+   */
+  private boolean wasJustHit (int slot)
+  {
+    for (int k = 0; k < lastHits; k++)
+    {
+      if (lastHitSlots[k] == slot)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * records a time of impact if it is the first so far, or as early as the first
+   */
+  private void consider (double time, int slot, int side)
+  {
+    if (time < impactTime - Simultaneous)
+    {
+      impactTime = time;
+      impacts = 0;
+    }
+    else if (time > impactTime + Simultaneous)
+    {
+      return;
+    }
+    if (impacts == impactSlots.length)
+    {
+      impactSlots = Arrays.copyOf(impactSlots, 2 * impacts);
+    }
+    if (impacts == impactSides.length)
+    {
+      impactSides = Arrays.copyOf(impactSides, 2 * impacts);
+    }
+    impactSlots[impacts] = slot;
+    impactSides[impacts] = side;
+    ++impacts;
+  }
+
+  /**
+   * Finds the first things a sprite's box touches moving from (x, y) by
+   * (dx, dy), other than what it last hit; sets impactTime (a fraction
+   * of the move), and the slots and sides hit
+   * @return true iff there is an impact within the move
+   */
+  private boolean findImpact (Sprite mover, double x, double y, double dx, double dy)
+  {
+    int width = mover.getWidth();
+    int height = mover.getHeight();
+    impactTime = Double.POSITIVE_INFINITY;
+    impacts = 0;
+    if (getGroup2() != null && getGroup2().isActive())
+    {
+      swept.setBounds(Math.min(x, x + dx), Math.min(y, y + dy),
+                      width + (int)Math.ceil(Math.abs(dx)), height + (int)Math.ceil(Math.abs(dy)));
+      int found = grid.probe(swept);
+      for (int j = 0; j < found; j++)
+      {
+        int slot = grid.getFound(j);
+        if (field.isAlive(slot) && !wasJustHit(slot))
+        {
+          sweepBox(x, y, width, height, dx, dy, slot);
+        }
+      }
+    }
+    // the bounds, as CollisionBounds sees them: the Background's extent
+    double right = background.getWidth() - width;
+    double bottom = background.getHeight() - height;
+    // a box already past a bound hits it at once
+    if (dx < 0 && !wasJustHit(LeftBound))
+    {
+      consider(Math.max(0.0, x / -dx), LeftBound, CollisionBounds.LEFT_COLLISION);
+    }
+    if (dx > 0 && !wasJustHit(RightBound))
+    {
+      consider(Math.max(0.0, (right - x) / dx), RightBound, CollisionBounds.RIGHT_COLLISION);
+    }
+    if (dy < 0 && !wasJustHit(TopBound))
+    {
+      consider(Math.max(0.0, y / -dy), TopBound, CollisionBounds.TOP_COLLISION);
+    }
+    if (dy > 0 && !wasJustHit(BottomBound))
+    {
+      consider(Math.max(0.0, (bottom - y) / dy), BottomBound, CollisionBounds.BOTTOM_COLLISION);
+    }
+    return impactTime <= 1.0;
+  }
+
+  /**
+   * the time at which a moving box first touches a Block (slab method,
+   * on the Block grown by the box's size); keeps it if it is among the first so far
+   */
+  private void sweepBox (double x, double y, int width, int height, double dx, double dy, int slot)
+  {
+    double left = field.getX(slot) - width;
+    double right = field.getX(slot) + field.getWidth(slot);
+    double top = field.getY(slot) - height;
+    double bottom = field.getY(slot) + field.getHeight(slot);
+    double entryX, exitX, entryY, exitY;
+    if (dx != 0)
+    {
+      entryX = ((dx > 0 ? left : right) - x) / dx;
+      exitX  = ((dx > 0 ? right : left) - x) / dx;
+    }
+    else if (left < x && x < right)
+    {
+      entryX = Double.NEGATIVE_INFINITY;
+      exitX  = Double.POSITIVE_INFINITY;
+    }
+    else
+    {
+      return;
+    }
+    if (dy != 0)
+    {
+      entryY = ((dy > 0 ? top : bottom) - y) / dy;
+      exitY  = ((dy > 0 ? bottom : top) - y) / dy;
+    }
+    else if (top < y && y < bottom)
+    {
+      entryY = Double.NEGATIVE_INFINITY;
+      exitY  = Double.POSITIVE_INFINITY;
+    }
+    else
+    {
+      return;
+    }
+    double entry = Math.max(entryX, entryY);
+    double exit = Math.min(exitX, exitY);
+    // a box already overlapping the Block at the start is not a new impact;
+    // nor is one that only slides along an edge
+    if (entry < 0 || entry >= exit || entry > 1.0)
+    {
+      return;
+    }
+    int side = 0;
+    if (entryX >= entryY)
+    {
+      side |= (dx > 0) ? RIGHT_LEFT_COLLISION : LEFT_RIGHT_COLLISION;
+    }
+    if (entryY >= entryX)
+    {
+      side |= (dy > 0) ? BOTTOM_TOP_COLLISION : TOP_BOTTOM_COLLISION;
+    }
+    consider(entry, slot, side);
+  }
+
+  /**
+   * reports an impact through collided or collidedWithBounds
+   */
+  private void report (Sprite mover, int slot, int side)
+  {
+    if (slot < 0)
+    {
+      collidedWithBounds(mover, side);
+      return;
+    }
+    Block block = field.getView(slot);
+    sprite1 = mover;
+    sprite2 = block;
+    collisionSide = side;
+    collisionX1 = mover.getX();
+    collisionY1 = mover.getY();
+    collisionX2 = block.getX();
+    collisionY2 = block.getY();
+    collided(mover, block);
+  }
+
+}
@@ -0,0 +1,16 @@
+package BOut;
+
+/**
+ * A Sprite whose movement SweptCollisionGroup can replay: besides its
+ * old and new positions (kept by every Sprite), it remembers how long
+ * its last movement step was, so that after a bounce part way along
+ * its path the rest of the step can be taken at the new velocity.
+ */
+public interface SweptMover {
+
+  /**
+   * @return a long giving the elapsed time, in milliseconds, of the most recent movement step
+   */
+  public long getStepMillis ();
+
+}
@@ -0,0 +1,77 @@
+package BOut;
+
+import com.golden.gamedev.object.*;
+
+/**
+ * A PlayField that, when given a FrameStats, reports how long its
+ * update spends updating the SpriteGroups and checking each collision
+ * group.  Without a FrameStats it updates exactly as PlayField does.
+ */
+public class TimedPlayField extends PlayField
+{
+  private FrameStats stats = null;
+
+  /**
+   * Constructor
+   * @param background the Background of the PlayField
+   */
+  public TimedPlayField (Background background)
+  {
+    super(background);
+  }
+
+  /**
+   * Constructor, for a PlayField whose Background is set later
+   */
+  public TimedPlayField ()
+  {
+    super();
+  }
+
+  /**
+   * @param stats the FrameStats to report to; null to stop reporting
+   */
+  public void setFrameStats (FrameStats stats)
+  {
+    this.stats = stats;
+  }
+
+  @Override
+  protected void updateSpriteGroups (long elapsedTime)
+  {
+    if (stats == null)
+    {
+      super.updateSpriteGroups(elapsedTime);
+      return;
+    }
+    long start = System.nanoTime();
+    super.updateSpriteGroups(elapsedTime);
+    stats.addSpriteUpdateNanos(System.nanoTime() - start);
+  }
+
+  /**
+   * Mirrors PlayField's version, timing each collision group
+   */
+  @Override
+  protected void checkCollisions ()
+  {
+    if (stats == null)
+    {
+      super.checkCollisions();
+      return;
+    }
+    CollisionManager[] managers = getCollisionGroups();
+    long start = System.nanoTime();
+    for (int i = 0; i < managers.length; i++)
+    {
+      if (managers[i].isActive())
+      {
+        managers[i].checkCollision();
+      }
+      long now = System.nanoTime();
+      stats.addCollisionNanos(i, managers[i], now - start);
+      start = now;
+    }
+  }
+
+}
@@ -0,0 +1,277 @@
+package BOut.sim;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+
+import BOut.*;
+
+/**
+ * Plays back an input log, recorded from BreakOutGame, on a
+ * HeadlessSimulator, as fast as the CPU allows: for profiling real
+ * sessions off-line, or checking that a change to the rules leaves a
+ * session's outcome alone.  The simulator is set up as the recorded
+ * game was (level, seed, physics step, and collision mode), and each
+ * tick is handled as BreakOutGame.update handles a frame: the paddle
+ * follows the mouse, the key (or button) pressed is acted on, and play
+ * advances by the tick's time, through a FixedStepClock, in the same
+ * fixed steps.
+ * <br>
+ * The keys drive the same states as BreakOutGame's InputState, since
+ * while a question is asked (or the game is paused or over) no play
+ * happens; archiving and snapshots themselves are not simulated.  The
+ * replay ends where the game did: at the end of the log, on leaving
+ * the game (Y to quitting or to the end-of-level message, or Escape
+ * once the level is over), or on restoring a snapshot, which starts a
+ * game of its own.
+ */
+public class HeadlessReplay {
+
+  /**
+   * the states of BreakOutGame's InputState, and the keys that move between them
+   */
+  private static enum Mode
+  {
+    Normal, Won, Lost, Archiving, Pausing, Quitting, Restoring,
+    RestoringNoSnapshot, Saving, Finish;
+  }
+
+  private final InputLog log;
+  private final HeadlessSimulator sim;
+  private final FixedStepClock clock;
+
+  private Mode mode = Mode.Normal;
+
+  /**
+   * whether a snapshot has been made (so R asks whether to restore it)
+   */
+  private boolean haveSnapshot = false;
+
+  /**
+   * whether the end of the level has been noticed yet
+   */
+  private boolean endSeen = false;
+
+  /**
+   * where each tick's timings go, if anywhere
+   */
+  private FrameStats stats = null;
+
+  /**
+   * Sets up a simulator as the recorded game was
+   * @param log the InputLog to play back, positioned before its first tick
+   * @throws Exception if the recorded level file cannot be read or parsed
+   */
+  public HeadlessReplay (InputLog log) throws Exception
+  {
+    this.log = log;
+    this.clock = log.createClock();
+    BreakOutCollisions.setSweptCollisions(log.isSweptCollisions());
+    this.sim = new HeadlessSimulator(log.getLevelFile(), log.getStepMillis(), log.getSeed());
+  }
+
+  /**
+   * Collects FrameStats for each tick, as BreakOutGame does for each frame
+   * (but with no rendering)
+   * @param stats the FrameStats to report to; null to stop reporting
+   */
+  public void setFrameStats (FrameStats stats)
+  {
+    this.stats = stats;
+    sim.setFrameStats(stats);
+  }
+
+  /**
+   * Plays back ticks until the log runs out or the recorded game ended
+   * @throws IOException if the log cannot be read
+   */
+  public void run () throws IOException
+  {
+    while (mode != Mode.Finish && log.next())
+    {
+      tick(log.getElapsedMillis(), log.getMouseX(), log.getKeyPressed(), log.getMousePressed());
+    }
+  }
+
+  /**
+   * handles one tick as BreakOutGame.update does
+   */
+  private void tick (long elapsedMillis, int mouseX, int key, int button)
+  {
+    if (stats != null)
+    {
+      stats.startFrame(elapsedMillis);
+    }
+    sim.setPaddleX(BreakOutGame.paddleXForMouse(mouseX));
+    press(key, button);
+    boolean leaving = false;
+    GameState gs = GameState.getGameState();
+    if (gs.levelDone())
+    {
+      if (!endSeen)
+      {
+        endSeen = true;
+        if (mode == Mode.Normal)
+        {
+          mode = gs.wonLevel() ? Mode.Won : Mode.Lost;
+        }
+      }
+      leaving = (key == KeyEvent.VK_ESCAPE);
+    }
+    if (mode == Mode.Normal)
+    {
+      int steps = clock.advance(elapsedMillis);
+      long start = System.nanoTime();
+      for (int n = steps; n > 0; n--)
+      {
+        sim.step();
+      }
+      if (stats != null)
+      {
+        stats.record(FrameStats.Metric.PhysicsSteps, steps);
+        stats.record(FrameStats.Metric.Physics, System.nanoTime() - start);
+      }
+    }
+    if (stats != null)
+    {
+      stats.endUpdate();
+      stats.endFrame(sim.getActiveBalls(), sim.getActiveMiniballs(),
+                     gs.getBlocksRemaining(), sim.getActivePowerUps());
+    }
+    if (leaving)
+    {
+      mode = Mode.Finish;
+    }
+  }
+
+  /**
+   * acts on a key (or mouse button) as BreakOutGame.processInput does
+   */
+  private void press (int key, int button)
+  {
+    switch (key)
+    {
+    case KeyEvent.VK_A:  mode = Mode.Archiving;  break;
+    case KeyEvent.VK_B:
+      if (mode == Mode.Normal)
+      {
+        sim.fireBall();
+      }
+      break;
+    case KeyEvent.VK_M:  gotM();  break;
+    case KeyEvent.VK_N:  mode = Mode.Normal;  break;
+    case KeyEvent.VK_P:
+      if (mode == Mode.Normal)
+      {
+        mode = Mode.Pausing;
+      }
+      else if (mode == Mode.Pausing)
+      {
+        mode = Mode.Normal;
+      }
+      break;
+    case KeyEvent.VK_Q:  mode = Mode.Quitting;  break;
+    case KeyEvent.VK_R:  mode = haveSnapshot ? Mode.Restoring : Mode.RestoringNoSnapshot;  break;
+    case KeyEvent.VK_S:  mode = Mode.Saving;  break;
+    case KeyEvent.VK_Y:  gotY();  break;
+    default:
+      if (button == MouseEvent.BUTTON1)
+      {
+        gotM();
+      }
+      break;
+    }
+  }
+
+  private void gotM ()
+  {
+    if (mode == Mode.Normal)
+    {
+      sim.fireMiniball();
+    }
+  }
+
+  private void gotY ()
+  {
+    switch (mode)
+    {
+    case Archiving:
+      mode = Mode.Normal;
+      break;
+    case Saving:
+      haveSnapshot = true;
+      mode = Mode.Normal;
+      break;
+    case Won:
+    case Lost:
+    case Quitting:
+    case Restoring:
+      mode = Mode.Finish;
+      break;
+    default:
+      break;
+    }
+  }
+
+  /**
+   * @return the HeadlessSimulator being driven
+   */
+  public HeadlessSimulator getSimulator ()
+  {
+    return sim;
+  }
+
+  /**
+   * Plays back an input log and reports the outcome
+   * @param args a String[]: the input log file, then optionally a file
+   * to which to write the FrameStats of the replay
+   */
+  public static void main (String[] args)
+  {
+    if (args.length < 1)
+    {
+      System.err.println("usage: HeadlessReplay input-log [frame-stats-file]");
+      System.exit(1);
+    }
+    try
+    {
+      InputLog log = new InputLog(args[0]);
+      try
+      {
+        long start = System.nanoTime();
+        HeadlessReplay replay = new HeadlessReplay(log);
+        FrameStats stats = null;
+        if (args.length > 1)
+        {
+          stats = new FrameStats();
+          replay.setFrameStats(stats);
+          ActiveChangedSource.setTimed(true);
+        }
+        replay.run();
+        long nanos = System.nanoTime() - start;
+        HeadlessSimulator sim = replay.getSimulator();
+        GameState gs = GameState.getGameState();
+        System.out.printf("%s (seed %d): %s after %d ticks, %d steps (%.1f s simulated), score %d, %d blocks left%n",
+            log.getLevelFile(), log.getSeed(),
+            sim.isDone() ? (sim.wonLevel() ? "won" : "lost") : "unfinished",
+            log.getTicks(), sim.getSteps(), sim.getElapsedMillis() / 1000.0,
+            gs.getScore(), gs.getBlocksRemaining());
+        System.out.printf("%.1f ticks per ms of wall time%n", log.getTicks() / (nanos / 1.0e6));
+        if (stats != null)
+        {
+          stats.dumpToFile(args[1]);
+        }
+      }
+      finally
+      {
+        log.close();
+      }
+    }
+    catch (Exception exc)
+    {
+      System.err.printf("Could not play back %s: %s%n", args[0], exc);
+      System.exit(1);
+    }
+  }
+
+}
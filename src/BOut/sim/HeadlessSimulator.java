@@ -0,0 +1,591 @@
+package BOut.sim;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import com.golden.gamedev.object.*;
+
+import BOut.*;
+import XmlImporter.LevelCache;
+import XmlImporter.LevelLoader;
+
+/**
+ * Runs a level of BreakOut without a GameEngine: no window, no image
+ * files, no sound, and no frame rate.  The simulator builds the same
+ * SpriteGroups and collision groups as BreakOutGame, loads the level
+ * through LevelLoader, and advances the PlayField by a fixed timestep
+ * per step, so Ball physics and GameState accounting are exactly those
+ * of the real game.  Steps run as fast as the CPU allows: once the JIT
+ * has compiled them, several thousand per millisecond on the shipped
+ * levels.  A single game in a fresh JVM (as main plays) manages only a
+ * few hundred per millisecond, as most of it runs before the hot code is
+ * compiled; LevelCheck plays its games in one JVM for that reason.
+ * <br>
+ * The level's GameRandom is seeded with a seed given to the simulator
+ * (a fixed one by default), so a simulation, given the same seed and
+ * the same moves, has exactly the same outcome every time it runs.
+ * <br>
+ * Only one simulator (or game) may run at a time in a JVM, since
+ * GameState and the activity event sources are shared.
+ */
+public class HeadlessSimulator implements BreakOutWorld {
+
+  /**
+   * width of the playing field, as in BreakOutGame
+   */
+  public static final int FieldWidth = 800;
+
+  /**
+   * height of the playing field, as in BreakOutGame
+   */
+  public static final int FieldHeight = 600;
+
+  /**
+   * default simulation step, in milliseconds: BreakOutGame's default physics step
+   */
+  public static final long DefaultStepMillis = FixedStepClock.DefaultStepMillis;
+
+  /**
+   * default seed for the level's GameRandom
+   */
+  public static final long DefaultSeed = 0;
+
+  /**
+   * the golden angle, in radians: successive multiples of it never line up
+   */
+  private static final double GoldenAngle = Math.PI * (3.0 - Math.sqrt(5.0));
+
+  /*
+   * Stand-in images, one per kind of Sprite, having the size of the
+   * corresponding file in graphics/.  Sprites take their size from their
+   * image, and Ball.bounce takes its radius from it, so these give the
+   * simulated Sprites the same geometry as on screen.  They are never drawn.
+   */
+  private static final BufferedImage BallShape     = makeShape(22, 22);
+  private static final BufferedImage MiniballShape = makeShape(17, 17);
+  private static final BufferedImage PaddleShape   = makeShape(103, 23);
+  private static final BufferedImage PowerUpShape  = makeShape(30, 26);
+
+  /**
+   * the fixed time step, in milliseconds
+   */
+  private final long stepMillis;
+
+  private final Background background;
+  private final TimedPlayField playField;
+  private final SpriteGroup balls;
+  private final SpriteGroup miniballs;
+  private final SpriteGroup paddles;
+  private final SpriteGroup blocks;
+  private final SpriteGroup powerUps;
+  private final BlockField blockField;
+  private final BlockGrid blockGrid;
+  private final Paddle gamePaddle;
+
+  /**
+   * the Balls, Miniballs and PowerUps in play, reused once spent, as in BreakOutGame
+   */
+  private final SpritePool<Ball> ballPool = new SpritePool<Ball>() {
+      protected Ball create ()
+      {
+        Ball ball = new Ball(400, 400);
+        addBall(ball);
+        return ball;
+      }
+    };
+  private final SpritePool<Miniball> miniballPool = new SpritePool<Miniball>() {
+      protected Miniball create ()
+      {
+        Miniball miniball = new Miniball();
+        addMiniball(miniball);
+        return miniball;
+      }
+    };
+  private final SpritePool<PowerUp> powerUpPool = new SpritePool<PowerUp>() {
+      protected PowerUp create ()
+      {
+        PowerUp powerUp = new PowerUp();
+        addPowerUp(powerUp);
+        return powerUp;
+      }
+    };
+
+  /**
+   * when true, the paddle follows the lowest falling Ball and Balls
+   * and Miniballs are fired as soon as the rules allow
+   */
+  private boolean autoPilot = false;
+
+  /**
+   * in stress mode, the number of Balls kept in play (0 if not in stress mode)
+   */
+  private int stressBalls = 0;
+
+  /**
+   * number of Balls served in stress mode, which spreads out where they start
+   */
+  private long served = 0;
+
+  /**
+   * number of steps taken so far
+   */
+  private long steps = 0;
+
+  /**
+   * number of PowerUps dropped so far, by kind ID
+   */
+  private int[] drops = new int[8];
+
+  /**
+   * Creates a simulator for the level in the given file, using the default step and seed
+   * @param levelFile a String giving the name of a level XML file
+   * @throws Exception if the level file cannot be read or parsed
+   */
+  public HeadlessSimulator (String levelFile) throws Exception
+  {
+    this(levelFile, DefaultStepMillis);
+  }
+
+  /**
+   * Creates a simulator for the level in the given file, using the default seed
+   * @param levelFile a String giving the name of a level XML file
+   * @param stepMillis a long giving the fixed time step in milliseconds
+   * @throws Exception if the level file cannot be read or parsed
+   */
+  public HeadlessSimulator (String levelFile, long stepMillis) throws Exception
+  {
+    this(levelFile, stepMillis, DefaultSeed);
+  }
+
+  /**
+   * Creates a simulator for the level in the given file
+   * @param levelFile a String giving the name of a level XML file
+   * @param stepMillis a long giving the fixed time step in milliseconds
+   * @param seed a long giving the seed for the level's GameRandom
+   * @throws Exception if the level file cannot be read or parsed
+   */
+  public HeadlessSimulator (String levelFile, long stepMillis, long seed) throws Exception
+  {
+    this.stepMillis = stepMillis;
+    Ball.newGame();
+    Miniball.newGame();
+    PowerUp.newGame();
+    Block.newGame();
+    background = new Background(FieldWidth, FieldHeight);
+    playField = new TimedPlayField(background);
+    balls     = new SpriteGroup("balls");
+    miniballs = new SpriteGroup("miniballs");
+    paddles   = new SpriteGroup("paddles");
+    blocks    = new StaticSpriteGroup("blocks");
+    powerUps  = new SpriteGroup("powerUps");
+    for (SpriteGroup group : new SpriteGroup[]{balls, miniballs, paddles, blocks, powerUps})
+    {
+      playField.addGroup(group);
+    }
+    blockField = new BlockField(256);
+    blockGrid = new BlockGrid(blockField, FieldWidth, FieldHeight, 64, 32);
+    Block.getActiveChangedSource().register(
+        new ActiveChangedListener<Block>()
+        {
+          public void activeChanged (Block sprite, int delta)
+          {
+            if (delta < 0)
+            {
+              blockGrid.remove(sprite);
+            }
+          }
+        }
+    );
+    BreakOutCollisions.addCollisionGroups(playField, background,
+        balls, miniballs, paddles, blocks, powerUps, blockGrid);
+    GameRandom.startLevel(seed);
+    GameState.resetGameState().startLevel();
+    gamePaddle = new Paddle(FieldWidth / 2, FieldHeight - 50);
+    addPaddle(gamePaddle);
+    // not LevelLoader.loadGame(String), which reports a bad level and goes on with no Blocks
+    new LevelLoader(this).loadGame(LevelCache.get(levelFile));
+  }
+
+  /**
+   * @param width an int giving the width in pixels
+   * @param height an int giving the height in pixels
+   * @return a blank image of that size, at one bit per pixel
+   */
+  private static BufferedImage makeShape (int width, int height)
+  {
+    return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+  }
+
+  /**
+   * @param autoPilot a boolean, true to have the simulator play by itself
+   */
+  public void setAutoPilot (boolean autoPilot)
+  {
+    this.autoPilot = autoPilot;
+  }
+
+  /**
+   * Turns on stress mode, for load tests: the given number of Balls are
+   * put into play at once, and after each step any that were lost are
+   * replaced.  The Balls come free (ballsRemaining is left alone), start
+   * spread across the field in directions a golden angle apart, and
+   * ignore the cap on Balls in play.
+   * @param count an int giving the number of Balls to keep in play; 0 ends stress mode
+   */
+  public void setStressBalls (int count)
+  {
+    stressBalls = count;
+    if (count > 0)
+    {
+      topUpBalls();
+    }
+  }
+
+  /**
+   * puts Balls into play until there are stressBalls of them
+   */
+  private void topUpBalls ()
+  {
+    GameState gs = GameState.getGameState();
+    for (int n = gs.getBallsActive(); n < stressBalls; n++, served++)
+    {
+      double x = 40 + (served * 97) % (FieldWidth - 80);
+      double angle = served * GoldenAngle;
+      BallSplitter.serve(ballPool, x, 400, gs.getBallSpeed(), angle);
+    }
+  }
+
+  /**
+   * Moves the paddle so that its left edge is at x (the game does this from the mouse)
+   * @param x a double giving the new x position of the paddle
+   */
+  public void setPaddleX (double x)
+  {
+    gamePaddle.setX(x);
+  }
+
+  /**
+   * Fires a new Ball if the rules allow (the game's B key)
+   * @return true iff a Ball was fired
+   */
+  public boolean fireBall ()
+  {
+    GameState gs = GameState.getGameState();
+    if (!gs.canFireBall())
+    {
+      return false;
+    }
+    Ball ball = ballPool.obtain();
+    ball.reset(400, 400);                 // start in center of screen
+    double speed = gs.getBallSpeed();
+    double angle = 0.75D * Math.PI;  // 45 degrees down and to the left
+    ball.setVelocityPolar(speed, angle);
+    ball.setActive(true);
+    return true;
+  }
+
+  /**
+   * Fires a Miniball from the paddle if the rules allow (the game's M key)
+   * @return true iff a Miniball was fired
+   */
+  public boolean fireMiniball ()
+  {
+    GameState gs = GameState.getGameState();
+    if (!gs.canFireMiniball())
+    {
+      return false;
+    }
+    Paddle p = this.gamePaddle;
+    double xStart = p.getX() + p.getWidth() / 2;
+    double yStart = p.getY() + p.getHeight() / 2;
+    Miniball miniball = miniballPool.obtain();
+    miniball.reset(xStart, yStart);
+    miniball.setID(gs.obtainMiniballNumber());
+    miniball.setActive(true);
+    gs.startMiniballWaitTime(3000);
+    return true;
+  }
+
+  /**
+   * Advances the simulation by one fixed step, as each physics step
+   * of BreakOutGame does in its Normal state
+   */
+  public void step ()
+  {
+    if (autoPilot)
+    {
+      steer();
+    }
+    GameState gs = GameState.getGameState();
+    gs.decrementWaits(stepMillis);
+    playField.update(stepMillis);
+    BallSplitter.splitPending(balls, ballPool);
+    if (stressBalls > 0)
+    {
+      topUpBalls();
+    }
+    ++steps;
+  }
+
+  /**
+   * Runs until the level is done or the step limit is reached
+   * @param maxSteps a long giving the most steps to take
+   * @return a long giving the number of steps taken by this call
+   */
+  public long run (long maxSteps)
+  {
+    long taken = 0;
+    while (taken < maxSteps && !isDone())
+    {
+      step();
+      ++taken;
+    }
+    return taken;
+  }
+
+  /**
+   * the auto-pilot: center the paddle under the lowest falling Ball,
+   * and fire whatever may be fired
+   */
+  private void steer ()
+  {
+    Ball target = null;
+    for (Sprite s : balls.getSprites())
+    {
+      if (s != null && s.isActive() && s.getVerticalSpeed() > 0 &&
+          (target == null || s.getY() > target.getY()))
+      {
+        target = (Ball)s;
+      }
+    }
+    if (target != null)
+    {
+      setPaddleX(target.getX() + target.getWidth() / 2 - gamePaddle.getWidth() / 2);
+    }
+    fireBall();
+    fireMiniball();
+  }
+
+  /**
+   * @return true iff the level is over (won or lost)
+   */
+  public boolean isDone ()
+  {
+    return GameState.getGameState().levelDone();
+  }
+
+  /**
+   * @return true iff the level was won (all blocks destroyed)
+   */
+  public boolean wonLevel ()
+  {
+    return GameState.getGameState().wonLevel();
+  }
+
+  /**
+   * @return a long giving the number of steps taken so far
+   */
+  public long getSteps ()
+  {
+    return steps;
+  }
+
+  /**
+   * @return a long giving the simulated time so far, in milliseconds
+   */
+  public long getElapsedMillis ()
+  {
+    return steps * stepMillis;
+  }
+
+  /**
+   * @return a Memento of the current Sprites, GameState, and GameRandom
+   */
+  public BreakOutGame.Memento memento ()
+  {
+    return BreakOutGame.Memento.makeMemento(balls, gamePaddle, blocks, powerUps, miniballs,
+                                            GameState.getGameState());
+  }
+
+  /**
+   * Reports the time each step spends updating Sprites and checking each
+   * collision group, as BreakOutGame does
+   * @param stats the FrameStats to report to; null to stop reporting
+   */
+  public void setFrameStats (FrameStats stats)
+  {
+    playField.setFrameStats(stats);
+  }
+
+  /**
+   * @return an int giving the number of active Balls
+   */
+  public int getActiveBalls () { return countActive(balls); }
+
+  /**
+   * @return an int giving the number of active Miniballs
+   */
+  public int getActiveMiniballs () { return countActive(miniballs); }
+
+  /**
+   * @return an int giving the number of active PowerUps
+   */
+  public int getActivePowerUps () { return countActive(powerUps); }
+
+  private static int countActive (SpriteGroup group)
+  {
+    int count = 0;
+    Sprite[] sprites = group.getSprites();
+    for (int i = 0, n = group.getSize(); i < n; i++)
+    {
+      if (sprites[i].isActive())
+      {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return an int giving the number of Sprites the pools have made, and
+   * so the most Balls, Miniballs and PowerUps that were ever in play at once
+   */
+  public int getPooledSprites ()
+  {
+    return ballPool.getCreated() + miniballPool.getCreated() + powerUpPool.getCreated();
+  }
+
+  /**
+   * @return a long giving the number of times the pools reused a Sprite
+   */
+  public long getReusedSprites ()
+  {
+    return ballPool.getReused() + miniballPool.getReused() + powerUpPool.getReused();
+  }
+
+  /**
+   * @return an int[] giving the number of PowerUps dropped so far, indexed
+   * by kind ID (see PowerUpFactory.getKind); kinds beyond its end had none
+   */
+  public int[] getDrops ()
+  {
+    return drops.clone();
+  }
+
+  /**
+   * @return the PlayField being simulated
+   */
+  public PlayField getPlayField ()
+  {
+    return playField;
+  }
+
+  /**
+   * @return the simulated Paddle
+   */
+  public Paddle getPaddle ()
+  {
+    return gamePaddle;
+  }
+
+  public void setGridSpacing (int xGrid, int yGrid)
+  {
+    blockGrid.setCellSize(xGrid, yGrid);
+  }
+
+  public void addPaddle (Paddle p)
+  {
+    p.setImage(PaddleShape);
+    p.setBackground(background);
+    paddles.add(p);
+  }
+
+  public Block newBlock (BlockDesc desc, double x, double y)
+  {
+    return blockField.newBlock(desc, x, y);
+  }
+
+  public void addBlock (Block b)
+  {
+    b.setGame(this);
+    b.setLayer(-1);
+    blockField.adopt(b);
+    blocks.add(b);
+    blockGrid.add(b);
+  }
+
+  public void addBall (Ball b)
+  {
+    b.setImage(BallShape);
+    b.setBackground(background);
+    b.setLayer(1);
+    balls.add(b);
+  }
+
+  public void addMiniball (Miniball m)
+  {
+    m.setImage(MiniballShape);
+    m.setBackground(background);
+    m.setLayer(1);
+    miniballs.add(m);
+  }
+
+  public void addPowerUp (PowerUp p)
+  {
+    p.setImage(PowerUpShape);
+    p.setBackground(background);
+    p.setLayer(1);
+    powerUps.add(p);
+  }
+
+  public void dropPowerUp (double x, double y, PowerUpKind kind)
+  {
+    if (kind.getId() >= drops.length)
+    {
+      drops = Arrays.copyOf(drops, Math.max(kind.getId() + 1, 2 * drops.length));
+    }
+    ++drops[kind.getId()];
+    PowerUp powerUp = powerUpPool.obtain();
+    powerUp.reset(kind, x, y);
+    powerUp.setSpeed(0, .1);
+    powerUp.setActive(true);
+  }
+
+  /**
+   * Plays a level on auto-pilot and reports the outcome
+   * @param args a String[]: the level file, then optionally the maximum
+   * number of steps and the seed
+   */
+  public static void main (String[] args)
+  {
+    if (args.length < 1)
+    {
+      System.err.println("usage: HeadlessSimulator level.xml [max-steps [seed]]");
+      System.exit(1);
+    }
+    long maxSteps = (args.length > 1) ? Long.parseLong(args[1]) : 1000000L;
+    long seed = (args.length > 2) ? Long.parseLong(args[2]) : DefaultSeed;
+    long start = System.nanoTime();
+    HeadlessSimulator sim = null;
+    try
+    {
+      sim = new HeadlessSimulator(args[0], DefaultStepMillis, seed);
+    }
+    catch (Exception exc)
+    {
+      System.err.printf("Could not load %s: %s%n", args[0], exc);
+      System.exit(1);
+    }
+    sim.setAutoPilot(true);
+    long loaded = System.nanoTime();
+    sim.run(maxSteps);
+    long nanos = System.nanoTime() - loaded;
+    GameState gs = GameState.getGameState();
+    System.out.printf("%s (seed %d): %s after %d steps (%.1f s simulated), score %d, %d blocks left%n",
+        args[0], seed, sim.isDone() ? (sim.wonLevel() ? "won" : "lost") : "unfinished",
+        sim.getSteps(), sim.getElapsedMillis() / 1000.0, gs.getScore(), gs.getBlocksRemaining());
+    System.out.printf("%.1f steps per ms of wall time (cold JVM), after %.1f ms loading%n",
+        sim.getSteps() / (nanos / 1.0e6), (loaded - start) / 1.0e6);
+  }
+
+}
@@ -0,0 +1,690 @@
+package BOut.sim;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import BOut.*;
+import XmlImporter.CompiledLevel;
+import XmlImporter.LevelCache;
+import XmlImporter.LevelFuzzer;
+import XmlImporter.LevelLoader;
+
+/**
+ * Checks level files, and plays them on the headless simulator, from
+ * the command line:
+ * <pre>
+ *   LevelCheck [-n games] [-t seconds] [-j workers] [-fuzz variants] [-seed seed] level.xml|directory ...
+ * </pre>
+ * Each level (every .xml file, for a directory; the levels directory if
+ * none are named) is first checked for what the game itself would pass
+ * over: a file that cannot be loaded, blocks naming an unknown template,
+ * templates naming an unknown power-up kind, blocks overlapping one another, blocks not wholly on the field, and
+ * levels with no blocks.  Then, unless it cannot be loaded, the level is
+ * played games times (10 by default) on auto-pilot, with seeds seed,
+ * seed+1, ..., each for at most the given simulated time (600 seconds
+ * by default).  For each level we report the rate of completion, the
+ * mean simulated time to clear it, and the PowerUps dropped per game.
+ * <br>
+ * With -fuzz, that many variants of each level that loads (see
+ * LevelFuzzer) are made from the seed, and checked and played too.
+ * <br>
+ * Only one simulator may run at a time in a JVM (GameState, GameRandom
+ * and the activity event sources are shared), so games are played by
+ * worker JVMs, one per core unless -j says otherwise, each running
+ * LevelCheck -worker and playing the games it is sent, one at a time.
+ * Games go to whichever worker is free, and their outcomes are
+ * reported in order, so the report does not depend on the number of
+ * workers.  With -j 1 games are played in this JVM.  Properties
+ * BOut.* are passed on to the workers.
+ * <br>
+ * The exit status is 0 if no level has a problem and no game crashed,
+ * and 1 otherwise.
+ */
+public class LevelCheck {
+
+  /**
+   * default number of games per level
+   */
+  public static final int DefaultGames = 10;
+
+  /**
+   * default limit on the simulated time of a game, in seconds
+   */
+  public static final int DefaultSeconds = 600;
+
+  /**
+   * most examples given of each kind of problem in a level
+   */
+  private static final int MaxExamples = 3;
+
+  /**
+   * how a game ended
+   */
+  public static enum Result
+  {
+    Won, Lost,
+
+    /**
+     * still going at the time limit
+     */
+    Unfinished,
+
+    /**
+     * stopped by an exception (or by its worker exiting)
+     */
+    Crashed
+  }
+
+  /**
+   * The outcome of one game
+   */
+  public static final class Outcome
+  {
+    private Result result = Result.Crashed;
+    private long millis = 0;
+    private int score = 0;
+    private int blocksLeft = 0;
+
+    /**
+     * PowerUps dropped, by kind name
+     */
+    private final Map<String,Integer> drops = new TreeMap<String,Integer>();
+
+    /**
+     * what stopped a Crashed game
+     */
+    private String message = "";
+
+    public Result getResult () { return result; }
+    public long getMillis () { return millis; }
+    public int getScore () { return score; }
+    public int getBlocksLeft () { return blocksLeft; }
+    public Map<String,Integer> getDrops () { return drops; }
+    public String getMessage () { return message; }
+
+    /**
+     * @return a String giving the outcome as one line, for a worker's reply
+     */
+    String toLine ()
+    {
+      StringBuilder line = new StringBuilder();
+      line.append(result).append('\t').append(millis).append('\t').append(score)
+          .append('\t').append(blocksLeft).append('\t');
+      for (Map.Entry<String,Integer> drop : drops.entrySet())
+      {
+        line.append(drop.getKey()).append('=').append(drop.getValue()).append(',');
+      }
+      line.append('\t').append(message.replaceAll("\\s+", " "));
+      return line.toString();
+    }
+
+    /**
+     * @param line a String made by toLine
+     * @return the Outcome it describes
+     */
+    static Outcome parse (String line)
+    {
+      String[] fields = line.split("\t", -1);
+      Outcome outcome = new Outcome();
+      outcome.result = Result.valueOf(fields[0]);
+      outcome.millis = Long.parseLong(fields[1]);
+      outcome.score = Integer.parseInt(fields[2]);
+      outcome.blocksLeft = Integer.parseInt(fields[3]);
+      for (String drop : fields[4].split(","))
+      {
+        int equals = drop.indexOf('=');
+        if (equals > 0)
+        {
+          outcome.drops.put(drop.substring(0, equals), Integer.valueOf(drop.substring(equals + 1)));
+        }
+      }
+      outcome.message = fields[5];
+      return outcome;
+    }
+
+    /**
+     * @param message a String saying why a game crashed
+     * @return a Crashed Outcome
+     */
+    static Outcome crashed (String message)
+    {
+      Outcome outcome = new Outcome();
+      outcome.message = message;
+      return outcome;
+    }
+  }
+
+  /**
+   * What checking a level without playing it found
+   */
+  public static final class Check
+  {
+    private final String level;
+    private boolean loadable = false;
+    private int blocks = 0;
+    private final List<String> problems = new ArrayList<String>();
+
+    Check (String level)
+    {
+      this.level = level;
+    }
+
+    public String getLevel () { return level; }
+
+    /**
+     * @return true iff the level could be loaded (even if it has problems)
+     */
+    public boolean isLoadable () { return loadable; }
+
+    /**
+     * @return an int giving the number of blocks the level has
+     */
+    public int getBlocks () { return blocks; }
+
+    public List<String> getProblems () { return problems; }
+  }
+
+  private LevelCheck () { }
+
+  /**
+   * Checks a level without playing it (see the class comment)
+   * @param level a String giving the level file
+   * @return the Check
+   */
+  public static Check check (String level)
+  {
+    Check check = new Check(level);
+    CompiledLevel compiled;
+    try
+    {
+      compiled = LevelLoader.compile(new File(level), check.problems);
+    }
+    catch (Exception e)
+    {
+      check.problems.add("cannot be loaded: " + e);
+      return check;
+    }
+    check.loadable = true;
+    check.blocks = compiled.size();
+    if (compiled.size() == 0)
+    {
+      check.problems.add("has no blocks");
+    }
+    checkOnField(compiled, check.problems);
+    checkOverlaps(compiled, check.problems);
+    return check;
+  }
+
+  /**
+   * notes the blocks not wholly on the field
+   */
+  private static void checkOnField (CompiledLevel level, List<String> problems)
+  {
+    int count = 0;
+    StringBuilder examples = new StringBuilder();
+    for (int i = 0; i < level.size(); i++)
+    {
+      BlockDesc desc = level.getTemplate(i).getDesc();
+      if (level.getX(i) < 0 || level.getY(i) < 0 ||
+          level.getX(i) + desc.getWidth()  > HeadlessSimulator.FieldWidth ||
+          level.getY(i) + desc.getHeight() > HeadlessSimulator.FieldHeight)
+      {
+        if (count++ < MaxExamples)
+        {
+          examples.append(count > 1 ? "; " : "").append(describe(level, i));
+        }
+      }
+    }
+    if (count > 0)
+    {
+      problems.add(String.format("%d block%s not wholly on the %dx%d field: %s%s",
+          count, (count == 1) ? " is" : "s are", HeadlessSimulator.FieldWidth,
+          HeadlessSimulator.FieldHeight, examples, more(count)));
+    }
+  }
+
+  /**
+   * notes the pairs of blocks that overlap, found by sweeping across
+   * the blocks in order of their left edges
+   */
+  private static void checkOverlaps (final CompiledLevel level, List<String> problems)
+  {
+    Integer[] order = new Integer[level.size()];
+    for (int i = 0; i < order.length; i++)
+    {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+        public int compare (Integer a, Integer b)
+        {
+          return Double.compare(level.getX(a), level.getX(b));
+        }
+      });
+    int count = 0;
+    StringBuilder examples = new StringBuilder();
+    for (int p = 0; p < order.length; p++)
+    {
+      int a = order[p];
+      double right = level.getX(a) + level.getTemplate(a).getDesc().getWidth();
+      for (int q = p + 1; q < order.length && level.getX(order[q]) < right; q++)
+      {
+        int b = order[q];
+        if (level.getY(a) < level.getY(b) + level.getTemplate(b).getDesc().getHeight() &&
+            level.getY(b) < level.getY(a) + level.getTemplate(a).getDesc().getHeight())
+        {
+          if (count++ < MaxExamples)
+          {
+            examples.append(count > 1 ? "; " : "")
+                .append(describe(level, Math.min(a, b))).append(" and ")
+                .append(describe(level, Math.max(a, b)));
+          }
+        }
+      }
+    }
+    if (count > 0)
+    {
+      problems.add(String.format("%d pair%s of blocks overlap: %s%s",
+          count, (count == 1) ? "" : "s", examples, more(count)));
+    }
+  }
+
+  /**
+   * @return a String describing block i of a level
+   */
+  private static String describe (CompiledLevel level, int i)
+  {
+    BlockDesc desc = level.getTemplate(i).getDesc();
+    return String.format(Locale.ROOT, "block %d at (%.1f, %.1f), %dx%d",
+        i, level.getX(i), level.getY(i), desc.getWidth(), desc.getHeight());
+  }
+
+  /**
+   * @return a String noting the examples not given, if any
+   */
+  private static String more (int count)
+  {
+    return (count > MaxExamples) ? ", and " + (count - MaxExamples) + " more" : "";
+  }
+
+  /**
+   * Plays a level on auto-pilot in this JVM
+   * @param level a String giving the level file
+   * @param seed a long giving the seed for the level's GameRandom
+   * @param maxSteps a long giving the most steps to take
+   * @return the Outcome
+   */
+  public static Outcome play (String level, long seed, long maxSteps)
+  {
+    Outcome outcome = new Outcome();
+    try
+    {
+      HeadlessSimulator sim = new HeadlessSimulator(level, HeadlessSimulator.DefaultStepMillis, seed);
+      sim.setAutoPilot(true);
+      sim.run(maxSteps);
+      GameState gs = GameState.getGameState();
+      outcome.result = !sim.isDone() ? Result.Unfinished : (sim.wonLevel() ? Result.Won : Result.Lost);
+      outcome.millis = sim.getElapsedMillis();
+      outcome.score = gs.getScore();
+      outcome.blocksLeft = gs.getBlocksRemaining();
+      int[] drops = sim.getDrops();
+      for (int id = 0; id < drops.length; id++)
+      {
+        if (drops[id] > 0)
+        {
+          outcome.drops.put(PowerUpFactory.getKind(id).getName(), drops[id]);
+        }
+      }
+    }
+    catch (Throwable t)
+    {
+      outcome = Outcome.crashed(t.toString());
+    }
+    return outcome;
+  }
+
+  /**
+   * A worker JVM, and the pipes to and from it
+   */
+  private static final class Worker
+  {
+    private Process process = null;
+    private BufferedWriter requests;
+    private BufferedReader replies;
+
+    /**
+     * has the worker play a game, starting it (again) if need be
+     */
+    Outcome play (String level, long seed, long maxSteps)
+    {
+      try
+      {
+        if (process == null)
+        {
+          start();
+        }
+        requests.write(level + "\t" + seed + "\t" + maxSteps);
+        requests.newLine();
+        requests.flush();
+        String reply = replies.readLine();
+        if (reply != null)
+        {
+          return Outcome.parse(reply);
+        }
+      }
+      catch (IOException e)
+      {
+        // as if it had exited
+      }
+      stop();
+      return Outcome.crashed("worker exited");
+    }
+
+    private void start () throws IOException
+    {
+      List<String> command = new ArrayList<String>();
+      command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+      command.add("-Djava.awt.headless=true");
+      for (String name : System.getProperties().stringPropertyNames())
+      {
+        if (name.startsWith("BOut."))
+        {
+          command.add("-D" + name + "=" + System.getProperty(name));
+        }
+      }
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(LevelCheck.class.getName());
+      command.add("-worker");
+      process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+      replies = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    }
+
+    /**
+     * ends the worker, once it has finished its game
+     */
+    void stop ()
+    {
+      if (process == null)
+      {
+        return;
+      }
+      try
+      {
+        requests.close();
+        process.waitFor();
+      }
+      catch (IOException e)
+      {
+        process.destroy();
+      }
+      catch (InterruptedException e)
+      {
+        process.destroy();
+        Thread.currentThread().interrupt();
+      }
+      process = null;
+    }
+  }
+
+  /**
+   * Plays every level loadable the given number of times, on the given
+   * number of workers (see the class comment)
+   * @param checks a List<Check> giving the levels
+   * @param games an int giving the number of games per level
+   * @param seed a long giving the seed of each level's first game
+   * @param maxSteps a long giving the most steps in a game
+   * @param workers an int giving the number of worker JVMs; 1 to play in this JVM
+   * @return an Outcome[][] giving the outcomes of each level's games (none for a level not loadable)
+   * @throws InterruptedException if interrupted while waiting for the workers
+   */
+  public static Outcome[][] playAll (final List<Check> checks, final int games, final long seed,
+                                     final long maxSteps, int workers) throws InterruptedException
+  {
+    final Outcome[][] outcomes = new Outcome[checks.size()][];
+    final List<int[]> queue = new ArrayList<int[]>();  // {level, game}, in order
+    for (int level = 0; level < checks.size(); level++)
+    {
+      outcomes[level] = new Outcome[checks.get(level).isLoadable() ? games : 0];
+      for (int game = 0; game < outcomes[level].length; game++)
+      {
+        queue.add(new int[]{level, game});
+      }
+    }
+    if (workers <= 1)
+    {
+      for (int[] game : queue)
+      {
+        outcomes[game[0]][game[1]] = play(checks.get(game[0]).getLevel(), seed + game[1], maxSteps);
+      }
+      return outcomes;
+    }
+    final AtomicInteger next = new AtomicInteger();
+    Thread[] threads = new Thread[Math.min(workers, Math.max(1, queue.size()))];
+    for (int t = 0; t < threads.length; t++)
+    {
+      threads[t] = new Thread("LevelCheck worker " + t) {
+          public void run ()
+          {
+            Worker worker = new Worker();
+            for (int i = next.getAndIncrement(); i < queue.size(); i = next.getAndIncrement())
+            {
+              int[] game = queue.get(i);
+              outcomes[game[0]][game[1]] = worker.play(checks.get(game[0]).getLevel(), seed + game[1], maxSteps);
+            }
+            worker.stop();
+          }
+        };
+      threads[t].start();
+    }
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+    return outcomes;
+  }
+
+  /**
+   * Reports on a level: its problems, and a summary of its games
+   * @param out the PrintStream to report to
+   * @param check the Check of the level
+   * @param outcomes an Outcome[] giving the level's games
+   */
+  public static void report (PrintStream out, Check check, Outcome[] outcomes)
+  {
+    out.printf("%s: %d blocks%s%n", check.getLevel(), check.getBlocks(),
+        check.getProblems().isEmpty() ? "" : ", " + check.getProblems().size() + " problem(s)");
+    for (String problem : check.getProblems())
+    {
+      out.println("  problem: " + problem);
+    }
+    if (outcomes.length == 0)
+    {
+      return;
+    }
+    int[] results = new int[Result.values().length];
+    long clearMillis = 0;
+    long score = 0;
+    Map<String,Long> drops = new TreeMap<String,Long>();
+    String crash = null;
+    for (Outcome outcome : outcomes)
+    {
+      ++results[outcome.getResult().ordinal()];
+      if (outcome.getResult() == Result.Won)
+      {
+        clearMillis += outcome.getMillis();
+      }
+      if (outcome.getResult() == Result.Crashed)
+      {
+        crash = (crash == null) ? outcome.getMessage() : crash;
+        continue;
+      }
+      score += outcome.getScore();
+      for (Map.Entry<String,Integer> drop : outcome.getDrops().entrySet())
+      {
+        Long total = drops.get(drop.getKey());
+        drops.put(drop.getKey(), ((total == null) ? 0 : total) + drop.getValue());
+      }
+    }
+    int won = results[Result.Won.ordinal()];
+    int played = outcomes.length - results[Result.Crashed.ordinal()];
+    out.printf(Locale.ROOT, "  %d games: %d won (%.0f%%), %d lost, %d unfinished, %d crashed%n",
+        outcomes.length, won, 100.0 * won / outcomes.length, results[Result.Lost.ordinal()],
+        results[Result.Unfinished.ordinal()], results[Result.Crashed.ordinal()]);
+    if (crash != null)
+    {
+      out.println("  crash: " + crash);
+    }
+    if (played == 0)
+    {
+      return;
+    }
+    out.printf(Locale.ROOT, "  mean time to clear %s, mean score %.0f%n",
+        (won == 0) ? "-" : String.format(Locale.ROOT, "%.1f s", clearMillis / 1000.0 / won),
+        (double)score / played);
+    StringBuilder line = new StringBuilder("  power-ups dropped per game:");
+    if (drops.isEmpty())
+    {
+      line.append(" none");
+    }
+    for (Map.Entry<String,Long> drop : drops.entrySet())
+    {
+      line.append(String.format(Locale.ROOT, " %s %.2f", drop.getKey(), (double)drop.getValue() / played));
+    }
+    out.println(line);
+  }
+
+  /**
+   * the worker's side: plays the games asked for on standard input,
+   * one per line (level, seed and step limit), replying to each with
+   * a line on standard output
+   */
+  private static void serve () throws IOException
+  {
+    PrintStream replies = System.out;
+    System.setOut(System.err);  // the game's own messages must not mix with our replies
+    BufferedReader requests = new BufferedReader(new InputStreamReader(System.in));
+    String request;
+    while ((request = requests.readLine()) != null)
+    {
+      String[] fields = request.split("\t");
+      replies.println(play(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2])).toLine());
+      replies.flush();
+    }
+  }
+
+  /**
+   * adds a level file, or the .xml files of a directory, in order of name
+   */
+  private static void addLevels (String name, List<String> levels)
+  {
+    File file = new File(name);
+    if (!file.isDirectory())
+    {
+      levels.add(name);
+      return;
+    }
+    File[] files = file.listFiles();
+    if (files == null)
+    {
+      return;
+    }
+    Arrays.sort(files);
+    for (File level : files)
+    {
+      if (level.getName().endsWith(".xml"))
+      {
+        levels.add(level.getPath());
+      }
+    }
+  }
+
+  /**
+   * Checks and plays levels, and reports on them
+   * @param args a String[] of options and levels (see the class comment)
+   */
+  public static void main (String[] args) throws Exception
+  {
+    // compiled levels are kept in memory; sidecar files would be left beside every variant
+    LevelCache.setUseSidecars(false);
+    if (args.length == 1 && args[0].equals("-worker"))
+    {
+      serve();
+      return;
+    }
+    int games = DefaultGames;
+    int seconds = DefaultSeconds;
+    int workers = Runtime.getRuntime().availableProcessors();
+    int variants = 0;
+    long seed = HeadlessSimulator.DefaultSeed;
+    int i = 0;
+    for (; i + 1 < args.length && args[i].startsWith("-"); i += 2)
+    {
+      if      (args[i].equals("-n"))    games = Integer.parseInt(args[i+1]);
+      else if (args[i].equals("-t"))    seconds = Integer.parseInt(args[i+1]);
+      else if (args[i].equals("-j"))    workers = Integer.parseInt(args[i+1]);
+      else if (args[i].equals("-fuzz")) variants = Integer.parseInt(args[i+1]);
+      else if (args[i].equals("-seed")) seed = Long.parseLong(args[i+1]);
+      else
+      {
+        System.err.println("unknown option " + args[i]);
+        System.err.println("usage: LevelCheck [-n games] [-t seconds] [-j workers] [-fuzz variants] [-seed seed] level.xml|directory ...");
+        System.exit(2);
+      }
+    }
+    List<String> levels = new ArrayList<String>();
+    for (; i < args.length; i++)
+    {
+      addLevels(args[i], levels);
+    }
+    if (levels.isEmpty())
+    {
+      addLevels("levels", levels);
+    }
+    long start = System.nanoTime();
+    List<Check> checks = new ArrayList<Check>();
+    File fuzzDirectory = null;
+    for (String level : levels)
+    {
+      Check check = check(level);
+      checks.add(check);
+      if (variants > 0 && check.isLoadable())
+      {
+        if (fuzzDirectory == null)
+        {
+          fuzzDirectory = Files.createTempDirectory("levelcheck-").toFile();
+          fuzzDirectory.deleteOnExit();
+        }
+        for (String variant : LevelFuzzer.makeVariants(level, variants, seed, fuzzDirectory,
+                                  HeadlessSimulator.FieldWidth, HeadlessSimulator.FieldHeight))
+        {
+          new File(variant).deleteOnExit();
+          checks.add(check(variant));
+        }
+      }
+    }
+    long maxSteps = seconds * 1000L / HeadlessSimulator.DefaultStepMillis;
+    Outcome[][] outcomes = playAll(checks, games, seed, maxSteps, workers);
+    int withProblems = 0;
+    int crashes = 0;
+    int played = 0;
+    for (int level = 0; level < checks.size(); level++)
+    {
+      report(System.out, checks.get(level), outcomes[level]);
+      withProblems += checks.get(level).getProblems().isEmpty() ? 0 : 1;
+      for (Outcome outcome : outcomes[level])
+      {
+        crashes += (outcome.getResult() == Result.Crashed) ? 1 : 0;
+      }
+      played += outcomes[level].length;
+    }
+    double wallSeconds = (System.nanoTime() - start) / 1.0e9;
+    System.out.printf(Locale.ROOT, "%d levels (%d with problems), %d games (%d crashed) on %d worker(s) in %.1f s: %.0f levels per minute%n",
+        checks.size(), withProblems, played, crashes, Math.max(1, workers), wallSeconds,
+        checks.size() * 60 / wallSeconds);
+    System.exit((withProblems > 0 || crashes > 0) ? 1 : 0);
+  }
+
+}
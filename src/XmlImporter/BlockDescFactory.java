@@ -1,13 +1,14 @@
 package XmlImporter;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import breakout.BlockTemplateDocument.BlockTemplate;
 import breakout.ColorTypeDocument.ColorType;
 import BOut.BlockDesc;
 
 /**
- * Singleton Factory that constructs bufferedImages out of the block specification in a Block Template.
+ * Singleton Factory that interns BlockDescs for the block specifications in Block Templates.
+ * The images themselves are made (and evicted) by BlockImageCache.
  * 
  * @author Eliot Moss
  */
@@ -28,7 +29,17 @@ public class BlockDescFactory {
     return instance;
   }
 
-  private List<BlockDesc> blockDescs = new ArrayList<BlockDesc>();
+  /**
+   * the unique BlockDesc of each appearance, keyed by itself (BlockDescs are equal
+   * when their appearance is); images are cached separately, in BlockImageCache
+   */
+  private Map<BlockDesc,BlockDesc> blockDescs = new HashMap<BlockDesc,BlockDesc>();
+
+  /**
+   * numbers of lookups that found an existing BlockDesc, and that created one
+   */
+  private long hits = 0;
+  private long misses = 0;
   
   /**
    * Returns the unique BlockDesc corresponding to the template's
@@ -41,23 +52,45 @@ public class BlockDescFactory {
     int width = Integer.parseInt(template.getWidth());
     int height = Integer.parseInt(template.getHeight());
     ColorType color = template.getColorType();
-    int r = color.getR();
-    int g = color.getG();
-    int b = color.getB();
-    for (BlockDesc desc : instance.blockDescs)
+    return getBlockDesc(width, height, color.getR(), color.getG(), color.getB());
+  }
+
+  /**
+   * Returns the unique BlockDesc for a given width, height, and color
+   * @param width an int giving the width in pixels
+   * @param height an int giving the height in pixels
+   * @param r an int giving the redness of the color
+   * @param g an int giving the greenness of the color
+   * @param b an int giving the blueness of the color
+   * @return the BlockDesc for that appearance (guaranteed only one for a given appearance)
+   */
+  public static synchronized BlockDesc getBlockDesc (int width, int height, int r, int g, int b)
+  {
+    BlockDesc desc = new BlockDesc(width, height, r, g, b);
+    BlockDesc existing = instance.blockDescs.get(desc);
+    if (existing != null)
     {
-      if (desc.getWidth()  == width &&
-          desc.getHeight() == height &&
-          desc.getR() == r &&
-          desc.getG() == g &&
-          desc.getB() == b)
-      {
-        return desc;
-      }
+      ++instance.hits;
+      return existing;
     }
-    BlockDesc desc = new BlockDesc(width, height, r, g, b);
-    instance.blockDescs.add(desc);
+    ++instance.misses;
+    instance.blockDescs.put(desc, desc);
     return desc;
   }
 
+  /**
+   * @return an int giving the number of distinct appearances seen
+   */
+  public static synchronized int size () { return instance.blockDescs.size(); }
+
+  /**
+   * @return a long giving the number of lookups that found an existing BlockDesc
+   */
+  public static synchronized long getHits () { return instance.hits; }
+
+  /**
+   * @return a long giving the number of lookups that created a new BlockDesc
+   */
+  public static synchronized long getMisses () { return instance.misses; }
+
 }
@@ -0,0 +1,259 @@
+package XmlImporter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import BOut.BlockDesc;
+import BOut.DropSampler;
+import BOut.PowerUpFactory;
+import BOut.PowerUpKind;
+
+/**
+ * A level compiled down to what is needed to build it: the grid spacing,
+ * one entry per block template used, and flat arrays giving the pixel
+ * position and template index of every block, in the order LevelLoader
+ * creates them.  Templates are resolved, patterns expanded and lengths
+ * converted once, when the level is compiled, so building a level from
+ * its CompiledLevel involves no XML, reflection or string parsing.
+ * A CompiledLevel is not changed once built, and may be shared.
+ *
+ * @see LevelCache
+ */
+public final class CompiledLevel {
+
+  /**
+   * what a block template comes to: appearance, score, and power-ups.
+   * The power-up kinds are kept by the names the level gives them, and
+   * looked up when Blocks are built, so a kind registered after the
+   * level was compiled (e.g., from a properties file) still applies.
+   */
+  public static final class Template {
+
+    private final BlockDesc desc;
+    private final int score;
+    private final String[] powerupKinds;
+    private final float[] powerupProbabilities;
+
+    /**
+     * the kinds as last looked up, and the PowerUpFactory generation then
+     */
+    private DropSampler powerups = null;
+    private int generation;
+
+    /**
+     * @param desc the BlockDesc giving the blocks' appearance
+     * @param score an int giving the value of each block
+     * @param powerupKinds a String[] naming the kinds of power-up the blocks may drop
+     * @param powerupProbabilities a float[] giving the probability (0 to 1) of each kind
+     */
+    Template (BlockDesc desc, int score, String[] powerupKinds, float[] powerupProbabilities)
+    {
+      this.desc = desc;
+      this.score = score;
+      this.powerupKinds = powerupKinds;
+      this.powerupProbabilities = powerupProbabilities;
+    }
+
+    public BlockDesc getDesc () { return desc; }
+    public int getScore () { return score; }
+
+    /**
+     * @return the DropSampler of the template's power-ups, shared by its
+     * Blocks; names not registered give plain ones (see PowerUpFactory.getKind)
+     */
+    public synchronized DropSampler getPowerups ()
+    {
+      int now = PowerUpFactory.getGeneration();
+      if (powerups == null || generation != now)
+      {
+        PowerUpKind[] kinds = new PowerUpKind[powerupKinds.length];
+        for (int i = 0; i < powerupKinds.length; i++)
+        {
+          kinds[i] = PowerUpFactory.getKind(powerupKinds[i]);
+        }
+        powerups = new DropSampler(kinds, powerupProbabilities);
+        generation = now;
+      }
+      return powerups;
+    }
+  }
+
+  private final int gridX;
+  private final int gridY;
+  private final Template[] templates;
+  private final int size;
+  private final double[] xs;
+  private final double[] ys;
+  private final int[] templateIndexes;
+
+  private CompiledLevel (int gridX, int gridY, Template[] templates,
+                         int size, double[] xs, double[] ys, int[] templateIndexes)
+  {
+    this.gridX = gridX;
+    this.gridY = gridY;
+    this.templates = templates;
+    this.size = size;
+    this.xs = xs;
+    this.ys = ys;
+    this.templateIndexes = templateIndexes;
+  }
+
+  /**
+   * @return an int giving the horizontal grid spacing, in pixels
+   */
+  public int getGridX () { return gridX; }
+
+  /**
+   * @return an int giving the vertical grid spacing, in pixels
+   */
+  public int getGridY () { return gridY; }
+
+  /**
+   * @return an int giving the number of blocks in the level
+   */
+  public int size () { return size; }
+
+  /**
+   * @param i an int giving the index of a block
+   * @return a double giving the block's x position, in pixels
+   */
+  public double getX (int i) { return xs[i]; }
+
+  /**
+   * @param i an int giving the index of a block
+   * @return a double giving the block's y position, in pixels
+   */
+  public double getY (int i) { return ys[i]; }
+
+  /**
+   * @param i an int giving the index of a block
+   * @return the Template of the block
+   */
+  public Template getTemplate (int i) { return templates[templateIndexes[i]]; }
+
+  /**
+   * Accumulates a CompiledLevel, one template and one block at a time
+   */
+  static final class Builder {
+
+    private final int gridX;
+    private final int gridY;
+    private Template[] templates = new Template[8];
+    private int templateCount = 0;
+    private int size = 0;
+    private double[] xs = new double[64];
+    private double[] ys = new double[64];
+    private int[] templateIndexes = new int[64];
+
+    Builder (int gridX, int gridY)
+    {
+      this.gridX = gridX;
+      this.gridY = gridY;
+    }
+
+    /**
+     * @return an int giving the index of the template added
+     */
+    int addTemplate (Template template)
+    {
+      if (templateCount == templates.length)
+      {
+        templates = Arrays.copyOf(templates, 2 * templateCount);
+      }
+      templates[templateCount] = template;
+      return templateCount++;
+    }
+
+    void addBlock (int template, double x, double y)
+    {
+      if (size == xs.length)
+      {
+        xs = Arrays.copyOf(xs, 2 * size);
+        ys = Arrays.copyOf(ys, 2 * size);
+        templateIndexes = Arrays.copyOf(templateIndexes, 2 * size);
+      }
+      xs[size] = x;
+      ys[size] = y;
+      templateIndexes[size] = template;
+      ++size;
+    }
+
+    CompiledLevel build ()
+    {
+      return new CompiledLevel(gridX, gridY, Arrays.copyOf(templates, templateCount),
+          size, Arrays.copyOf(xs, size), Arrays.copyOf(ys, size), Arrays.copyOf(templateIndexes, size));
+    }
+  }
+
+  /**
+   * Writes the level in a compact binary form (see LevelCache)
+   * @param out the DataOutputStream to write to
+   * @throws IOException if writing fails
+   */
+  void writeTo (DataOutputStream out) throws IOException
+  {
+    out.writeInt(gridX);
+    out.writeInt(gridY);
+    out.writeInt(templates.length);
+    for (Template t : templates)
+    {
+      out.writeInt(t.desc.getWidth());
+      out.writeInt(t.desc.getHeight());
+      out.writeInt(t.desc.getR());
+      out.writeInt(t.desc.getG());
+      out.writeInt(t.desc.getB());
+      out.writeInt(t.score);
+      out.writeInt(t.powerupKinds.length);
+      for (int i = 0; i < t.powerupKinds.length; i++)
+      {
+        out.writeUTF(t.powerupKinds[i]);  // as the level names it
+        out.writeFloat(t.powerupProbabilities[i]);
+      }
+    }
+    out.writeInt(size);
+    for (int i = 0; i < size; i++)
+    {
+      out.writeInt(templateIndexes[i]);
+      out.writeDouble(xs[i]);
+      out.writeDouble(ys[i]);
+    }
+  }
+
+  /**
+   * Reads a level written by writeTo
+   * @param in the DataInputStream to read from
+   * @return the CompiledLevel read
+   * @throws IOException if reading fails or the data are inconsistent
+   */
+  static CompiledLevel readFrom (DataInputStream in) throws IOException
+  {
+    Builder builder = new Builder(in.readInt(), in.readInt());
+    int templateCount = in.readInt();
+    for (int t = 0; t < templateCount; t++)
+    {
+      BlockDesc desc = BlockDescFactory.getBlockDesc(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+      int score = in.readInt();
+      String[] kinds = new String[in.readInt()];
+      float[] probabilities = new float[kinds.length];
+      for (int i = 0; i < kinds.length; i++)
+      {
+        kinds[i] = in.readUTF();
+        probabilities[i] = in.readFloat();
+      }
+      builder.addTemplate(new Template(desc, score, kinds, probabilities));
+    }
+    int size = in.readInt();
+    for (int i = 0; i < size; i++)
+    {
+      int template = in.readInt();
+      if (template < 0 || template >= templateCount)
+      {
+        throw new IOException("bad template index " + template);
+      }
+      builder.addBlock(template, in.readDouble(), in.readDouble());
+    }
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,191 @@
+package XmlImporter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches CompiledLevels, keyed by the canonical path of the level file
+ * and checked against its modification time and length, so that
+ * replaying a level, or choosing it again from the menu, skips the XML.
+ * <br>
+ * A compiled level may also be kept in a sidecar file next to the level
+ * file (Level1.xml gets Level1.xml.lvc), so that later runs of the game
+ * skip the XML too.  A sidecar records the modification time and length
+ * of the level file it was compiled from, and is ignored if either has
+ * changed.  Sidecars that cannot be read or written are simply ignored.
+ */
+public final class LevelCache {
+
+  private LevelCache () { }
+
+  /**
+   * suffix added to a level file's name to name its sidecar
+   */
+  public static final String SidecarSuffix = ".lvc";
+
+  /**
+   * first four bytes of every sidecar ("BOLV")
+   */
+  private static final int Magic = 0x424F4C56;
+
+  /**
+   * the sidecar layout version we write; version 1 wrote each power-up
+   * kind as looked up, so a name not then registered was written as
+   * "plain", and its sidecars are not read
+   */
+  private static final short Version = 2;
+
+  /**
+   * a compiled level, and the file state it was compiled from
+   */
+  private static final class Entry {
+    final long modified;
+    final long length;
+    final CompiledLevel level;
+    Entry (long modified, long length, CompiledLevel level)
+    {
+      this.modified = modified;
+      this.length = length;
+      this.level = level;
+    }
+  }
+
+  private static final Map<String,Entry> cache = new ConcurrentHashMap<String,Entry>();
+
+  /**
+   * whether to read and write sidecar files
+   */
+  private static volatile boolean useSidecars = true;
+
+  /**
+   * @param use a boolean, true to read and write sidecar files
+   */
+  public static void setUseSidecars (boolean use)
+  {
+    useSidecars = use;
+  }
+
+  /**
+   * Forgets every level cached in memory (sidecar files are kept)
+   */
+  public static void clear ()
+  {
+    cache.clear();
+  }
+
+  /**
+   * Returns the compiled form of a level file, compiling it only if
+   * neither memory nor its sidecar holds an up to date one
+   * @param filename a String naming a level XML file
+   * @return the CompiledLevel
+   * @throws Exception if the level file cannot be read or parsed
+   */
+  public static CompiledLevel get (String filename) throws Exception
+  {
+    File file = new File(filename);
+    String key = file.getCanonicalPath();
+    long modified = file.lastModified();
+    long length = file.length();
+    Entry entry = cache.get(key);
+    if (entry != null && entry.modified == modified && entry.length == length)
+    {
+      return entry.level;
+    }
+    File sidecar = new File(key + SidecarSuffix);
+    CompiledLevel level = useSidecars ? readSidecar(sidecar, modified, length) : null;
+    if (level == null)
+    {
+      level = LevelLoader.compile(file);
+      if (useSidecars)
+      {
+        writeSidecar(sidecar, modified, length, level);
+      }
+    }
+    cache.put(key, new Entry(modified, length, level));
+    return level;
+  }
+
+  /**
+   * @return the level in the sidecar, or null if there is none, it is out of date, or it cannot be read
+   */
+  private static CompiledLevel readSidecar (File sidecar, long modified, long length)
+  {
+    if (!sidecar.isFile())
+    {
+      return null;
+    }
+    try
+    {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)));
+      try
+      {
+        if (in.readInt() != Magic || in.readShort() != Version ||
+            in.readLong() != modified || in.readLong() != length)
+        {
+          return null;
+        }
+        return CompiledLevel.readFrom(in);
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    catch (IOException exc)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * writes a sidecar through a temporary file, so readers never see a partial one
+   */
+  private static void writeSidecar (File sidecar, long modified, long length, CompiledLevel level)
+  {
+    File part = null;
+    try
+    {
+      part = File.createTempFile(sidecar.getName(), ".part", sidecar.getAbsoluteFile().getParentFile());
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(part)));
+      try
+      {
+        out.writeInt(Magic);
+        out.writeShort(Version);
+        out.writeLong(modified);
+        out.writeLong(length);
+        level.writeTo(out);
+      }
+      finally
+      {
+        out.close();
+      }
+      try
+      {
+        Files.move(part.toPath(), sidecar.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException exc)
+      {
+        Files.move(part.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException exc)
+    {
+      if (part != null)
+      {
+        part.delete();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,146 @@
+package XmlImporter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import org.apache.xmlbeans.XmlOptions;
+
+import breakout.*;
+import breakout.BlockTemplateDocument.*;
+
+/**
+ * Makes variants of a level file, for trying the game out on many
+ * levels like those we ship (see BOut.sim.LevelCheck).  A variant keeps
+ * the level's templates, and changes where its blocks go:
+ * <ul>
+ * <li>each blockInstance may be left out (one time in ten), or moved by
+ * up to half a grid cell each way (its position then written in px), or
+ * given another of the level's templates;</li>
+ * <li>each blockPattern starts up to two grid cells away, and (if it
+ * gives a count) has up to a quarter more or fewer blocks;</li>
+ * <li>up to MaxAddedBlocks blockInstances are added, at random grid
+ * positions in the upper part of the field.</li>
+ * </ul>
+ * Variants are made from a seed, and the same seed gives the same
+ * variants.  They are not checked: their blocks may overlap, or leave
+ * the field, which is for LevelCheck to find.
+ */
+public final class LevelFuzzer {
+
+  private LevelFuzzer () { }
+
+  /**
+   * the most blockInstances added to a variant
+   */
+  public static final int MaxAddedBlocks = 5;
+
+  /**
+   * the part of the field's height in which blocks are added
+   */
+  private static final double AddedBlocksDepth = 0.6;
+
+  /**
+   * Writes variants of a level file
+   * @param filename a String giving the level file to vary
+   * @param count an int giving the number of variants to make
+   * @param seed a long giving the seed from which the variants are made
+   * @param directory the File giving the directory to write them to
+   * @param fieldWidth an int giving the width of the playing field, in pixels
+   * @param fieldHeight an int giving the height of the playing field, in pixels
+   * @return a List<String> giving the paths of the variants, in order
+   * @throws Exception if the level file cannot be read or parsed, or a
+   * variant cannot be written
+   */
+  public static List<String> makeVariants (String filename, int count, long seed, File directory,
+                                           int fieldWidth, int fieldHeight) throws Exception
+  {
+    File file = new File(filename);
+    String base = file.getName().replaceFirst("\\.xml$", "");
+    SplittableRandom random = new SplittableRandom(seed);
+    XmlOptions options = new XmlOptions().setSavePrettyPrint();
+    List<String> variants = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++)
+    {
+      GameDocument document = GameDocument.Factory.parse(file);
+      vary(document.getGame(), random.split(), fieldWidth, fieldHeight);
+      File variant = new File(directory, base + "-v" + i + ".xml");
+      document.save(variant, options);
+      variants.add(variant.getPath());
+    }
+    return variants;
+  }
+
+  /**
+   * makes the changes described in the class comment
+   */
+  private static void vary (GameDocument.Game game, SplittableRandom random,
+                            int fieldWidth, int fieldHeight)
+  {
+    int xGrid = game.getGridX();
+    int yGrid = game.getGridY();
+    BlockTemplate[] templates = game.getBlockTemplateArray();
+    LevelDocument.Level level = game.getLevelArray(0);
+    for (int i = level.sizeOfBlockInstanceArray() - 1; i >= 0; i--)
+    {
+      BlockInstanceDocument.BlockInstance block = level.getBlockInstanceArray(i);
+      switch (random.nextInt(10))
+      {
+      case 0:
+        level.removeBlockInstance(i);
+        break;
+      case 1:
+      case 2:
+      case 3:
+      case 4:
+        block.setX(jitter(block.getX(), xGrid, random));
+        block.setY(jitter(block.getY(), yGrid, random));
+        break;
+      case 5:
+        if (templates.length > 0)
+        {
+          block.setTemplate(templates[random.nextInt(templates.length)].getId());
+        }
+        break;
+      default:
+        break;
+      }
+    }
+    for (BlockPatternDocument.BlockPattern pattern : level.getBlockPatternArray())
+    {
+      pattern.setStartx(pattern.getStartx() + random.nextInt(-2, 3));
+      pattern.setStarty(pattern.getStarty() + random.nextInt(-2, 3));
+      if (pattern.isSetCount() && pattern.getCount() > 0)
+      {
+        pattern.setCount(Math.max(1, (int)Math.round(pattern.getCount() * random.nextDouble(0.75, 1.25))));
+      }
+    }
+    if (templates.length > 0)
+    {
+      int columns = Math.max(1, fieldWidth / Math.max(1, xGrid));
+      int rows = Math.max(1, (int)(fieldHeight * AddedBlocksDepth) / Math.max(1, yGrid));
+      for (int added = random.nextInt(MaxAddedBlocks + 1); added > 0; added--)
+      {
+        BlockInstanceDocument.BlockInstance block = level.addNewBlockInstance();
+        block.setTemplate(templates[random.nextInt(templates.length)].getId());
+        block.setX(Integer.toString(random.nextInt(columns)));
+        block.setY(Integer.toString(random.nextInt(rows)));
+      }
+    }
+  }
+
+  /**
+   * @param length a String giving a length as in a level file
+   * @param grid an int giving the grid distance in pixels
+   * @return a String giving the length, moved by up to half a grid
+   * distance either way, in px
+   */
+  private static String jitter (String length, int grid, SplittableRandom random)
+  {
+    double pixels = LevelLoader.parseLength(length, grid) + grid * (random.nextDouble() - 0.5);
+    return String.format(Locale.ROOT, "%.1fpx", pixels);
+  }
+
+}
@@ -1,6 +1,7 @@
 package XmlImporter;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.awt.*;
 import java.io.*;
@@ -18,113 +19,266 @@ import breakout.PowerupDocument.Powerup;
 public class LevelLoader {
 
   /**
-   * the XML file can describe templates and give them names;
-   * this table maps those names to the templates 
+   * the BreakOutWorld into which we will load things, e.g., create blocks
    */
-  private Map<String,BlockTemplateDocument.BlockTemplate> table =
-    new HashMap<String,BlockTemplateDocument.BlockTemplate>();
-	
-  /**
-   * the BreakOutGame into which we will load things, e.g., create blocks
-   */
-  private BreakOutGame ourGame;
+  private BreakOutWorld ourGame;
 
   /**
-   * default grid spacing for blocks in the horiz dimension, in pixels
-   */
-  private int xGrid = 64;
-  
-  /**
-   * default grid spacing for blocks in the vert dimension, in pixels
+   * whether level files are streamed through StAX rather than parsed by XMLBeans
    */
-  private int yGrid = 32;
+  private static boolean streamingParser = !Boolean.getBoolean("BOut.xmlBeansLevels");
 	
   /**
    * One LevelLoader is needed per Game Object. This means that
    * if we use one Game for all levels, we use one LevelLoader.
    * If we instantiate a new one every level, we need many.
-   * @param game The Game object that the level should be drawing.
+   * @param game The BreakOutWorld (normally a BreakOutGame) that the level should be drawing.
    */
-  public LevelLoader (BreakOutGame game)
+  public LevelLoader (BreakOutWorld game)
   {
     this.ourGame = game;
   }
 	
   /**
-   * Takes in an xml file, and prepares the level described.
+   * Takes in an xml file, and prepares the level described.  The file is
+   * parsed only the first time (or after it changes); see LevelCache.
    * @param filename An xml file that matches the levelScheme.xsd schema.
    */
   public void loadGame (String filename)
   {
-    table.clear(); // Don't want the templates from last level persisting.
     try {
-      //GameDocument is the root object of a Level instance.
-      GameDocument loader = GameDocument.Factory.parse(new File(filename));
-      GameDocument.Game game = loader.getGame();
-      this.xGrid = game.getGridX(); //Grids are used for lengths not ending with px.
-      this.yGrid = game.getGridY();
-      for (BlockTemplate template : game.getBlockTemplateArray())
-      {
-        table.put(template.getId(), template);
-      }
-      for (BlockInstanceDocument.BlockInstance blockData : game.getLevelArray(0).getBlockInstanceArray())
+      loadGame(LevelCache.get(filename));
+    }
+    catch(Exception e)
+    {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  /**
+   * Prepares the level described by a compiled level.
+   * @param level the CompiledLevel to build
+   */
+  public void loadGame (CompiledLevel level)
+  {
+    ourGame.setGridSpacing(level.getGridX(), level.getGridY());
+    for (int i = 0; i < level.size(); i++)
+    {
+      createBlock(level.getTemplate(i), level.getX(i), level.getY(i));
+    }
+  }
+
+  /**
+   * Parses an xml file and compiles the level it describes: templates are
+   * looked up, patterns expanded and lengths converted to pixels.  The
+   * file is streamed through StAX, unless setStreamingParser (or the
+   * BOut.xmlBeansLevels system property) asks for XMLBeans.
+   * @param file An xml file that matches the levelScheme.xsd schema.
+   * @return the CompiledLevel
+   * @throws Exception if the file cannot be read or parsed, or names an unknown pattern
+   */
+  static CompiledLevel compile (File file) throws Exception
+  {
+    return compile(file, null);
+  }
+
+  /**
+   * Parses an xml file and compiles the level it describes, as compile
+   * does, noting what is wrong with it along the way: blocks naming a
+   * template the file does not describe are left out, as when loading
+   * the level, but are also reported, as are power-up kinds that are not
+   * registered (which drop plain PowerUps; see PowerUpFactory.getKind).
+   * @param file An xml file that matches the levelScheme.xsd schema.
+   * @param problems a List<String> to which to add a description of each
+   * unknown template and power-up kind (once each); null to ignore them
+   * @return the CompiledLevel
+   * @throws Exception if the file cannot be read or parsed, or names an unknown pattern
+   */
+  public static CompiledLevel compile (File file, List<String> problems) throws Exception
+  {
+    return streamingParser ? LevelStreamParser.compile(file, problems) : compileXmlBeans(file, problems);
+  }
+
+  /**
+   * Chooses how level files are parsed, for levels compiled from now on
+   * @param streaming a boolean, true to stream them through StAX (see
+   * LevelStreamParser), false to parse them into XMLBeans documents
+   */
+  public static void setStreamingParser (boolean streaming)
+  {
+    streamingParser = streaming;
+  }
+
+  /**
+   * @return true iff level files are streamed through StAX
+   */
+  public static boolean isStreamingParser ()
+  {
+    return streamingParser;
+  }
+
+  /**
+   * Compiles a level, as compile does, from an XMLBeans document
+   */
+  static CompiledLevel compileXmlBeans (File file, List<String> problems) throws Exception
+  {
+    //GameDocument is the root object of a Level instance.
+    GameDocument loader = GameDocument.Factory.parse(file);
+    GameDocument.Game game = loader.getGame();
+    int xGrid = game.getGridX(); //Grids are used for lengths not ending with px.
+    int yGrid = game.getGridY();
+    CompiledLevel.Builder level = new CompiledLevel.Builder(xGrid, yGrid);
+
+    // the XML file can describe templates and give them names;
+    // this table maps those names to the templates, and the next to
+    // the index of each template in the compiled level, once used
+    Map<String,BlockTemplate> table = new HashMap<String,BlockTemplate>();
+    Map<String,Integer> indexes = new HashMap<String,Integer>();
+    for (BlockTemplate template : game.getBlockTemplateArray())
+    {
+      table.put(template.getId(), template);
+    }
+    for (BlockInstanceDocument.BlockInstance blockData : game.getLevelArray(0).getBlockInstanceArray())
+    {
+      int template = templateIndex(blockData.getTemplate(), table, indexes, level, problems);
+      if (template < 0)
       {
-        BlockTemplate template = table.get(blockData.getTemplate());
-        if (template == null)
-        {
-          continue;  // skip it (TODO: should give some kind of error message)
-        }
-        createBlock(
-            template,
-            parseLength(blockData.getX(), xGrid),
-            parseLength(blockData.getY(), yGrid));
+        unknownTemplate(blockData.getTemplate(), "a blockInstance", problems);
+        continue;  // skip it
       }
-      for (BlockPatternDocument.BlockPattern pattern : game.getLevelArray(0).getBlockPatternArray())
+      level.addBlock(
+          template,
+          parseLength(blockData.getX(), xGrid),
+          parseLength(blockData.getY(), yGrid));
+    }
+    for (BlockPatternDocument.BlockPattern pattern : game.getLevelArray(0).getBlockPatternArray())
+    {
+      BlockPatternInstance patternClass = PatternFactory.getInstance().getBlockPattern(pattern);
+      String[] blocks = pattern.getBlockArray();
+      int currentBlock = 0;
+      Point location = new Point(pattern.getStartx(), pattern.getStarty());
+      int lastBlock = pattern.getCount();
+      if (lastBlock < 1) lastBlock = patternClass.preferredSize();
+      for (int i = 0; i < lastBlock; i++)
       {
-        BlockPatternInstance patternClass = PatternFactory.getInstance().getBlockPattern(pattern);
-        String[] blocks = pattern.getBlockArray();
-        int currentBlock = 0;
-        Point location = new Point(pattern.getStartx(), pattern.getStarty());
-        int lastBlock = pattern.getCount();
-        if (lastBlock < 1) lastBlock = patternClass.preferredSize();
-        for (int i = 0; i < lastBlock; i++)
+        int template = templateIndex(blocks[currentBlock], table, indexes, level, problems);
+        if (template >= 0)
         {
-          createBlock(
-              table.get(blocks[currentBlock]),
+          level.addBlock(
+              template,
               gridToPixels(location.x, xGrid),
               gridToPixels(location.y, yGrid));
-          if (patternClass.changeBlock())
-          {
-            currentBlock++;
-            if (currentBlock >= blocks.length) currentBlock = 0;
-          }
-          location = patternClass.nextBlock(location);
         }
+        else
+        {
+          unknownTemplate(blocks[currentBlock], "a blockPattern " + pattern.getClass1(), problems);
+        }
+        if (patternClass.changeBlock())
+        {
+          currentBlock++;
+          if (currentBlock >= blocks.length) currentBlock = 0;
+        }
+        location = patternClass.nextBlock(location);
       }
     }
-    catch(Exception e)
+    return level.build();
+  }
+
+  /**
+   * notes a reference to an unknown template, unless already noted
+   * @param id a String giving the template's name
+   * @param where a String saying what referred to it
+   * @param problems the List<String> of problems so far, or null
+   */
+  static void unknownTemplate (String id, String where, List<String> problems)
+  {
+    noteOnce("unknown block template \"" + id + "\"", " (first used by " + where + ")", problems);
+  }
+
+  /**
+   * notes each power-up kind a template names that is not registered, unless already noted
+   * @param kinds a String[] giving the names of the template's power-up kinds
+   * @param id a String giving the template's name
+   * @param problems the List<String> of problems so far, or null
+   */
+  static void unknownPowerUps (String[] kinds, String id, List<String> problems)
+  {
+    for (String kind : kinds)
     {
-      System.out.println(e.getMessage());
+      if (!PowerUpFactory.isKind(kind))
+      {
+        noteOnce("unknown power-up kind \"" + kind + "\"", " (first used by block template " + id + ")", problems);
+      }
     }
   }
+
+  /**
+   * adds a problem and where it was found, unless the problem is already noted
+   */
+  private static void noteOnce (String problem, String where, List<String> problems)
+  {
+    if (problems == null)
+    {
+      return;
+    }
+    for (String noted : problems)
+    {
+      if (noted.startsWith(problem))
+      {
+        return;
+      }
+    }
+    problems.add(problem + where);
+  }
+
+  /**
+   * finds the index in the compiled level of a named template, adding it on first use
+   * @param id a String giving the template's name
+   * @param problems the List<String> of problems so far, or null
+   * @return an int giving the template's index, or -1 if there is no such template
+   */
+  private static int templateIndex (String id, Map<String,BlockTemplate> table,
+                                    Map<String,Integer> indexes, CompiledLevel.Builder level,
+                                    List<String> problems)
+  {
+    Integer index = indexes.get(id);
+    if (index != null)
+    {
+      return index;
+    }
+    BlockTemplate template = table.get(id);
+    if (template == null)
+    {
+      return -1;
+    }
+    Powerup[] powerups = template.getPowerupArray();
+    String[] kinds = new String[powerups.length];
+    float[] probabilities = new float[powerups.length];
+    for (int i = 0; i < powerups.length; i++)
+    {
+      kinds[i] = powerups[i].getClass1();
+      probabilities[i] = powerups[i].getProbability()/100.0f;
+    }
+    unknownPowerUps(kinds, id, problems);
+    index = level.addTemplate(new CompiledLevel.Template(
+        BlockDescFactory.getBlockDesc(template), template.getScore(), kinds, probabilities));
+    indexes.put(id, index);
+    return index;
+  }
 		
   /**
    * creates a block given the template to use and its x and y location in pixels 
-   * @param template a BlockTemplate describing the desired block
+   * @param template a compiled Template describing the desired block
    * @param x a double giving the x position in pixels
    * @param y a double giving the y position in pixels
    */
-  private void createBlock (BlockTemplate template, double x, double y)
+  private void createBlock (CompiledLevel.Template template, double x, double y)
   {
     try {
-      Block block = new Block(BlockDescFactory.getBlockDesc(template), x, y);
+      Block block = ourGame.newBlock(template.getDesc(), x, y);
       block.setValue(template.getScore());
       block.setGame(ourGame);
-      for (Powerup p : template.getPowerupArray())
-      {
-        //powerups.Powerup instantiation = (powerups.Powerup)(Class.forName("powerups."+p.getClass1()).newInstance());
-        block.addPowerup(p.getClass1(), p.getProbability()/100.0f);
-      }
+      block.setPowerups(template.getPowerups());  // shared by all the template's Blocks
       ourGame.addBlock(block);
     }
     catch (Exception e)
@@ -142,7 +296,7 @@ public class LevelLoader {
    * @param grid an int giving the grid distance in pixels
    * @return a double giving the converted distance in pixels
    */
-  private double parseLength (String length, int grid)
+  static double parseLength (String length, int grid)
   {
     if (length.endsWith("px"))
     {
@@ -160,7 +314,7 @@ public class LevelLoader {
    * @param grid an int giving the grid distance
    * @return a double, the product of the coordinate and the grid distance
    */
-  private double gridToPixels(double gridCoord, int grid)
+  static double gridToPixels(double gridCoord, int grid)
   {
     return gridCoord * grid;
   }
@@ -0,0 +1,416 @@
+package XmlImporter;
+
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import BOut.BlockDesc;
+import XmlImporter.pattern.*;
+
+/**
+ * Compiles a level file by reading it as a stream of StAX events, with
+ * no XMLBeans document in between: each blockInstance goes into the
+ * CompiledLevel as it is read, and only the templates (until used) and
+ * the blockPatterns (a few attributes each) are held.  The result is
+ * the same CompiledLevel that LevelLoader's XMLBeans compile gives:
+ * <ul>
+ * <li>lengths are converted by LevelLoader.parseLength, so "px" lengths
+ * are pixels and others grid positions;</li>
+ * <li>as the XMLBeans compile takes all of a level's blockInstances
+ * before its blockPatterns, the patterns are expanded once the level
+ * has been read;</li>
+ * <li>only the first level is built, templates are compiled (and their
+ * indexes given out) in order of first use, a missing int attribute
+ * counts as 0, and blocks naming unknown templates are left out.</li>
+ * </ul>
+ * Templates are looked up as blocks are read, so they must come before
+ * the level, as levelScheme.xsd requires.  The schema is not otherwise
+ * checked: elements and attributes it does not mention are passed over.
+ */
+public final class LevelStreamParser {
+
+  /**
+   * the namespace of level files
+   */
+  public static final String Namespace = "breakout";
+
+  /**
+   * makes our readers; a reader does not read DTDs or external entities
+   */
+  private static final XMLInputFactory factory = createFactory();
+
+  /**
+   * a blockTemplate as read, compiled when a block first uses it
+   */
+  private static final class TemplateSpec
+  {
+    String id;
+    String width;
+    String height;
+    int score;
+    boolean hasColor = false;
+    int r;
+    int g;
+    int b;
+    final List<String> powerupKinds = new ArrayList<String>();
+    final List<Float> powerupProbabilities = new ArrayList<Float>();
+  }
+
+  /**
+   * a blockPattern as read, expanded once its level is read
+   */
+  private static final class PatternSpec
+  {
+    String className;
+    int startx;
+    int starty;
+    int count;
+    final List<String> blocks = new ArrayList<String>();
+  }
+
+  private final XMLStreamReader reader;
+  private final List<String> problems;
+  private CompiledLevel.Builder level;
+
+  /**
+   * the templates read so far, by ID
+   */
+  private final Map<String,TemplateSpec> table = new HashMap<String,TemplateSpec>();
+
+  /**
+   * the index in the compiled level of each template used so far, by ID
+   */
+  private final Map<String,Integer> indexes = new HashMap<String,Integer>();
+
+  private LevelStreamParser (XMLStreamReader reader, List<String> problems)
+  {
+    this.reader = reader;
+    this.problems = problems;
+  }
+
+  /**
+   * Parses an xml file and compiles the level it describes, as
+   * LevelLoader.compile does (see the class comment)
+   * @param file An xml file that matches the levelScheme.xsd schema.
+   * @param problems a List<String> to which to add a description of each
+   * unknown template and power-up kind (once each); null to ignore them
+   * @return the CompiledLevel
+   * @throws Exception if the file cannot be read or parsed, has no level,
+   * or names an unknown pattern
+   */
+  public static CompiledLevel compile (File file, List<String> problems) throws Exception
+  {
+    InputStream in = new BufferedInputStream(new FileInputStream(file));
+    try
+    {
+      XMLStreamReader reader = factory.createXMLStreamReader(in);
+      try
+      {
+        return new LevelStreamParser(reader, problems).readGame();
+      }
+      finally
+      {
+        reader.close();
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /**
+   * reads the Game element, which must be the root
+   */
+  private CompiledLevel readGame () throws Exception
+  {
+    while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT)
+    {
+      // skip the prolog
+    }
+    if (!reader.isStartElement() || !isElement("Game"))
+    {
+      throw new XMLStreamException("not a level file: no Game element in namespace " + Namespace);
+    }
+    int xGrid = intAttribute("grid_x");
+    int yGrid = intAttribute("grid_y");
+    level = new CompiledLevel.Builder(xGrid, yGrid);
+    boolean haveLevel = false;
+    while (nextChild())
+    {
+      if (isElement("blockTemplate"))
+      {
+        readTemplate();
+      }
+      else if (isElement("level") && !haveLevel)
+      {
+        readLevel(xGrid, yGrid);
+        haveLevel = true;
+      }
+      else
+      {
+        skipElement();
+      }
+    }
+    if (!haveLevel)
+    {
+      throw new XMLStreamException("no level element");
+    }
+    return level.build();
+  }
+
+  /**
+   * reads a blockTemplate into the table (a later one replaces an
+   * earlier one of the same ID)
+   */
+  private void readTemplate () throws XMLStreamException
+  {
+    TemplateSpec template = new TemplateSpec();
+    template.id = idAttribute("id");
+    template.width = reader.getAttributeValue(null, "width");
+    template.height = reader.getAttributeValue(null, "height");
+    template.score = intAttribute("score");
+    while (nextChild())
+    {
+      if (isElement("colorType") && !template.hasColor)
+      {
+        template.hasColor = true;
+        template.r = intAttribute("R");
+        template.g = intAttribute("G");
+        template.b = intAttribute("B");
+      }
+      else if (isElement("powerup"))
+      {
+        template.powerupKinds.add(reader.getAttributeValue(null, "class"));
+        template.powerupProbabilities.add(intAttribute("probability")/100.0f);
+      }
+      skipElement();
+    }
+    table.put(template.id, template);
+  }
+
+  /**
+   * reads a level, adding its blockInstances as they come and then
+   * expanding its blockPatterns
+   */
+  private void readLevel (int xGrid, int yGrid) throws Exception
+  {
+    List<PatternSpec> patterns = new ArrayList<PatternSpec>();
+    while (nextChild())
+    {
+      if (isElement("blockInstance"))
+      {
+        String id = idAttribute("template");
+        int template = templateIndex(id);
+        if (template < 0)
+        {
+          LevelLoader.unknownTemplate(id, "a blockInstance", problems);
+        }
+        else
+        {
+          level.addBlock(
+              template,
+              LevelLoader.parseLength(reader.getAttributeValue(null, "x"), xGrid),
+              LevelLoader.parseLength(reader.getAttributeValue(null, "y"), yGrid));
+        }
+        skipElement();
+      }
+      else if (isElement("blockPattern"))
+      {
+        patterns.add(readPattern());
+      }
+      else
+      {
+        skipElement();
+      }
+    }
+    for (PatternSpec pattern : patterns)
+    {
+      addPattern(pattern, xGrid, yGrid);
+    }
+  }
+
+  /**
+   * reads a blockPattern's attributes and blocks
+   */
+  private PatternSpec readPattern () throws XMLStreamException
+  {
+    PatternSpec pattern = new PatternSpec();
+    pattern.className = reader.getAttributeValue(null, "class");
+    pattern.startx = intAttribute("startx");
+    pattern.starty = intAttribute("starty");
+    pattern.count = intAttribute("count");
+    while (nextChild())
+    {
+      if (isElement("block"))
+      {
+        pattern.blocks.add(reader.getElementText().trim());
+      }
+      else
+      {
+        skipElement();
+      }
+    }
+    return pattern;
+  }
+
+  /**
+   * adds the blocks of a pattern, as LevelLoader.compile does
+   */
+  private void addPattern (PatternSpec pattern, int xGrid, int yGrid) throws Exception
+  {
+    BlockPatternInstance patternClass = PatternFactory.getInstance().getBlockPattern(pattern.className);
+    String[] blocks = pattern.blocks.toArray(new String[pattern.blocks.size()]);
+    int currentBlock = 0;
+    Point location = new Point(pattern.startx, pattern.starty);
+    int lastBlock = pattern.count;
+    if (lastBlock < 1) lastBlock = patternClass.preferredSize();
+    for (int i = 0; i < lastBlock; i++)
+    {
+      int template = templateIndex(blocks[currentBlock]);
+      if (template >= 0)
+      {
+        level.addBlock(
+            template,
+            LevelLoader.gridToPixels(location.x, xGrid),
+            LevelLoader.gridToPixels(location.y, yGrid));
+      }
+      else
+      {
+        LevelLoader.unknownTemplate(blocks[currentBlock], "a blockPattern " + pattern.className, problems);
+      }
+      if (patternClass.changeBlock())
+      {
+        currentBlock++;
+        if (currentBlock >= blocks.length) currentBlock = 0;
+      }
+      location = patternClass.nextBlock(location);
+    }
+  }
+
+  /**
+   * finds the index in the compiled level of a named template, compiling it on first use
+   * @param id a String giving the template's name
+   * @return an int giving the template's index, or -1 if there is no such template
+   */
+  private int templateIndex (String id) throws XMLStreamException
+  {
+    Integer index = indexes.get(id);
+    if (index != null)
+    {
+      return index;
+    }
+    TemplateSpec template = table.get(id);
+    if (template == null)
+    {
+      return -1;
+    }
+    if (!template.hasColor)
+    {
+      throw new XMLStreamException("block template " + id + " has no colorType");
+    }
+    BlockDesc desc = BlockDescFactory.getBlockDesc(
+        Integer.parseInt(template.width), Integer.parseInt(template.height),
+        template.r, template.g, template.b);
+    int powerups = template.powerupKinds.size();
+    String[] kinds = template.powerupKinds.toArray(new String[powerups]);
+    float[] probabilities = new float[powerups];
+    for (int i = 0; i < powerups; i++)
+    {
+      probabilities[i] = template.powerupProbabilities.get(i);
+    }
+    LevelLoader.unknownPowerUps(kinds, id, problems);
+    index = level.addTemplate(new CompiledLevel.Template(desc, template.score, kinds, probabilities));
+    indexes.put(id, index);
+    return index;
+  }
+
+  /**
+   * @return true iff the current element is the named one of our namespace
+   */
+  private boolean isElement (String name)
+  {
+    return name.equals(reader.getLocalName()) && Namespace.equals(reader.getNamespaceURI());
+  }
+
+  /**
+   * moves to the next child of the current element
+   * @return true if there is one, false (at the current element's end) if not
+   */
+  private boolean nextChild () throws XMLStreamException
+  {
+    while (reader.hasNext())
+    {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT)
+      {
+        return true;
+      }
+      if (event == XMLStreamConstants.END_ELEMENT)
+      {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * moves to the end of the current element, passing over its content
+   */
+  private void skipElement () throws XMLStreamException
+  {
+    for (int depth = 1; depth > 0; )
+    {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT)
+      {
+        ++depth;
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT)
+      {
+        --depth;
+      }
+    }
+  }
+
+  /**
+   * @return an int giving the value of an xs:int attribute of the
+   * current element, 0 if it has none
+   */
+  private int intAttribute (String name)
+  {
+    String value = reader.getAttributeValue(null, name);
+    return (value == null) ? 0 : Integer.parseInt(value.trim());
+  }
+
+  /**
+   * @return a String giving the value of an xs:ID or xs:IDREF attribute
+   * of the current element (white space trimmed), null if it has none
+   */
+  private String idAttribute (String name)
+  {
+    String value = reader.getAttributeValue(null, name);
+    return (value == null) ? null : value.trim();
+  }
+
+  private static XMLInputFactory createFactory ()
+  {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    return factory;
+  }
+
+}